@@ -0,0 +1,25 @@
+package frc.robot;
+
+import edu.wpi.first.hal.HAL;
+
+/** Shared setup for benchmarks that touch WPILib code backed by native libraries. */
+public final class BenchmarkSupport {
+    private static boolean isHALInitialized = false;
+
+    private BenchmarkSupport() {}
+
+    /**
+     * Starts the simulated HAL, needed by anything that reads the FPGA clock, NetworkTables or the
+     * command scheduler. The natives come from build/jni/release, see the jmh block in build.gradle.
+     */
+    public static synchronized void initializeHAL() {
+        if (isHALInitialized) {
+            return;
+        }
+
+        if (!HAL.initialize(500, 0)) {
+            throw new IllegalStateException("Failed to initialize the HAL");
+        }
+        isHALInitialized = true;
+    }
+}
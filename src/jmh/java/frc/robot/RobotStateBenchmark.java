@@ -0,0 +1,78 @@
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** One loop worth of odometry samples going through RobotState.addOdometryObservations. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RobotStateBenchmark {
+    // 250 Hz odometry over a 20 ms loop
+    @Param({"5"})
+    public int samplesPerLoop;
+
+    @Param({"true", "false"})
+    public boolean isGyroConnected;
+
+    private RobotState robotState;
+
+    private double[][] timestampsSeconds;
+    private double[][] drivePositionsMeters;
+    private double[][] steerPositionsRad;
+    private double[] yawPositionsRad;
+    private final double[] moduleVelocitiesMetersPerSec = {2.0, 2.1, 1.9, 2.0};
+    private final double[] moduleAnglesRad = {0.3, 0.32, 0.28, 0.3};
+
+    private double timeSeconds = 0;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.initializeHAL();
+        robotState = RobotState.getInstance();
+
+        timestampsSeconds = new double[4][samplesPerLoop];
+        drivePositionsMeters = new double[4][samplesPerLoop];
+        steerPositionsRad = new double[4][samplesPerLoop];
+        yawPositionsRad = new double[samplesPerLoop];
+    }
+
+    @Benchmark
+    public RobotState addOdometryObservations() {
+        for (int i = 0; i < samplesPerLoop; i++) {
+            timeSeconds += 0.004;
+            for (int j = 0; j < 4; j++) {
+                timestampsSeconds[j][i] = timeSeconds;
+                drivePositionsMeters[j][i] = timeSeconds * moduleVelocitiesMetersPerSec[j];
+                steerPositionsRad[j][i] = moduleAnglesRad[j];
+            }
+            yawPositionsRad[i] = timeSeconds * 0.5;
+        }
+
+        robotState.addOdometryObservations(
+            timestampsSeconds,
+            drivePositionsMeters,
+            steerPositionsRad,
+            moduleVelocitiesMetersPerSec,
+            moduleAnglesRad,
+            isGyroConnected,
+            yawPositionsRad,
+            0.5
+        );
+        return robotState;
+    }
+}
@@ -0,0 +1,47 @@
+package frc.robot.lib.auto;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.BenchmarkSupport;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FollowPathBenchmark {
+    private FollowPath followPath;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // FollowPath requires SwerveDrive, which registers with the command scheduler
+        BenchmarkSupport.initializeHAL();
+        followPath = new FollowPath(JsonUtils.loadWaypoints(new File("src/main/deploy/autos/Test1.json")));
+    }
+
+    @Setup(Level.Iteration)
+    public void restart() {
+        // execute() records every robot translation, restart so the history does not grow across iterations
+        followPath.initialize();
+    }
+
+    @Benchmark
+    public FollowPath execute() {
+        followPath.execute();
+        return followPath;
+    }
+}
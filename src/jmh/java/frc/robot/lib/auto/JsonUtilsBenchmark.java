@@ -0,0 +1,43 @@
+package frc.robot.lib.auto;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.lib.auto.FollowPath.Waypoint;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonUtilsBenchmark {
+    // Relative to the project directory, which is where the jmh task runs
+    @Param({"src/main/deploy/autos/Test1.json"})
+    public String path;
+
+    private File file;
+
+    @Setup
+    public void setup() {
+        file = new File(path);
+    }
+
+    @Benchmark
+    public List<Waypoint> loadWaypoints() {
+        return JsonUtils.loadWaypoints(file);
+    }
+}
@@ -0,0 +1,86 @@
+package frc.robot.lib.estimation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+
+/**
+ * Cost of one odometry sample, and of one vision measurement, in each pose estimator backend. At
+ * 250 Hz an odometry sample has to stay well under the 4 ms period, the EKF targets a few
+ * microseconds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PoseEstimatorBackendBenchmark {
+    @Param({"WPILIB", "EKF"})
+    public PoseEstimatorBackend.Type backendType;
+
+    private PoseEstimatorScenario scenario;
+    private PoseEstimatorBackend backend;
+    private final SwerveModulePosition[] positions = PoseEstimatorScenario.createPositions();
+
+    private int sample;
+    private int vision;
+
+    @Setup
+    public void setup() {
+        scenario = new PoseEstimatorScenario(20, 2638);
+        backend = PoseEstimatorScenario.createBackend(backendType, scenario.kinematics);
+        restart();
+    }
+
+    private void restart() {
+        scenario.setPositions(0, positions);
+        backend.resetPosition(new Rotation2d(scenario.gyroRad[0]), positions, scenario.getInitialPose());
+        sample = 1;
+        vision = 0;
+    }
+
+    @Benchmark
+    public Pose2d odometrySample() {
+        if (sample >= scenario.sampleCount) {
+            restart();
+        }
+
+        scenario.setPositions(sample, positions);
+        Pose2d pose = backend.updateWithTime(scenario.timestamps[sample], new Rotation2d(scenario.gyroRad[sample]), true, positions);
+        sample++;
+        return pose;
+    }
+
+    /** One vision measurement per 12 odometry samples, the rate the scenario records them at. */
+    @Benchmark
+    public Pose2d odometryAndVision() {
+        if (vision >= scenario.visionCount) {
+            restart();
+        }
+
+        int arrival = scenario.visionArrivalSamples[vision];
+        while (sample <= arrival) {
+            scenario.setPositions(sample, positions);
+            backend.updateWithTime(scenario.timestamps[sample], new Rotation2d(scenario.gyroRad[sample]), true, positions);
+            sample++;
+        }
+        backend.addVisionMeasurement(scenario.visionPoses[vision], scenario.visionTimestamps[vision], scenario.visionStdDevs);
+        vision++;
+        return backend.getEstimatedPosition();
+    }
+}
@@ -0,0 +1,76 @@
+package frc.robot.lib.estimation;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+
+/**
+ * Replays a {@link PoseEstimatorScenario} through every pose estimator backend and prints how far
+ * each one ends up from the true pose. Run the main method from the jmh source set, the optional
+ * arguments are the duration in seconds and the random seed.
+ */
+public final class PoseEstimatorComparison {
+    private PoseEstimatorComparison() {}
+
+    public static void main(String[] args) {
+        double durationSeconds = args.length > 0 ? Double.parseDouble(args[0]) : 60;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 2638;
+        PoseEstimatorScenario scenario = new PoseEstimatorScenario(durationSeconds, seed);
+
+        System.out.printf(
+            "%d odometry samples, %d vision measurements, gyro bias %.3f deg/s, slip %.3f%n",
+            scenario.sampleCount,
+            scenario.visionCount,
+            Math.toDegrees(PoseEstimatorScenario.kTRUE_GYRO_BIAS_RAD_PER_SEC),
+            PoseEstimatorScenario.kTRUE_SLIP
+        );
+        for (PoseEstimatorBackend.Type type : PoseEstimatorBackend.Type.values()) {
+            PoseEstimatorBackend backend = PoseEstimatorScenario.createBackend(type, scenario.kinematics);
+            replay(type, backend, scenario);
+        }
+    }
+
+    private static void replay(PoseEstimatorBackend.Type type, PoseEstimatorBackend backend, PoseEstimatorScenario scenario) {
+        SwerveModulePosition[] positions = PoseEstimatorScenario.createPositions();
+        scenario.setPositions(0, positions);
+        backend.resetPosition(new Rotation2d(scenario.gyroRad[0]), positions, scenario.getInitialPose());
+
+        double translationErrorSumSq = 0;
+        double headingErrorSumSq = 0;
+        double maxTranslationError = 0;
+        int nextVision = 0;
+        long startNanos = System.nanoTime();
+        for (int i = 1; i < scenario.sampleCount; i++) {
+            scenario.setPositions(i, positions);
+            Pose2d pose = backend.updateWithTime(scenario.timestamps[i], new Rotation2d(scenario.gyroRad[i]), true, positions);
+
+            while (nextVision < scenario.visionCount && scenario.visionArrivalSamples[nextVision] == i) {
+                backend.addVisionMeasurement(scenario.visionPoses[nextVision], scenario.visionTimestamps[nextVision], scenario.visionStdDevs);
+                pose = backend.getEstimatedPosition();
+                nextVision++;
+            }
+
+            double translationError = Math.hypot(pose.getX() - scenario.truePose[i][0], pose.getY() - scenario.truePose[i][1]);
+            double headingError = MathUtil.angleModulus(pose.getRotation().getRadians() - scenario.truePose[i][2]);
+            translationErrorSumSq += translationError * translationError;
+            headingErrorSumSq += headingError * headingError;
+            maxTranslationError = Math.max(maxTranslationError, translationError);
+        }
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+        int n = scenario.sampleCount - 1;
+        System.out.printf(
+            "%-7s rms translation %.4f m, max translation %.4f m, rms heading %.3f deg, %.2f us per sample",
+            type,
+            Math.sqrt(translationErrorSumSq / n),
+            maxTranslationError,
+            Math.toDegrees(Math.sqrt(headingErrorSumSq / n)),
+            elapsedSeconds / n * 1e6
+        );
+        if (backend instanceof SwerveEkfPoseEstimatorBackend ekf) {
+            System.out.printf(", estimated gyro bias %.3f deg/s, slip %.3f", Math.toDegrees(ekf.getGyroBiasRadPerSec()), ekf.getSlip());
+        }
+        System.out.println();
+    }
+}
@@ -0,0 +1,168 @@
+package frc.robot.lib.estimation;
+
+import java.util.Random;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import frc.robot.subsystems.swerve.FourModuleKinematics;
+
+/**
+ * Synthetic drive recording for comparing pose estimator backends: 250 Hz wheel positions and gyro
+ * readings of a robot weaving and turning across the field, with a drifting gyro and slipping
+ * wheels, plus delayed and noisy vision poses at 20 Hz. Deterministic for a given seed.
+ */
+public class PoseEstimatorScenario {
+    public static final double kODOMETRY_PERIOD_SECONDS = 0.004;
+    public static final int kSAMPLES_PER_VISION_MEASUREMENT = 12;
+    public static final double kVISION_LATENCY_SECONDS = 0.06;
+
+    public static final double kTRUE_GYRO_BIAS_RAD_PER_SEC = Math.toRadians(0.3);
+    public static final double kTRUE_SLIP = 0.04;
+    public static final double kGYRO_NOISE_RAD = 0.0005;
+    public static final double kVISION_TRANSLATION_DEV_METERS = 0.05;
+    public static final double kVISION_HEADING_DEV_RAD = 0.05;
+
+    private static final Translation2d frontLeft = new Translation2d(0.29, 0.29);
+    private static final Translation2d frontRight = new Translation2d(0.29, -0.29);
+    private static final Translation2d backLeft = new Translation2d(-0.29, 0.29);
+    private static final Translation2d backRight = new Translation2d(-0.29, -0.29);
+
+    public final FourModuleKinematics kinematics = new FourModuleKinematics(frontLeft, frontRight, backLeft, backRight);
+
+    public final int sampleCount;
+    public final double[] timestamps;
+    public final double[][] wheelDistancesMeters;
+    public final double[][] wheelAnglesRad;
+    public final double[] gyroRad;
+    public final double[][] truePose;
+
+    // Vision measurement i arrives with odometry sample visionArrivalSamples[i]
+    public final int visionCount;
+    public final int[] visionArrivalSamples;
+    public final Pose2d[] visionPoses;
+    public final double[] visionTimestamps;
+    public final Matrix<N3, N1> visionStdDevs = VecBuilder.fill(kVISION_TRANSLATION_DEV_METERS, kVISION_TRANSLATION_DEV_METERS, kVISION_HEADING_DEV_RAD);
+
+    public PoseEstimatorScenario(double durationSeconds, long seed) {
+        Random random = new Random(seed);
+
+        sampleCount = (int) (durationSeconds / kODOMETRY_PERIOD_SECONDS);
+        timestamps = new double[sampleCount];
+        wheelDistancesMeters = new double[sampleCount][4];
+        wheelAnglesRad = new double[sampleCount][4];
+        gyroRad = new double[sampleCount];
+        truePose = new double[sampleCount][3];
+
+        double x = 2;
+        double y = 4;
+        double theta = 0;
+        double[] speeds = new double[4];
+        double[] angles = new double[4];
+        double[] distances = new double[4];
+        for (int i = 0; i < sampleCount; i++) {
+            double t = i * kODOMETRY_PERIOD_SECONDS;
+            double vx = 2.0 * Math.cos(0.5 * t);
+            double vy = 1.5 * Math.sin(0.8 * t);
+            double omega = 1.2 * Math.sin(0.3 * t);
+
+            // Robot relative speeds at the middle of the step
+            double midTheta = theta + omega * kODOMETRY_PERIOD_SECONDS / 2;
+            double cos = Math.cos(midTheta);
+            double sin = Math.sin(midTheta);
+            kinematics.toModuleStates(vx * cos + vy * sin, -vx * sin + vy * cos, omega, speeds, angles);
+
+            if (i > 0) {
+                x += vx * kODOMETRY_PERIOD_SECONDS;
+                y += vy * kODOMETRY_PERIOD_SECONDS;
+                theta += omega * kODOMETRY_PERIOD_SECONDS;
+                for (int j = 0; j < 4; j++) {
+                    // Slipping wheels under-report the distance driven
+                    distances[j] += speeds[j] * kODOMETRY_PERIOD_SECONDS / (1 + kTRUE_SLIP);
+                }
+            }
+
+            timestamps[i] = t;
+            System.arraycopy(distances, 0, wheelDistancesMeters[i], 0, 4);
+            System.arraycopy(angles, 0, wheelAnglesRad[i], 0, 4);
+            gyroRad[i] = theta + kTRUE_GYRO_BIAS_RAD_PER_SEC * t + random.nextGaussian() * kGYRO_NOISE_RAD;
+            truePose[i][0] = x;
+            truePose[i][1] = y;
+            truePose[i][2] = MathUtil.angleModulus(theta);
+        }
+
+        int latencySamples = (int) Math.round(kVISION_LATENCY_SECONDS / kODOMETRY_PERIOD_SECONDS);
+        visionCount = Math.max(0, (sampleCount - latencySamples) / kSAMPLES_PER_VISION_MEASUREMENT);
+        visionArrivalSamples = new int[visionCount];
+        visionPoses = new Pose2d[visionCount];
+        visionTimestamps = new double[visionCount];
+        for (int i = 0; i < visionCount; i++) {
+            int captureSample = i * kSAMPLES_PER_VISION_MEASUREMENT;
+            visionArrivalSamples[i] = captureSample + latencySamples;
+            visionTimestamps[i] = timestamps[captureSample];
+            visionPoses[i] = new Pose2d(
+                truePose[captureSample][0] + random.nextGaussian() * kVISION_TRANSLATION_DEV_METERS,
+                truePose[captureSample][1] + random.nextGaussian() * kVISION_TRANSLATION_DEV_METERS,
+                new Rotation2d(truePose[captureSample][2] + random.nextGaussian() * kVISION_HEADING_DEV_RAD)
+            );
+        }
+    }
+
+    public static PoseEstimatorBackend createBackend(PoseEstimatorBackend.Type type, FourModuleKinematics kinematics) {
+        switch (type) {
+            case EKF:
+                return new SwerveEkfPoseEstimatorBackend(
+                    kinematics,
+                    new SwerveEkfPoseEstimatorBackend.Tuning(0.02, 0.05, Math.toRadians(0.05), Math.toRadians(0.01), 0.005, Math.toRadians(0.1), 0.03),
+                    2.0,
+                    501
+                );
+
+            case WPILIB:
+            default:
+                SwerveModulePosition[] positions = createPositions();
+                return new WPILibPoseEstimatorBackend(
+                    new SwerveDrivePoseEstimator(
+                        new SwerveDriveKinematics(frontLeft, frontRight, backLeft, backRight),
+                        new Rotation2d(),
+                        positions,
+                        new Pose2d(),
+                        VecBuilder.fill(0.005, 0.005, 0),
+                        VecBuilder.fill(0.02, 0.02, 9999999)
+                    )
+                );
+        }
+    }
+
+    public static SwerveModulePosition[] createPositions() {
+        return new SwerveModulePosition[] {
+            new SwerveModulePosition(),
+            new SwerveModulePosition(),
+            new SwerveModulePosition(),
+            new SwerveModulePosition()
+        };
+    }
+
+    /** Copies sample i into positions. */
+    public void setPositions(int i, SwerveModulePosition[] positions) {
+        for (int j = 0; j < 4; j++) {
+            positions[j].distanceMeters = wheelDistancesMeters[i][j];
+            if (positions[j].angle.getRadians() != wheelAnglesRad[i][j]) {
+                positions[j].angle = new Rotation2d(wheelAnglesRad[i][j]);
+            }
+        }
+    }
+
+    /** Pose at sample 0, to reset backends to. */
+    public Pose2d getInitialPose() {
+        return new Pose2d(truePose[0][0], truePose[0][1], new Rotation2d(truePose[0][2]));
+    }
+}
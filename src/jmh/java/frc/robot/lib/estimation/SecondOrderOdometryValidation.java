@@ -0,0 +1,151 @@
+package frc.robot.lib.estimation;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.BenchmarkSupport;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigSim;
+import frc.robot.constants.swerve.moduleConfigs.sim.SwerveModuleGeneralConfigSim;
+import frc.robot.subsystems.swerve.FourModuleKinematics;
+import frc.robot.subsystems.swerve.module.ModuleIO;
+import frc.robot.subsystems.swerve.module.ModuleIO.ModuleIOInputs;
+import frc.robot.subsystems.swerve.module.ModuleIOSim;
+
+/**
+ * Drives the simulated modules through a spin while translating and prints the drift per meter of
+ * 250 Hz odometry with and without {@link SecondOrderWheelOdometry}. The modules are stepped every
+ * 0.2 ms, and the odometry integrated at that rate stands in for the true pose, ModuleIOSim has no
+ * chassis physics of its own. Run the main method from the jmh source set, the optional argument is
+ * the duration in seconds.
+ */
+public final class SecondOrderOdometryValidation {
+    private static final double kFINE_PERIOD_SECONDS = 0.0002;
+    private static final int kFINE_STEPS_PER_SAMPLE = 20;
+    private static final int kSAMPLES_PER_LOOP = 5;
+
+    private static final double kTRANSLATION_SPEED_METERS_PER_SEC = 4.5;
+    private static final double kOMEGA_RAD_PER_SEC = 6;
+
+    private SecondOrderOdometryValidation() {}
+
+    public static void main(String[] args) {
+        double durationSeconds = args.length > 0 ? Double.parseDouble(args[0]) : 10;
+
+        BenchmarkSupport.initializeHAL();
+        SimHooks.pauseTiming();
+
+        SwerveDrivetrainConfigBase drivetrainConfig = SwerveDrivetrainConfigSim.getInstance();
+        FourModuleKinematics kinematics = new FourModuleKinematics(
+            drivetrainConfig.getFrontLeftPositionMeters(),
+            drivetrainConfig.getFrontRightPositionMeters(),
+            drivetrainConfig.getBackLeftPositionMeters(),
+            drivetrainConfig.getBackRightPositionMeters()
+        );
+
+        ModuleIO[] modules = new ModuleIO[4];
+        ModuleIOInputs[] inputs = new ModuleIOInputs[4];
+        for (int i = 0; i < 4; i++) {
+            modules[i] = new ModuleIOSim(SwerveModuleGeneralConfigSim.getInstance(), i);
+            inputs[i] = new ModuleIOInputs();
+            modules[i].updateInputs(inputs[i]);
+        }
+
+        SecondOrderWheelOdometry secondOrder = new SecondOrderWheelOdometry();
+        double[] speeds = new double[4];
+        double[] commandAngles = new double[4];
+        double[] distances = new double[4];
+        double[] angles = new double[4];
+        double[] correctedDistances = new double[4];
+        double[] correctedAngles = new double[4];
+        double[] lastFineDistances = new double[4];
+        double[] lastSampleDistances = new double[4];
+        double[] lastCorrectedDistances = new double[4];
+        Twist2d twist = new Twist2d();
+
+        read(inputs, distances, angles);
+        System.arraycopy(distances, 0, lastFineDistances, 0, 4);
+        System.arraycopy(distances, 0, lastSampleDistances, 0, 4);
+        secondOrder.update(distances, angles, correctedDistances, correctedAngles);
+        System.arraycopy(correctedDistances, 0, lastCorrectedDistances, 0, 4);
+
+        Pose2d truePose = new Pose2d();
+        Pose2d firstOrderPose = new Pose2d();
+        Pose2d secondOrderPose = new Pose2d();
+        double traveledMeters = 0;
+
+        int sampleCount = (int) (durationSeconds / (kFINE_PERIOD_SECONDS * kFINE_STEPS_PER_SAMPLE));
+        for (int sample = 0; sample < sampleCount; sample++) {
+            if (sample % kSAMPLES_PER_LOOP == 0) {
+                // Field relative translation that sweeps around slowly, like driving a curve while spinning
+                double t = sample * kFINE_PERIOD_SECONDS * kFINE_STEPS_PER_SAMPLE;
+                double direction = 0.3 * t;
+                double heading = truePose.getRotation().getRadians();
+                double vx = kTRANSLATION_SPEED_METERS_PER_SEC * Math.cos(direction - heading);
+                double vy = kTRANSLATION_SPEED_METERS_PER_SEC * Math.sin(direction - heading);
+                kinematics.toModuleStates(vx, vy, kOMEGA_RAD_PER_SEC, speeds, commandAngles);
+
+                for (int i = 0; i < 4; i++) {
+                    double angle = commandAngles[i];
+                    double speed = speeds[i];
+                    if (Math.abs(MathUtil.angleModulus(angle - angles[i])) > Math.PI / 2) {
+                        angle = MathUtil.angleModulus(angle + Math.PI);
+                        speed = -speed;
+                    }
+                    modules[i].setState(speed, angle);
+                }
+            }
+
+            for (int step = 0; step < kFINE_STEPS_PER_SAMPLE; step++) {
+                SimHooks.stepTiming(kFINE_PERIOD_SECONDS);
+                for (int i = 0; i < 4; i++) {
+                    modules[i].updateInputs(inputs[i]);
+                }
+                read(inputs, distances, angles);
+
+                kinematics.toTwist2d(lastFineDistances, distances, angles, twist);
+                truePose = truePose.exp(twist);
+                traveledMeters += Math.hypot(twist.dx, twist.dy);
+                System.arraycopy(distances, 0, lastFineDistances, 0, 4);
+            }
+
+            kinematics.toTwist2d(lastSampleDistances, distances, angles, twist);
+            firstOrderPose = firstOrderPose.exp(twist);
+            System.arraycopy(distances, 0, lastSampleDistances, 0, 4);
+
+            secondOrder.update(distances, angles, correctedDistances, correctedAngles);
+            kinematics.toTwist2d(lastCorrectedDistances, correctedDistances, correctedAngles, twist);
+            secondOrderPose = secondOrderPose.exp(twist);
+            System.arraycopy(correctedDistances, 0, lastCorrectedDistances, 0, 4);
+        }
+
+        System.out.printf(
+            "%.1f s at %.1f m/s and %.1f rad/s, %.2f m traveled%n",
+            durationSeconds,
+            kTRANSLATION_SPEED_METERS_PER_SEC,
+            kOMEGA_RAD_PER_SEC,
+            traveledMeters
+        );
+        print("first order", firstOrderPose, truePose, traveledMeters);
+        print("second order", secondOrderPose, truePose, traveledMeters);
+    }
+
+    private static void read(ModuleIOInputs[] inputs, double[] distancesOut, double[] anglesOut) {
+        for (int i = 0; i < 4; i++) {
+            distancesOut[i] = inputs[i].drivePositionMeters;
+            anglesOut[i] = inputs[i].steerPosition.getRadians();
+        }
+    }
+
+    private static void print(String name, Pose2d pose, Pose2d truePose, double traveledMeters) {
+        double translationError = pose.getTranslation().getDistance(truePose.getTranslation());
+        double headingError = Math.abs(MathUtil.angleModulus(pose.getRotation().getRadians() - truePose.getRotation().getRadians()));
+        System.out.printf(
+            "%-13s translation drift %.2f cm/m, heading drift %.3f deg/m%n",
+            name,
+            translationError * 100 / traveledMeters,
+            Math.toDegrees(headingError) / traveledMeters
+        );
+    }
+}
@@ -0,0 +1,34 @@
+package frc.robot.lib.util;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.constants.Constants.AlignmentConstants;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AlignmentUtilBenchmark {
+    private final List<Pose2d> candidates = List.of(AlignmentConstants.kREEF_CENTER_FACES);
+    private final Pose2d pose = new Pose2d(2.9, 4.4, Rotation2d.fromDegrees(30));
+
+    @Benchmark
+    public int getClosestReefFace() {
+        return AlignmentUtil.getClosestReefFace(pose, candidates);
+    }
+}
@@ -0,0 +1,78 @@
+package frc.robot.lib.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.lib.util.LimelightBuffers.PoseEstimateBuffer;
+import frc.robot.lib.util.LimelightBuffers.RawFiducialBuffer;
+
+/**
+ * Decoding botpose and rawfiducials arrays with LimelightHelpers against the preallocated
+ * {@link LimelightBuffers}. The gc profiler enabled in build.gradle reports the allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LimelightBuffersBenchmark {
+    @Param({"1", "4"})
+    public int tagCount;
+
+    private double[] botpose;
+    private double[] rawFiducials;
+    private final long timestampMicros = 12_345_678;
+
+    private final PoseEstimateBuffer poseEstimateBuffer = new PoseEstimateBuffer();
+    private final RawFiducialBuffer rawFiducialBuffer = new RawFiducialBuffer(LimelightBuffers.kMAX_FIDUCIALS);
+
+    @Setup
+    public void setup() {
+        // x, y, z, roll, pitch, yaw, latency, tag count, tag span, average distance, average area,
+        // then id, txnc, tync, ta, distance to camera, distance to robot, ambiguity per tag
+        botpose = new double[11 + tagCount * LimelightBuffers.kVALUES_PER_FIDUCIAL];
+        double[] header = {3.1, 4.2, 0.0, 0.0, 0.0, 35.0, 24.0, tagCount, 0.4, 2.5, 0.8};
+        System.arraycopy(header, 0, botpose, 0, header.length);
+
+        rawFiducials = new double[tagCount * LimelightBuffers.kVALUES_PER_FIDUCIAL];
+        for (int i = 0; i < tagCount; i++) {
+            double[] fiducial = {17 + i, 0.1 * i, -0.2, 0.9, 2.4 + 0.1 * i, 2.6 + 0.1 * i, 0.05};
+            System.arraycopy(fiducial, 0, botpose, 11 + i * LimelightBuffers.kVALUES_PER_FIDUCIAL, fiducial.length);
+            System.arraycopy(fiducial, 0, rawFiducials, i * LimelightBuffers.kVALUES_PER_FIDUCIAL, fiducial.length);
+        }
+    }
+
+    @Benchmark
+    public LimelightHelpers.PoseEstimate helpersPoseEstimate() {
+        return LimelightHelpers.toPoseEstimate(botpose, timestampMicros, true);
+    }
+
+    @Benchmark
+    public PoseEstimateBuffer bufferPoseEstimate() {
+        poseEstimateBuffer.decode(botpose, timestampMicros, true);
+        return poseEstimateBuffer;
+    }
+
+    @Benchmark
+    public LimelightHelpers.RawFiducial[] helpersRawFiducials() {
+        return LimelightHelpers.toRawFiducials(rawFiducials);
+    }
+
+    @Benchmark
+    public RawFiducialBuffer bufferRawFiducials() {
+        rawFiducialBuffer.decode(rawFiducials);
+        return rawFiducialBuffer;
+    }
+}
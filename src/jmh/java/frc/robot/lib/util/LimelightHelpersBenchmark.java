@@ -0,0 +1,46 @@
+package frc.robot.lib.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.BenchmarkSupport;
+
+/** Decoding a MegaTag2 pose estimate published to a local NetworkTables instance. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LimelightHelpersBenchmark {
+    private static final String limelightName = "limelight";
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.initializeHAL();
+
+        // x, y, z, roll, pitch, yaw, latency, tag count, tag span, average distance, average area,
+        // then id, txnc, tync, ta, distance to camera, distance to robot, ambiguity per tag
+        double[] botpose = {
+            3.1, 4.2, 0.0, 0.0, 0.0, 35.0, 24.0, 2, 0.4, 2.5, 0.8,
+            18, 0.1, -0.2, 0.9, 2.4, 2.6, 0.05,
+            17, -0.3, 0.1, 0.7, 2.6, 2.8, 0.08
+        };
+        LimelightHelpers.setLimelightNTDoubleArray(limelightName, "botpose_orb_wpiblue", botpose);
+    }
+
+    @Benchmark
+    public LimelightHelpers.PoseEstimate getBotPoseEstimate() {
+        return LimelightHelpers.getBotPoseEstimate_wpiBlue_MegaTag2(limelightName);
+    }
+}
@@ -0,0 +1,92 @@
+package frc.robot.lib.util;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import frc.robot.lib.util.LimelightBuffers.ResultsBuffer;
+
+/**
+ * Parsing a JSON results document the way {@link LimelightHelpers#getLatestResults(String)} does,
+ * with an ObjectMapper, against {@link LimelightResultsParser}. The document has fiducial targets
+ * plus classifier and detector results that the streaming parser skips.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LimelightResultsParserBenchmark {
+    @Param({"1", "4"})
+    public int fiducialCount;
+
+    private String json;
+
+    private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final LimelightResultsParser parser = new LimelightResultsParser();
+    private final ResultsBuffer results = new ResultsBuffer();
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"pID\":0,\"tl\":18.2,\"cl\":6.1,\"ts\":123456.7,\"ts_rio\":42.1,\"v\":1,");
+        builder.append("\"botpose\":[-5.1,0.3,0.0,0.0,0.0,35.0],");
+        builder.append("\"botpose_wpiblue\":[3.1,4.2,0.0,0.0,0.0,35.0],");
+        builder.append("\"botpose_wpired\":[13.4,3.9,0.0,0.0,0.0,-145.0],");
+        builder.append("\"botpose_tagcount\":").append(fiducialCount).append(",");
+        builder.append("\"botpose_span\":0.4,\"botpose_avgdist\":2.5,\"botpose_avgarea\":0.8,");
+        builder.append("\"t6c_rs\":[0.2,0.1,0.5,0.0,20.0,0.0],");
+
+        builder.append("\"Fiducial\":[");
+        for (int i = 0; i < fiducialCount; i++) {
+            if (i > 0) {
+                builder.append(",");
+            }
+            builder.append(String.format(
+                Locale.ROOT,
+                "{\"fID\":%d,\"fam\":\"36H11\",\"ta\":0.9,\"tx\":%.2f,\"ty\":-2.1,\"txp\":640.5,\"typ\":360.2," +
+                "\"tx_nocross\":%.2f,\"ty_nocross\":-2.1,\"ts\":0," +
+                "\"t6c_ts\":[0.1,0.2,-2.4,1.0,2.0,3.0],\"t6r_fs\":[3.1,4.2,0.0,0.0,0.0,35.0]," +
+                "\"t6r_ts\":[0.3,0.1,-2.6,1.0,2.0,3.0],\"t6t_cs\":[-0.1,0.2,2.4,1.0,2.0,3.0]," +
+                "\"t6t_rs\":[0.2,0.3,2.6,1.0,2.0,3.0],\"pts\":[[600,320],[680,320],[680,400],[600,400]]}",
+                17 + i,
+                1.5 * i,
+                1.5 * i
+            ));
+        }
+        builder.append("],");
+
+        builder.append("\"Classifier\":[{\"class\":\"coral\",\"classID\":1,\"conf\":0.92,\"zone\":0,\"tx\":1.0,\"txp\":600,\"ty\":2.0,\"typ\":300}],");
+        builder.append("\"Detector\":[{\"class\":\"algae\",\"classID\":0,\"conf\":0.88,\"ta\":0.3,\"tx\":-4.0,\"ty\":1.0,\"txp\":500,\"typ\":330,");
+        builder.append("\"tx_nocross\":-4.0,\"ty_nocross\":1.0,\"pts\":[[480,300],[520,300],[520,340],[480,340]]}],");
+        builder.append("\"Retro\":[],\"Barcode\":[]}");
+        json = builder.toString();
+    }
+
+    @Benchmark
+    public LimelightHelpers.LimelightResults objectMapper() throws JsonProcessingException {
+        return mapper.readValue(json, LimelightHelpers.LimelightResults.class);
+    }
+
+    @Benchmark
+    public ResultsBuffer streamingParser() {
+        parser.parse(json, results);
+        return results;
+    }
+}
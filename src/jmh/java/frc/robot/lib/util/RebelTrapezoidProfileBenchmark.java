@@ -0,0 +1,30 @@
+package frc.robot.lib.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RebelTrapezoidProfileBenchmark {
+    private final RebelTrapezoidProfile profile = new RebelTrapezoidProfile(new RebelTrapezoidProfile.Constraints(3.0, 6.0));
+    private final RebelTrapezoidProfile.State current = new RebelTrapezoidProfile.State(0.2, 0.5, 0.0);
+    private final RebelTrapezoidProfile.State goal = new RebelTrapezoidProfile.State(2.4, 0.0, 0.0);
+
+    @Benchmark
+    public RebelTrapezoidProfile.State calculate() {
+        return profile.calculate(0.02, current, goal);
+    }
+}
@@ -0,0 +1,134 @@
+package frc.robot.subsystems.swerve;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/** FourModuleKinematics against SwerveDriveKinematics, on the calls made every control loop and odometry sample. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FourModuleKinematicsBenchmark {
+    private static final Translation2d frontLeft = new Translation2d(0.29, 0.29);
+    private static final Translation2d frontRight = new Translation2d(0.29, -0.29);
+    private static final Translation2d backLeft = new Translation2d(-0.29, 0.29);
+    private static final Translation2d backRight = new Translation2d(-0.29, -0.29);
+
+    private SwerveDriveKinematics wpilibKinematics;
+    private FourModuleKinematics kinematics;
+
+    private final ChassisSpeeds chassisSpeeds = new ChassisSpeeds(2.1, -0.7, 1.3);
+
+    private final SwerveModuleState[] moduleStates = new SwerveModuleState[4];
+    // Desaturation works in place, each invocation copies the saturated speeds in first
+    private final SwerveModuleState[] scratchModuleStates = new SwerveModuleState[4];
+    private final SwerveModulePosition[] startPositions = new SwerveModulePosition[4];
+    private final SwerveModulePosition[] endPositions = new SwerveModulePosition[4];
+
+    private final double[] speedsMetersPerSec = new double[4];
+    private final double[] anglesRad = new double[4];
+    private final double[] startDistancesMeters = new double[4];
+    private final double[] endDistancesMeters = new double[4];
+
+    private final double[] speedsOut = new double[4];
+    private final double[] scratchSpeeds = new double[4];
+    private final double[] anglesOut = new double[4];
+    private final ChassisSpeeds chassisSpeedsOut = new ChassisSpeeds();
+    private final Twist2d twistOut = new Twist2d();
+
+    @Setup
+    public void setup() {
+        wpilibKinematics = new SwerveDriveKinematics(frontLeft, frontRight, backLeft, backRight);
+        kinematics = new FourModuleKinematics(frontLeft, frontRight, backLeft, backRight);
+
+        for (int i = 0; i < 4; i++) {
+            speedsMetersPerSec[i] = 1.5 + 0.25 * i;
+            anglesRad[i] = -1.0 + 0.6 * i;
+            startDistancesMeters[i] = 10.0 + i;
+            endDistancesMeters[i] = startDistancesMeters[i] + 0.008 * (i + 1);
+
+            moduleStates[i] = new SwerveModuleState(speedsMetersPerSec[i], new Rotation2d(anglesRad[i]));
+            scratchModuleStates[i] = new SwerveModuleState(speedsMetersPerSec[i], new Rotation2d(anglesRad[i]));
+            startPositions[i] = new SwerveModulePosition(startDistancesMeters[i], new Rotation2d(anglesRad[i]));
+            endPositions[i] = new SwerveModulePosition(endDistancesMeters[i], new Rotation2d(anglesRad[i]));
+        }
+    }
+
+    @Benchmark
+    public SwerveModuleState[] wpilibToModuleStates() {
+        return wpilibKinematics.toSwerveModuleStates(chassisSpeeds);
+    }
+
+    @Benchmark
+    public void toModuleStates(Blackhole blackhole) {
+        kinematics.toModuleStates(
+            chassisSpeeds.vxMetersPerSecond,
+            chassisSpeeds.vyMetersPerSecond,
+            chassisSpeeds.omegaRadiansPerSecond,
+            speedsOut,
+            anglesOut
+        );
+        blackhole.consume(speedsOut);
+        blackhole.consume(anglesOut);
+    }
+
+    @Benchmark
+    public ChassisSpeeds wpilibToChassisSpeeds() {
+        return wpilibKinematics.toChassisSpeeds(moduleStates);
+    }
+
+    @Benchmark
+    public ChassisSpeeds toChassisSpeeds() {
+        kinematics.toChassisSpeeds(speedsMetersPerSec, anglesRad, chassisSpeedsOut);
+        return chassisSpeedsOut;
+    }
+
+    @Benchmark
+    public Twist2d wpilibToTwist2d() {
+        return wpilibKinematics.toTwist2d(startPositions, endPositions);
+    }
+
+    @Benchmark
+    public Twist2d toTwist2d() {
+        kinematics.toTwist2d(startDistancesMeters, endDistancesMeters, anglesRad, twistOut);
+        return twistOut;
+    }
+
+    // Every speed is above 1 m/s, so both always take the scaling path
+    @Benchmark
+    public SwerveModuleState[] wpilibDesaturate() {
+        for (int i = 0; i < 4; i++) {
+            scratchModuleStates[i].speedMetersPerSecond = speedsMetersPerSec[i];
+        }
+        SwerveDriveKinematics.desaturateWheelSpeeds(scratchModuleStates, 1.0);
+        return scratchModuleStates;
+    }
+
+    @Benchmark
+    public double[] desaturate() {
+        System.arraycopy(speedsMetersPerSec, 0, scratchSpeeds, 0, 4);
+        FourModuleKinematics.desaturate(scratchSpeeds, 1.0);
+        return scratchSpeeds;
+    }
+}
@@ -0,0 +1,63 @@
+package frc.robot.subsystems.swerve;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigSim;
+
+/**
+ * One SwerveDrive control cycle: field relative transform, acceleration limiting (formerly
+ * SwerveDrive.limitAcceleration), kinematics, desaturation and optimization.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SwerveControlPipelineBenchmark {
+    private SwerveControlPipeline pipeline;
+
+    private final ChassisSpeeds desiredRobotRelativeSpeeds = new ChassisSpeeds();
+    private final double[] measuredSteerAnglesRad = {0.1, -0.4, 2.9, -2.2};
+    private double headingRad = 0;
+    private int cycle = 0;
+
+    @Setup
+    public void setup() {
+        SwerveDrivetrainConfigSim config = SwerveDrivetrainConfigSim.getInstance();
+        pipeline = new SwerveControlPipeline(
+            config,
+            new FourModuleKinematics(
+                config.getFrontLeftPositionMeters(),
+                config.getFrontRightPositionMeters(),
+                config.getBackLeftPositionMeters(),
+                config.getBackRightPositionMeters()
+            )
+        );
+    }
+
+    @Benchmark
+    public SwerveControlPipeline update() {
+        // Alternate between two commands so the acceleration limit is always active
+        boolean isForward = (cycle++ & 64) == 0;
+        desiredRobotRelativeSpeeds.vxMetersPerSecond = isForward ? 3.0 : -3.0;
+        desiredRobotRelativeSpeeds.vyMetersPerSecond = isForward ? 1.0 : -1.0;
+        desiredRobotRelativeSpeeds.omegaRadiansPerSecond = isForward ? 2.0 : -2.0;
+        headingRad += 0.01;
+
+        pipeline.update(desiredRobotRelativeSpeeds, headingRad, 0.02, measuredSteerAnglesRad);
+        return pipeline;
+    }
+}
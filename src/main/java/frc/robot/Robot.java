@@ -119,6 +119,10 @@ public class Robot extends LoggedRobot {
         // robot's periodic
         // block in order for anything in the Command-based framework to work.
         CommandScheduler.getInstance().run();
+
+        // Fuse every vision observation added this loop in one pass
+        RobotState.getInstance().fuseVisionObservations();
+        RobotState.getInstance().dispatchEvents();
     }
 
     /** This function is called once each time the robot enters Disabled mode. */
@@ -14,6 +14,7 @@ import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine.Direction;
 import frc.robot.commands.AbsoluteFieldDrive;
 import frc.robot.lib.input.XboxController;
 import frc.robot.subsystems.swerve.SwerveDrive;
+import frc.robot.subsystems.vision.Vision;
 import frc.robot.lib.auto.FollowPath;
 import frc.robot.lib.auto.FollowPath.Waypoint;
 import frc.robot.lib.auto.JsonUtils;
@@ -30,6 +31,7 @@ public class RobotContainer {
     }
 
     private final SwerveDrive swerveDrive = SwerveDrive.getInstance();
+    private final Vision vision = Vision.getInstance();
     private final RobotState robotState = RobotState.getInstance(); // we just initialize it here to save time during first reference in subsystems
 
     private final XboxController xboxTester;
@@ -3,11 +3,9 @@ package frc.robot;
 import edu.wpi.first.math.*;
 import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.geometry.*;
-import edu.wpi.first.math.interpolation.*;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
-import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.wpilibj.Timer;
@@ -20,10 +18,23 @@ import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
 import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigComp;
 import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigProto;
 import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigSim;
+import frc.robot.lib.estimation.PoseEstimatorBackend;
+import frc.robot.lib.estimation.SecondOrderWheelOdometry;
+import frc.robot.lib.estimation.SwerveEkfPoseEstimatorBackend;
+import frc.robot.lib.estimation.VisionObservationScorer;
+import frc.robot.lib.estimation.WPILibPoseEstimatorBackend;
+import frc.robot.lib.estimation.WheelSlipDetector;
+import frc.robot.lib.util.EventTopic;
+import frc.robot.lib.util.LimelightHelpers.PoseEstimate;
+import frc.robot.lib.util.PoseHistoryBuffer;
+import frc.robot.lib.util.PosePredictor;
+import frc.robot.subsystems.swerve.FourModuleKinematics;
+import frc.robot.subsystems.swerve.OdometryEstimatorThread;
+import frc.robot.subsystems.swerve.SwerveDrive;
 
 import java.util.ArrayList;
-import java.util.NoSuchElementException;
-import java.util.function.Consumer;
+import java.util.Comparator;
+import java.util.Optional;
 
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
@@ -37,15 +48,6 @@ public class RobotState {
         return instance;
     }
   
-    public record OdometryObservation(
-        double timestampsSeconds,
-        boolean isGyroConnected,
-        SwerveModulePosition[] modulePositions, 
-        SwerveModuleState[] moduleStates,
-        Rotation2d yawPosition,
-        double yawVelocityRadPerSec
-    ) {}
-
     public static enum VisionObservationScale {
         GLOBAL,
         LOCAL
@@ -58,36 +60,100 @@ public class RobotState {
         VisionObservationScale scale
     ) {}
 
+    /**
+     * A change of the requested vision observation scale.
+     *
+     * @param localTarget point the local estimate should be centered on, empty for GLOBAL
+     */
+    public record VisionScaleRequest(
+        VisionObservationScale scale,
+        Optional<Translation2d> localTarget
+    ) {}
 
-    private static final double poseBufferSizeSeconds = 2.0;
-    private final TimeInterpolatableBuffer<Pose2d> poseBuffer = TimeInterpolatableBuffer.createBuffer(poseBufferSizeSeconds);
 
-    private final SwerveDrivePoseEstimator swerveDrivePoseEstimator;
+    private static final double poseBufferSizeSeconds = 2.0;
+    // One estimated pose per odometry sample, keyed by the sample timestamp
+    private final PoseHistoryBuffer poseBuffer = new PoseHistoryBuffer(
+        poseBufferSizeSeconds,
+        (int) Math.ceil(poseBufferSizeSeconds * SwerveDrive.ODOMETRY_FREQUENCY) + 1
+    );
+
+    private static final double posePredictionWindowSeconds = 0.12;
+    private final PosePredictor posePredictor = new PosePredictor(
+        posePredictionWindowSeconds,
+        (int) Math.ceil(posePredictionWindowSeconds * SwerveDrive.ODOMETRY_FREQUENCY) + 1
+    );
+    // Snapshot version the predictor was last fit at, the pose history only changes when it does
+    private long posePredictorFitVersion = -1;
+
+    private final PoseEstimatorBackend poseEstimator;
 
     private double lastEstimatedPoseUpdateTime = 0;
     private int localVisionObservationUpdateCount = 0;
 
     // Odometry
-    private final SwerveDriveKinematics kinematics;
-    private SwerveModulePosition[] lastWheelPositions = {
+    private final FourModuleKinematics kinematics;
+    private final SwerveModulePosition[] lastWheelPositions = {
         new SwerveModulePosition(),
         new SwerveModulePosition(),
         new SwerveModulePosition(),
         new SwerveModulePosition()
     };
+    // Reused for every odometry sample, the estimator copies the values it keeps
+    private final SwerveModulePosition[] sampleWheelPositions = {
+        new SwerveModulePosition(),
+        new SwerveModulePosition(),
+        new SwerveModulePosition(),
+        new SwerveModulePosition()
+    };
+    private final double[] lastWheelDistancesMeters = new double[4];
+    private final double[] sampleWheelDistancesMeters = new double[4];
+    private final double[] sampleRawWheelDistancesMeters = new double[4];
+    private final double[] sampleWheelAnglesRad = new double[4];
+    private final Twist2d sampleTwist = new Twist2d();
+    // Null unless enabled, see RobotStateConfigBase.getUseSecondOrderOdometry()
+    private final SecondOrderWheelOdometry secondOrderWheelOdometry;
+    // Wheel distances given to the estimator have slip removed, see WheelSlipDetector
+    private final WheelSlipDetector wheelSlipDetector;
 
     private double lastYawVelocityRadPerSec = 0;
     private ChassisSpeeds lastRobotRelativeSpeeds = new ChassisSpeeds();
 
+    // Replaced, never modified, so readers on any thread see one whole snapshot
+    private volatile RobotStateSnapshot snapshot = new RobotStateSnapshot(0, 0, new Pose2d(), new ChassisSpeeds(), new ChassisSpeeds(), 0, true);
+
     private final SwerveDrivetrainConfigBase drivetrainConfig;
     private final RobotStateConfigBase robotStateConfig;
 
-    private final ArrayList<Runnable> onOdometryUpdateRunnables = new ArrayList<Runnable>();
-    private final ArrayList<Consumer<Translation2d>> onLocalVisionEstimateRunnables = new ArrayList<Consumer<Translation2d>>();
-    private final ArrayList<Runnable> onGlobalVisionEstimateRunnables = new ArrayList<Runnable>();
+    // Null unless SwerveDrive started one, see RobotStateConfigBase.getUseOdometryEstimatorThread()
+    private OdometryEstimatorThread odometryEstimatorThread = null;
+    private OdometryEstimatorThread.Anchor odometryEstimatorAnchor = null;
+    // Estimate the last snapshot was built from, null if it came from the estimator
+    private OdometryEstimatorThread.Estimate snapshotOdometryEstimate = null;
+    private double snapshotOdometryEstimateLatencySeconds = 0;
+
+    // Events
+    private final EventTopic<RobotStateSnapshot> odometryUpdateEvents = new EventTopic<>("RobotState/events/odometryUpdate");
+    private final EventTopic<VisionObservation> visionAcceptedEvents = new EventTopic<>("RobotState/events/visionAccepted");
+    private final EventTopic<VisionObservation> visionRejectedEvents = new EventTopic<>("RobotState/events/visionRejected");
+    private final EventTopic<Pose2d> poseResetEvents = new EventTopic<>("RobotState/events/poseReset");
+    private final EventTopic<VisionScaleRequest> visionScaleRequestEvents = new EventTopic<>("RobotState/events/visionScaleRequest");
 
     private VisionObservationScale requestedObservationScale = VisionObservationScale.GLOBAL;
 
+    // Vision
+    private static final Comparator<VisionObservation> visionObservationTimestampComparator = Comparator.comparingDouble(VisionObservation::timestamp);
+    private final ArrayList<VisionObservation> pendingVisionObservations = new ArrayList<VisionObservation>();
+    // Fused observations still inside the pose buffer timespan, oldest first
+    private final ArrayList<VisionObservation> fusedVisionObservations = new ArrayList<VisionObservation>();
+    private final ArrayList<VisionObservation> visionReplay = new ArrayList<VisionObservation>();
+    private final ArrayList<VisionObservation> gatedVisionObservations = new ArrayList<VisionObservation>();
+    private final VisionObservationScorer visionObservationScorer;
+    private final double[] gatePoseCovariance = new double[9];
+    private final double[] visionYawVelocity = new double[3];
+    // Outliers gated since the last fuse, logged with it
+    private int outlierObservationCount = 0;
+
     private RobotState() {
         switch (Constants.currentMode) {
             case COMP:
@@ -122,124 +188,525 @@ public class RobotState {
                 break;
     }
 
-        kinematics = new SwerveDriveKinematics(
+        visionObservationScorer = new VisionObservationScorer(robotStateConfig);
+
+        secondOrderWheelOdometry = createSecondOrderWheelOdometry();
+        wheelSlipDetector = createWheelSlipDetector();
+
+        kinematics = new FourModuleKinematics(
             drivetrainConfig.getFrontLeftPositionMeters(),
             drivetrainConfig.getFrontRightPositionMeters(),
             drivetrainConfig.getBackLeftPositionMeters(),
             drivetrainConfig.getBackRightPositionMeters()
         ); 
 
-        swerveDrivePoseEstimator = new SwerveDrivePoseEstimator(
-            kinematics,
-            new Rotation2d(), 
-            lastWheelPositions, 
-            new Pose2d(),
-            VecBuilder.fill(
-                robotStateConfig.getOdomTranslationDevBase(),
-                robotStateConfig.getOdomTranslationDevBase(),
-                0
-            ),
-            VecBuilder.fill(
-                robotStateConfig.getVisionTranslationDevBase(),
-                robotStateConfig.getVisionTranslationDevBase(),
-                9999999
-            )
-        );  
+        switch (robotStateConfig.getPoseEstimatorBackendType()) {
+            case EKF:
+                poseEstimator = new SwerveEkfPoseEstimatorBackend(
+                    kinematics,
+                    new SwerveEkfPoseEstimatorBackend.Tuning(
+                        robotStateConfig.getEkfTranslationDevPerMeter(),
+                        robotStateConfig.getEkfWheelHeadingDevPerRad(),
+                        robotStateConfig.getEkfGyroHeadingDevRadPerSqrtSec(),
+                        robotStateConfig.getEkfGyroBiasRandomWalkRadPerSecPerSqrtSec(),
+                        robotStateConfig.getEkfSlipRandomWalkPerSqrtSec(),
+                        robotStateConfig.getEkfInitialGyroBiasDevRadPerSec(),
+                        robotStateConfig.getEkfInitialSlipDev()
+                    ),
+                    poseBufferSizeSeconds,
+                    (int) Math.ceil(poseBufferSizeSeconds * SwerveDrive.ODOMETRY_FREQUENCY) + 1
+                );
+
+                break;
+
+            case WPILIB:
+            default:
+                // The estimator needs WPILib's kinematics, everything else uses the specialized one
+                poseEstimator = new WPILibPoseEstimatorBackend(
+                    new SwerveDrivePoseEstimator(
+                        new SwerveDriveKinematics(
+                            drivetrainConfig.getFrontLeftPositionMeters(),
+                            drivetrainConfig.getFrontRightPositionMeters(),
+                            drivetrainConfig.getBackLeftPositionMeters(),
+                            drivetrainConfig.getBackRightPositionMeters()
+                        ),
+                        new Rotation2d(), 
+                        lastWheelPositions, 
+                        new Pose2d(),
+                        VecBuilder.fill(
+                            robotStateConfig.getOdomTranslationDevBase(),
+                            robotStateConfig.getOdomTranslationDevBase(),
+                            0
+                        ),
+                        VecBuilder.fill(
+                            robotStateConfig.getVisionTranslationDevBase(),
+                            robotStateConfig.getVisionTranslationDevBase(),
+                            VisionObservationScorer.kIGNORED_HEADING_DEV
+                        )
+                    )
+                );
+
+                break;
+        }
     }   
 
-    /** Add odometry observation */
-    public void addOdometryObservation(OdometryObservation observation) {
-        Logger.recordOutput("RobotState/odometry/timestamp", observation.timestampsSeconds());
-        Logger.recordOutput("RobotState/odometry/isGyroConnected", observation.isGyroConnected());
-        Logger.recordOutput("RobotState/odometry/modulePositions", observation.modulePositions());
-        Logger.recordOutput("RobotState/odometry/moduleStates", observation.moduleStates());
-        Logger.recordOutput("RobotState/odometry/yawPosition", observation.yawPosition());
-        Logger.recordOutput("RobotState/odometry/yawVelocityRadPerSec", observation.yawVelocityRadPerSec());
+    /**
+     * Integrates a batch of odometry samples, oldest first. <br>
+     * The per module arrays are indexed [module][sample] and hold the same number of samples, as read
+     * from the module inputs in one loop.
+     *
+     * @param moduleTimestampsSeconds sample timestamps of each module, the chassis sample is taken at their mean
+     * @param moduleDrivePositionsMeters drive positions of each module
+     * @param moduleSteerPositionsRad steer angles of each module
+     * @param moduleVelocitiesMetersPerSec latest measured drive velocity of each module, used for the robot relative speeds
+     * @param moduleAnglesRad latest measured steer angle of each module
+     * @param isGyroConnected whether yawPositionsRad and yawVelocityRadPerSec are valid
+     * @param yawPositionsRad gyro yaw of each sample
+     * @param yawVelocityRadPerSec latest gyro yaw velocity
+     */
+    public void addOdometryObservations(
+        double[][] moduleTimestampsSeconds,
+        double[][] moduleDrivePositionsMeters,
+        double[][] moduleSteerPositionsRad,
+        double[] moduleVelocitiesMetersPerSec,
+        double[] moduleAnglesRad,
+        boolean isGyroConnected,
+        double[] yawPositionsRad,
+        double yawVelocityRadPerSec
+    ) {
+        if (odometryEstimatorThread != null) {
+            odometryEstimatorThread.setGyroConnected(isGyroConnected);
+        }
 
         // update robotState member variables
-        lastRobotRelativeSpeeds = kinematics.toChassisSpeeds(observation.moduleStates);
-        lastRobotRelativeSpeeds.omegaRadiansPerSecond = observation.isGyroConnected ? observation.yawVelocityRadPerSec() : lastRobotRelativeSpeeds.omegaRadiansPerSecond;
-        lastYawVelocityRadPerSec = observation.isGyroConnected ? observation.yawVelocityRadPerSec() : lastRobotRelativeSpeeds.omegaRadiansPerSecond;
-
-        swerveDrivePoseEstimator.updateWithTime(
-            observation.timestampsSeconds(), 
-            observation.isGyroConnected() ? 
-                observation.yawPosition() : 
-                new Rotation2d(
-                    swerveDrivePoseEstimator.getEstimatedPosition().getRotation().getRadians() + 
-                    kinematics.toTwist2d(lastWheelPositions, observation.modulePositions()).dtheta
-                ), 
-            observation.modulePositions()
-        );
-        lastWheelPositions = observation.modulePositions();
+        lastRobotRelativeSpeeds = new ChassisSpeeds();
+        kinematics.toChassisSpeeds(moduleVelocitiesMetersPerSec, moduleAnglesRad, lastRobotRelativeSpeeds);
+        lastRobotRelativeSpeeds.omegaRadiansPerSecond = isGyroConnected ? yawVelocityRadPerSec : lastRobotRelativeSpeeds.omegaRadiansPerSecond;
+        lastYawVelocityRadPerSec = isGyroConnected ? yawVelocityRadPerSec : lastRobotRelativeSpeeds.omegaRadiansPerSecond;
+
+        int sampleCount = moduleTimestampsSeconds[0].length;
+        double firstTimestampSeconds = 0;
+        double timestampSeconds = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            timestampSeconds = 0;
+            for (int j = 0; j < 4; j++) {
+                sampleRawWheelDistancesMeters[j] = moduleDrivePositionsMeters[j][i];
+                sampleWheelAnglesRad[j] = moduleSteerPositionsRad[j][i];
+                timestampSeconds += moduleTimestampsSeconds[j][i] / 4.0;
+            }
+            if (i == 0) {
+                firstTimestampSeconds = timestampSeconds;
+            }
 
-        lastEstimatedPoseUpdateTime = Timer.getTimestamp();
+            // Corrects the samples in place, slip detection and the estimator see the corrected ones
+            if (secondOrderWheelOdometry != null) {
+                secondOrderWheelOdometry.update(sampleRawWheelDistancesMeters, sampleWheelAnglesRad, sampleRawWheelDistancesMeters, sampleWheelAnglesRad);
+            }
 
-        // Add pose to buffer at timestamp
-        poseBuffer.addSample(lastEstimatedPoseUpdateTime, swerveDrivePoseEstimator.getEstimatedPosition()); 
+            wheelSlipDetector.update(
+                timestampSeconds,
+                sampleRawWheelDistancesMeters,
+                sampleWheelAnglesRad,
+                isGyroConnected,
+                isGyroConnected ? yawPositionsRad[i] : 0,
+                sampleWheelDistancesMeters
+            );
+            poseEstimator.setOdometryDevScale(wheelSlipDetector.getOdometryDevScale());
+
+            for (int j = 0; j < 4; j++) {
+                SwerveModulePosition position = sampleWheelPositions[j];
+                position.distanceMeters = sampleWheelDistancesMeters[j];
+                // Steer angles rarely change between samples, only allocate when they do
+                if (position.angle.getRadians() != sampleWheelAnglesRad[j]) {
+                    position.angle = new Rotation2d(sampleWheelAnglesRad[j]);
+                }
+            }
 
-        for (Runnable runnable : onOdometryUpdateRunnables) {
-            runnable.run();
+            if (!isGyroConnected) {
+                kinematics.toTwist2d(lastWheelDistancesMeters, sampleWheelDistancesMeters, sampleWheelAnglesRad, sampleTwist);
+            }
+
+            Pose2d estimatedPose = poseEstimator.updateWithTime(
+                timestampSeconds, 
+                isGyroConnected ? 
+                    new Rotation2d(yawPositionsRad[i]) : 
+                    new Rotation2d(
+                        poseEstimator.getEstimatedPosition().getRotation().getRadians() + 
+                        sampleTwist.dtheta
+                    ), 
+                isGyroConnected,
+                sampleWheelPositions
+            );
+            poseBuffer.addSample(timestampSeconds, estimatedPose);
+
+            for (int j = 0; j < 4; j++) {
+                lastWheelPositions[j].distanceMeters = sampleWheelPositions[j].distanceMeters;
+                lastWheelPositions[j].angle = sampleWheelPositions[j].angle;
+                lastWheelDistancesMeters[j] = sampleWheelDistancesMeters[j];
+            }
+        }
+
+        Logger.recordOutput("RobotState/odometry/sampleCount", sampleCount);
+        Logger.recordOutput("RobotState/odometry/firstTimestamp", firstTimestampSeconds);
+        Logger.recordOutput("RobotState/odometry/timestamp", timestampSeconds);
+        Logger.recordOutput("RobotState/odometry/isGyroConnected", isGyroConnected);
+        Logger.recordOutput("RobotState/odometry/modulePositions", lastWheelPositions);
+        Logger.recordOutput("RobotState/odometry/yawVelocityRadPerSec", yawVelocityRadPerSec);
+        poseEstimator.log("RobotState/estimator");
+        Logger.recordOutput("RobotState/odometry/wheelSlip/residualsMetersPerSec", wheelSlipDetector.getResidualsMetersPerSec());
+        Logger.recordOutput("RobotState/odometry/wheelSlip/slipSampleCounts", wheelSlipDetector.getSlipSampleCounts());
+        Logger.recordOutput("RobotState/odometry/wheelSlip/offsetsMeters", wheelSlipDetector.getOffsetsMeters());
+        Logger.recordOutput("RobotState/odometry/wheelSlip/impactCount", wheelSlipDetector.getImpactCount());
+        Logger.recordOutput("RobotState/odometry/wheelSlip/odometryDevScale", wheelSlipDetector.getOdometryDevScale());
+
+        if (sampleCount == 0) {
+            publishSnapshot();
+            return;
         }
 
+        lastEstimatedPoseUpdateTime = Timer.getTimestamp();
+        publishOdometryEstimatorAnchor(timestampSeconds);
+        publishSnapshot();
+
+        odometryUpdateEvents.publish(snapshot);
+
         Logger.recordOutput("RobotState/vision/localVisionObservationUpdateCount", localVisionObservationUpdateCount);
         Logger.recordOutput("RobotState/vision/requestedObservationScale", requestedObservationScale);
     }
 
+    /**
+     * Queues a vision observation, it is fused with the rest of the loop's observations in
+     * {@link #fuseVisionObservations()}. It should have passed {@link #gateVisionObservation(VisionObservation)},
+     * observations built from several gated ones are not gated again.
+     */
     public void addVisionObservation(VisionObservation observation) {
-        // If measurement is old enough to be outside the pose buffer's timespan, skip.
-        try {
-            if (poseBuffer.getInternalBuffer().lastKey() - poseBufferSizeSeconds > observation.timestamp()) {
-                return;
-            }
-        } 
-        
-        catch (NoSuchElementException ex) {
-            return;
+        pendingVisionObservations.add(observation);
+    }
+
+    /**
+     * Checks an observation against the estimated pose at its timestamp, see
+     * {@link VisionObservationScorer#gate(VisionObservation, Pose2d, double[])}, with the backend's
+     * covariance as the estimate's uncertainty when it tracks one. Outliers are published as rejected.
+     * Observations too old for the estimator pass, {@link #fuseVisionObservations()} expires them.
+     *
+     * @return false if the observation is an outlier
+     */
+    public boolean gateVisionObservation(VisionObservation observation) {
+        if (poseBuffer.isEmpty() || observation.timestamp() < poseBuffer.getLatestTimestamp() - poseEstimator.getHistorySeconds()) {
+            return true;
         }
 
-        Logger.recordOutput("RobotState/vision/stdDevTranslation", observation.stdDevs().get(0,0));
-        Logger.recordOutput("RobotState/vision/visionPose", observation.visionPose());
+        Optional<Pose2d> estimatedPose = poseBuffer.getPose(observation.timestamp());
+        // Current covariance rather than the one at the observation's timestamp, the backends keep no history of it
+        boolean hasPoseCovariance = poseEstimator.getPoseCovariance(gatePoseCovariance);
+        if (estimatedPose.isPresent() && !visionObservationScorer.gate(observation, estimatedPose.get(), hasPoseCovariance ? gatePoseCovariance : null)) {
+            outlierObservationCount++;
+            visionRejectedEvents.publish(observation);
+            return false;
+        }
 
-        swerveDrivePoseEstimator.addVisionMeasurement(observation.visionPose(), observation.timestamp(), observation.stdDevs());
-        if (observation.scale() == VisionObservationScale.LOCAL && requestedObservationScale == VisionObservationScale.LOCAL) {
-            localVisionObservationUpdateCount++;
+        return true;
+    }
+
+    /**
+     * Scores a Limelight pose estimate and queues it as a vision observation, with std devs from its
+     * tag count, distance and ambiguity and the robot's yaw rate when it was captured.
+     *
+     * @return false if the estimate was rejected
+     */
+    public boolean addVisionObservation(PoseEstimate estimate, VisionObservationScale scale) {
+        VisionObservation observation = scoreVisionObservation(estimate, scale);
+        if (observation == null || !gateVisionObservation(observation)) {
+            return false;
         }
-        else if (requestedObservationScale == VisionObservationScale.GLOBAL) {
-            localVisionObservationUpdateCount = 0;
+
+        addVisionObservation(observation);
+        return true;
+    }
+
+    /**
+     * Scores a Limelight pose estimate like {@link #addVisionObservation(PoseEstimate, VisionObservationScale)}
+     * without queuing it, for callers that combine observations before adding them.
+     *
+     * @return the observation, or null if the estimate was rejected
+     */
+    public VisionObservation scoreVisionObservation(PoseEstimate estimate, VisionObservationScale scale) {
+        VisionObservation observation = visionObservationScorer.score(
+            estimate,
+            scale,
+            estimate != null ? getYawVelocityAt(estimate.timestampSeconds) : lastYawVelocityRadPerSec
+        );
+        Logger.recordOutput("RobotState/vision/scoring/lastResult", visionObservationScorer.getLastRejection());
+        return observation;
+    }
+
+    /**
+     * Scores a pose estimate given as its fields, see
+     * {@link VisionObservationScorer#score(double, double, double, double, int, double, double, double, boolean, VisionObservationScale, double)}.
+     * Rejected estimates allocate nothing.
+     *
+     * @return the observation, or null if the estimate was rejected
+     */
+    public VisionObservation scoreVisionObservation(
+        double xMeters,
+        double yMeters,
+        double yawRad,
+        double timestampSeconds,
+        int tagCount,
+        double avgTagDistMeters,
+        double avgTagAreaPercent,
+        double maxAmbiguity,
+        boolean isMegaTag2,
+        VisionObservationScale scale
+    ) {
+        VisionObservation observation = visionObservationScorer.score(
+            xMeters,
+            yMeters,
+            yawRad,
+            timestampSeconds,
+            tagCount,
+            avgTagDistMeters,
+            avgTagAreaPercent,
+            maxAmbiguity,
+            isMegaTag2,
+            scale,
+            getYawVelocityAt(timestampSeconds)
+        );
+        Logger.recordOutput("RobotState/vision/scoring/lastResult", visionObservationScorer.getLastRejection());
+        return observation;
+    }
+
+    private double getYawVelocityAt(double timestampSeconds) {
+        return poseBuffer.getVelocity(timestampSeconds, visionYawVelocity) ? visionYawVelocity[2] : lastYawVelocityRadPerSec;
+    }
+
+    /**
+     * Fuses the vision observations queued this loop, oldest first. <br>
+     * The estimator drops every fused observation newer than the one being added, so already fused
+     * observations newer than the oldest queued one are fused again, in order, in the same pass.
+     * Call once per loop, after everything that adds observations has run.
+     */
+    public void fuseVisionObservations() {
+        long startNanos = System.nanoTime();
+
+        int newObservationCount = pendingVisionObservations.size();
+        int expiredObservationCount = 0;
+        int replayedObservationCount = 0;
+        double replaySpanSeconds = 0;
+        int replayOdometrySampleCount = 0;
+
+        if (newObservationCount > 0) {
+            pendingVisionObservations.sort(visionObservationTimestampComparator);
+
+            // Measurements older than the estimator's history are ignored by it, count them as expired
+            double oldestUsableTimestamp = poseBuffer.isEmpty() ?
+                Double.POSITIVE_INFINITY :
+                poseBuffer.getLatestTimestamp() - poseEstimator.getHistorySeconds();
+
+            int firstUsable = 0;
+            while (firstUsable < newObservationCount && pendingVisionObservations.get(firstUsable).timestamp() < oldestUsableTimestamp) {
+                firstUsable++;
+            }
+            expiredObservationCount = firstUsable;
+            for (int i = 0; i < firstUsable; i++) {
+                visionRejectedEvents.publish(pendingVisionObservations.get(i));
+            }
+
+            int firstExpiredFused = 0;
+            while (firstExpiredFused < fusedVisionObservations.size() && fusedVisionObservations.get(firstExpiredFused).timestamp() < oldestUsableTimestamp) {
+                firstExpiredFused++;
+            }
+            fusedVisionObservations.subList(0, firstExpiredFused).clear();
+
+            // Outliers were dropped when they were gated
+            gatedVisionObservations.clear();
+            for (int i = firstUsable; i < newObservationCount; i++) {
+                gatedVisionObservations.add(pendingVisionObservations.get(i));
+            }
+            int gatedObservationCount = gatedVisionObservations.size();
+
+            if (gatedObservationCount > 0) {
+                double replayStartTimestamp = gatedVisionObservations.get(0).timestamp();
+
+                int firstReplayed = fusedVisionObservations.size();
+                while (poseEstimator.dropsNewerVisionMeasurements() &&
+                    firstReplayed > 0 && fusedVisionObservations.get(firstReplayed - 1).timestamp() > replayStartTimestamp) {
+                    firstReplayed--;
+                }
+                replayedObservationCount = fusedVisionObservations.size() - firstReplayed;
+
+                // Merge the new observations with the fused ones they invalidate
+                visionReplay.clear();
+                int newIndex = 0;
+                int fusedIndex = firstReplayed;
+                while (newIndex < gatedObservationCount || fusedIndex < fusedVisionObservations.size()) {
+                    boolean takeNew = fusedIndex >= fusedVisionObservations.size() ||
+                        (newIndex < gatedObservationCount &&
+                            gatedVisionObservations.get(newIndex).timestamp() <= fusedVisionObservations.get(fusedIndex).timestamp());
+                    visionReplay.add(takeNew ? gatedVisionObservations.get(newIndex++) : fusedVisionObservations.get(fusedIndex++));
+                }
+                fusedVisionObservations.subList(firstReplayed, fusedVisionObservations.size()).clear();
+
+                for (VisionObservation observation : visionReplay) {
+                    poseEstimator.addVisionMeasurement(observation.visionPose(), observation.timestamp(), observation.stdDevs());
+                    fusedVisionObservations.add(observation);
+                }
+
+                for (VisionObservation observation : gatedVisionObservations) {
+                    if (observation.scale() == VisionObservationScale.LOCAL && requestedObservationScale == VisionObservationScale.LOCAL) {
+                        localVisionObservationUpdateCount++;
+                    }
+                    else if (requestedObservationScale == VisionObservationScale.GLOBAL) {
+                        localVisionObservationUpdateCount = 0;
+                    }
+                    visionAcceptedEvents.publish(observation);
+                }
+
+                replaySpanSeconds = poseBuffer.getLatestTimestamp() - replayStartTimestamp;
+                replayOdometrySampleCount = poseBuffer.countSamplesAfter(replayStartTimestamp);
+
+                lastEstimatedPoseUpdateTime = Timer.getTimestamp();
+                publishOdometryEstimatorAnchor(poseBuffer.getLatestTimestamp());
+                publishSnapshot();
+            }
+
+            Pose2d[] visionPoses = new Pose2d[newObservationCount];
+            double[] stdDevTranslations = new double[newObservationCount];
+            for (int i = 0; i < newObservationCount; i++) {
+                visionPoses[i] = pendingVisionObservations.get(i).visionPose();
+                stdDevTranslations[i] = pendingVisionObservations.get(i).stdDevs().get(0, 0);
+            }
+            Logger.recordOutput("RobotState/vision/visionPoses", visionPoses);
+            Logger.recordOutput("RobotState/vision/stdDevTranslations", stdDevTranslations);
+
+            pendingVisionObservations.clear();
         }
 
-        lastEstimatedPoseUpdateTime = Timer.getTimestamp();
+        Logger.recordOutput("RobotState/vision/fusion/newObservationCount", newObservationCount);
+        Logger.recordOutput("RobotState/vision/fusion/expiredObservationCount", expiredObservationCount);
+        Logger.recordOutput("RobotState/vision/fusion/outlierObservationCount", outlierObservationCount);
+        outlierObservationCount = 0;
+        Logger.recordOutput("RobotState/vision/fusion/lastMahalanobisDistanceSq", visionObservationScorer.getLastMahalanobisDistanceSq());
+        Logger.recordOutput("RobotState/vision/fusion/consecutiveOutlierCount", visionObservationScorer.getConsecutiveOutlierCount());
+        Logger.recordOutput("RobotState/vision/fusion/replayedObservationCount", replayedObservationCount);
+        Logger.recordOutput("RobotState/vision/fusion/replaySpanSeconds", replaySpanSeconds);
+        Logger.recordOutput("RobotState/vision/fusion/replayOdometrySampleCount", replayOdometrySampleCount);
+        Logger.recordOutput("RobotState/vision/fusion/fusionTimeSeconds", (System.nanoTime() - startNanos) / 1e9);
+
+        // Last snapshot update of the loop, log the estimate it ended with once
+        if (odometryEstimatorThread != null) {
+            Logger.recordOutput("RobotState/odometryEstimatorThread/isSnapshotFromThread", snapshotOdometryEstimate != null);
+            if (snapshotOdometryEstimate != null) {
+                Logger.recordOutput("RobotState/odometryEstimatorThread/latencySeconds", snapshotOdometryEstimateLatencySeconds);
+                Logger.recordOutput("RobotState/odometryEstimatorThread/frameSequence", snapshotOdometryEstimate.frameSequence());
+            }
+        }
     }
 
 
-    public void registerRunnableOnOdometryUpdate(Runnable runnable) {
-        onOdometryUpdateRunnables.add(runnable);
+    public boolean isOdometryEstimatorThreadEnabled() {
+        return robotStateConfig.getUseOdometryEstimatorThread();
     }
 
-    public void registerRunnableOnLocalVisionEstimateRequest(Consumer<Translation2d> runnable) {
-        onLocalVisionEstimateRunnables.add(runnable);
+    /** Serve {@link #getEstimatedPose()} from this thread, which is anchored to the estimator after every update. */
+    public void setOdometryEstimatorThread(OdometryEstimatorThread thread) {
+        odometryEstimatorThread = thread;
+        if (!poseBuffer.isEmpty()) {
+            publishOdometryEstimatorAnchor(poseBuffer.getLatestTimestamp());
+        }
     }
 
-    public void registerRunnableOnGlobalVisionEstimateRequest(Runnable runnable) {
-        onGlobalVisionEstimateRunnables.add(runnable);
+    private void publishOdometryEstimatorAnchor(double timestampSeconds) {
+        if (odometryEstimatorThread != null) {
+            odometryEstimatorAnchor = new OdometryEstimatorThread.Anchor(timestampSeconds, poseEstimator.getEstimatedPosition());
+            odometryEstimatorThread.setAnchor(odometryEstimatorAnchor);
+        }
     }
 
-    public void requestGlobalVisionEstimateScale() {
-        for (Runnable runnable : onGlobalVisionEstimateRunnables) {
-            runnable.run();
+    private void publishSnapshot() {
+        snapshotOdometryEstimate = getOdometryEstimatorEstimate();
+        if (snapshotOdometryEstimate != null) {
+            snapshotOdometryEstimateLatencySeconds = Timer.getTimestamp() - snapshotOdometryEstimate.timestampSeconds();
         }
+        Pose2d estimatedPose = snapshotOdometryEstimate != null ? snapshotOdometryEstimate.pose() : poseEstimator.getEstimatedPosition();
+        snapshot = new RobotStateSnapshot(
+            snapshot.version() + 1,
+            lastEstimatedPoseUpdateTime,
+            estimatedPose,
+            lastRobotRelativeSpeeds,
+            ChassisSpeeds.fromRobotRelativeSpeeds(lastRobotRelativeSpeeds, estimatedPose.getRotation()),
+            lastYawVelocityRadPerSec,
+            isPoseEstimateValid()
+        );
+        Logger.recordOutput("RobotState/snapshotVersion", snapshot.version());
+    }
+
+    /**
+     * State as of the last estimator update. Read it once and use it for the rest of the loop to
+     * see the same pose and speeds as every other reader.
+     */
+    public RobotStateSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /** Published with the new snapshot after every odometry batch that had samples. */
+    public EventTopic<RobotStateSnapshot> getOdometryUpdateEvents() {
+        return odometryUpdateEvents;
+    }
+
+    /** Published for every vision observation fused into the estimate. */
+    public EventTopic<VisionObservation> getVisionAcceptedEvents() {
+        return visionAcceptedEvents;
+    }
+
+    /**
+     * Published for every vision observation that is not fused. There are two causes: the Mahalanobis
+     * outlier gate in {@link #gateVisionObservation(VisionObservation)}, or expiring in
+     * {@link #fuseVisionObservations()} for being older than the pose history.
+     */
+    public EventTopic<VisionObservation> getVisionRejectedEvents() {
+        return visionRejectedEvents;
+    }
+
+    /** Published with the new pose after every {@link #resetPose(Pose2d)}. */
+    public EventTopic<Pose2d> getPoseResetEvents() {
+        return poseResetEvents;
+    }
 
+    /** Published on every vision observation scale request. */
+    public EventTopic<VisionScaleRequest> getVisionScaleRequestEvents() {
+        return visionScaleRequestEvents;
+    }
+
+    /**
+     * Delivers this loop's events to the coalesced subscribers and logs subscriber timing.
+     * Call once per loop, after {@link #fuseVisionObservations()}.
+     */
+    public void dispatchEvents() {
+        odometryUpdateEvents.dispatchCoalesced();
+        visionAcceptedEvents.dispatchCoalesced();
+        visionRejectedEvents.dispatchCoalesced();
+        poseResetEvents.dispatchCoalesced();
+        visionScaleRequestEvents.dispatchCoalesced();
+
+        odometryUpdateEvents.logStats();
+        visionAcceptedEvents.logStats();
+        visionRejectedEvents.logStats();
+        poseResetEvents.logStats();
+        visionScaleRequestEvents.logStats();
+    }
+
+    public void requestGlobalVisionEstimateScale() {
         requestedObservationScale = VisionObservationScale.GLOBAL;
         localVisionObservationUpdateCount = 0;
+
+        visionScaleRequestEvents.publish(new VisionScaleRequest(VisionObservationScale.GLOBAL, Optional.empty()));
     }
 
     public void requestLocalVisionEstimateScale(Translation2d pose) {
-        for (Consumer<Translation2d> runnable : onLocalVisionEstimateRunnables) {
-            runnable.accept(pose);
-        }
-
         requestedObservationScale = VisionObservationScale.LOCAL;
+
+        visionScaleRequestEvents.publish(new VisionScaleRequest(VisionObservationScale.LOCAL, Optional.of(pose)));
     }  
 
     /**
@@ -248,9 +715,19 @@ public class RobotState {
      */
     public void resetPose(Pose2d initialPose) {
         // SwerveDrive.getInstance().resetGyro(initialPose.getRotation());
-        swerveDrivePoseEstimator.resetPosition(initialPose.getRotation(), lastWheelPositions, initialPose);
+        poseEstimator.resetPosition(initialPose.getRotation(), lastWheelPositions, initialPose);
 
         poseBuffer.clear();
+        // Observations from before the reset no longer apply, the estimator has dropped its own as well
+        pendingVisionObservations.clear();
+        fusedVisionObservations.clear();
+        visionObservationScorer.reset();
+
+        // Anchored after the newest frame, so the thread's estimates are ignored until it catches up
+        publishOdometryEstimatorAnchor(Timer.getTimestamp());
+        publishSnapshot();
+
+        poseResetEvents.publish(initialPose);
     }
 
     public void zeroGyro() {
@@ -265,9 +742,72 @@ public class RobotState {
         return true;
     }
 
+    /**
+     * Latest estimated pose. <br>
+     * With the odometry estimator thread running, this is the estimator's pose carried forward by
+     * the odometry frames that arrived since the last main loop update.
+     */
     @AutoLogOutput(key = "RobotState/estimatedPose")
     public Pose2d getEstimatedPose() {
-        return swerveDrivePoseEstimator.getEstimatedPosition();
+        OdometryEstimatorThread.Estimate estimate = getOdometryEstimatorEstimate();
+        return estimate != null ? estimate.pose() : poseEstimator.getEstimatedPosition();
+    }
+
+    /** The thread's newest estimate, or null if there is no thread or the estimate is from an earlier anchor. */
+    private OdometryEstimatorThread.Estimate getOdometryEstimatorEstimate() {
+        if (odometryEstimatorThread == null) {
+            return null;
+        }
+        OdometryEstimatorThread.Estimate estimate = odometryEstimatorThread.getEstimate();
+        // Estimates from an earlier anchor miss the latest odometry batch or vision correction
+        return estimate != null && estimate.anchor() == odometryEstimatorAnchor ? estimate : null;
+    }
+
+    /** New second order correction for an odometry integrator, or null if the config disables it. */
+    public SecondOrderWheelOdometry createSecondOrderWheelOdometry() {
+        return robotStateConfig.getUseSecondOrderOdometry() ? new SecondOrderWheelOdometry() : null;
+    }
+
+    /** New slip detector tuned like the estimator's, for an odometry integrator that must match it. */
+    public WheelSlipDetector createWheelSlipDetector() {
+        return new WheelSlipDetector(
+            new Translation2d[] {
+                drivetrainConfig.getFrontLeftPositionMeters(),
+                drivetrainConfig.getFrontRightPositionMeters(),
+                drivetrainConfig.getBackLeftPositionMeters(),
+                drivetrainConfig.getBackRightPositionMeters()
+            },
+            new WheelSlipDetector.Tuning(
+                robotStateConfig.getWheelSlipResidualMetersPerSec(),
+                robotStateConfig.getWheelSlipResidualFractionOfSpeed(),
+                robotStateConfig.getImpactSlippingModuleCount(),
+                robotStateConfig.getImpactHoldSeconds(),
+                robotStateConfig.getImpactOdometryDevScale()
+            )
+        );
+    }
+
+    /** Kinematics of the drivetrain, shared with SwerveDrive. */
+    public FourModuleKinematics getKinematics() {
+        return kinematics;
+    }
+
+    /** Estimated pose at a past timestamp, interpolated from the pose history. */
+    public Optional<Pose2d> getEstimatedPoseAt(double timestamp) {
+        return poseBuffer.getPose(timestamp);
+    }
+
+    /**
+     * Field relative velocity of the estimated pose at a past timestamp, from the pose history.
+     * Includes vision corrections, unlike {@link #getFieldRelativeSpeeds()}.
+     */
+    public Optional<ChassisSpeeds> getEstimatedFieldRelativeSpeedsAt(double timestamp) {
+        double[] velocity = new double[3];
+        if (!poseBuffer.getVelocity(timestamp, velocity)) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new ChassisSpeeds(velocity[0], velocity[1], velocity[2]));
     }
 
     public double getYawVelocityRadPerSec() {
@@ -280,10 +820,47 @@ public class RobotState {
 
     @AutoLogOutput(key = "RobotState/fieldRelativeSpeeds")
     public ChassisSpeeds getFieldRelativeSpeeds() { 
-        return ChassisSpeeds.fromRobotRelativeSpeeds(lastRobotRelativeSpeeds, getEstimatedPose().getRotation());
+        return snapshot.fieldRelativeSpeeds();
+    }
+
+    /**
+     * Pose predicted from the velocity and acceleration of the recent pose history, with its
+     * variance. Lookaheads are from the newest odometry sample. Empty if the history is too short.
+     */
+    public Optional<PosePredictor.Prediction> getPosePrediction(double translationLookaheadS, double rotationLookaheadS) {
+        if (!fitPosePredictor()) {
+            return Optional.empty();
+        }
+        return Optional.of(posePredictor.predict(translationLookaheadS, rotationLookaheadS));
+    }
+
+    /** Pose predicted at an FPGA timestamp, see {@link #getPosePrediction(double, double)}. */
+    public Optional<PosePredictor.Prediction> getPosePredictionAt(double timestamp) {
+        if (!fitPosePredictor()) {
+            return Optional.empty();
+        }
+        return Optional.of(posePredictor.predictAt(timestamp));
     }
 
+    private boolean fitPosePredictor() {
+        long version = snapshot.version();
+        if (version != posePredictorFitVersion) {
+            posePredictor.fit(poseBuffer);
+            posePredictorFitVersion = version;
+        }
+        return posePredictor.isFit();
+    }
+
+    /**
+     * Pose predicted translationLookaheadS and rotationLookaheadS ahead, see
+     * {@link #getPosePrediction(double, double)}. Until there is enough history, the robot relative
+     * speeds are held constant instead.
+     */
     public Pose2d getPredictedPose(double translationLookaheadS, double rotationLookaheadS) {
+        if (fitPosePredictor()) {
+            return posePredictor.predict(translationLookaheadS, rotationLookaheadS).pose();
+        }
+
         return getEstimatedPose()
             .transformBy(
                 new Transform2d(
@@ -295,6 +872,10 @@ public class RobotState {
     }
 
     public Pose2d getPredictedPose(double timestamp) {
+        if (fitPosePredictor()) {
+            return posePredictor.predictAt(timestamp).pose();
+        }
+
         return getPredictedPose(timestamp - lastEstimatedPoseUpdateTime, timestamp - lastEstimatedPoseUpdateTime);
     }
 }
\ No newline at end of file
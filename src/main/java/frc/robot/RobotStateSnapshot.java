@@ -0,0 +1,49 @@
+package frc.robot;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
+/**
+ * One consistent view of {@link RobotState}, published after every estimator update. <br>
+ * Snapshots are never modified after they are published, so they can be read from any thread and
+ * held for a whole loop. The version increases by one with every publish, values derived from a
+ * snapshot can be cached against it.
+ *
+ * @param version publish count, starts at 0 for the initial empty snapshot
+ * @param timestampSeconds FPGA time of the estimator update the snapshot was taken after
+ * @param estimatedPose estimated field relative pose
+ * @param robotRelativeSpeeds measured robot relative speeds, do not modify
+ * @param fieldRelativeSpeeds robotRelativeSpeeds rotated by the estimated heading, do not modify
+ * @param yawVelocityRadPerSec gyro yaw velocity, or the wheel estimate when the gyro is disconnected
+ * @param isPoseEstimateValid see {@link RobotState#isPoseEstimateValid()}
+ */
+public record RobotStateSnapshot(
+    long version,
+    double timestampSeconds,
+    Pose2d estimatedPose,
+    ChassisSpeeds robotRelativeSpeeds,
+    ChassisSpeeds fieldRelativeSpeeds,
+    double yawVelocityRadPerSec,
+    boolean isPoseEstimateValid
+) {
+    /**
+     * Estimated pose moved forward at constant robot relative speeds. Cheap and consistent with the
+     * snapshot, {@link RobotState#getPosePrediction(double, double)} also accounts for acceleration.
+     */
+    public Pose2d getPredictedPose(double translationLookaheadS, double rotationLookaheadS) {
+        return estimatedPose.transformBy(
+            new Transform2d(
+                robotRelativeSpeeds.vxMetersPerSecond * translationLookaheadS,
+                robotRelativeSpeeds.vyMetersPerSecond * translationLookaheadS,
+                Rotation2d.fromRadians(robotRelativeSpeeds.omegaRadiansPerSecond * rotationLookaheadS)
+            )
+        );
+    }
+
+    /** Estimated pose at an FPGA timestamp, predicted from the snapshot's update time. */
+    public Pose2d getPredictedPose(double timestamp) {
+        return getPredictedPose(timestamp - timestampSeconds, timestamp - timestampSeconds);
+    }
+}
@@ -1,5 +1,7 @@
 package frc.robot.constants.robotState;
 
+import frc.robot.lib.estimation.PoseEstimatorBackend;
+
 public abstract class RobotStateConfigBase {
     public abstract double getOdomTranslationDevBase();
     public abstract double getVisionTranslationDevBase();
@@ -9,4 +11,40 @@ public abstract class RobotStateConfigBase {
     public abstract double getMaxRotationalVelocityRadPerSecPerSec();
     public abstract int getMinLocalVisionObservationCount();
 
+    public abstract boolean getUseOdometryEstimatorThread();
+
+    // Vision scoring
+    public abstract double getVisionHeadingDevBase();
+    public abstract double getVisionAmbiguityDevScale();
+    public abstract double getVisionYawVelocityDevScale();
+    public abstract double getVisionMinTagAreaPercent();
+    public abstract double getVisionMaxAverageTagDistanceMeters();
+    public abstract double getVisionMaxAmbiguity();
+    public abstract double getVisionMaxYawVelocityRadPerSec();
+
+    // Vision outlier gate, the estimate devs stand in for backends without a covariance
+    public abstract double getVisionGateEstimateTranslationDev();
+    public abstract double getVisionGateEstimateHeadingDev();
+    public abstract double getVisionGateChiSquared();
+    public abstract int getVisionGateMaxConsecutiveOutliers();
+
+    // Pose estimator
+    public abstract PoseEstimatorBackend.Type getPoseEstimatorBackendType();
+    public abstract double getEkfTranslationDevPerMeter();
+    public abstract double getEkfWheelHeadingDevPerRad();
+    public abstract double getEkfGyroHeadingDevRadPerSqrtSec();
+    public abstract double getEkfGyroBiasRandomWalkRadPerSecPerSqrtSec();
+    public abstract double getEkfSlipRandomWalkPerSqrtSec();
+    public abstract double getEkfInitialGyroBiasDevRadPerSec();
+    public abstract double getEkfInitialSlipDev();
+
+    public abstract boolean getUseSecondOrderOdometry();
+
+    // Wheel slip and impacts
+    public abstract double getWheelSlipResidualMetersPerSec();
+    public abstract double getWheelSlipResidualFractionOfSpeed();
+    public abstract int getImpactSlippingModuleCount();
+    public abstract double getImpactHoldSeconds();
+    public abstract double getImpactOdometryDevScale();
+
 }
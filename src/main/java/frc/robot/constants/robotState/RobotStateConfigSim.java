@@ -1,5 +1,7 @@
 package frc.robot.constants.robotState;
 
+import frc.robot.lib.estimation.PoseEstimatorBackend;
+
 public class RobotStateConfigSim extends RobotStateConfigBase {
     private static RobotStateConfigSim instance;
     public static RobotStateConfigSim getInstance() {
@@ -41,4 +43,134 @@ public class RobotStateConfigSim extends RobotStateConfigBase {
     public int getMinLocalVisionObservationCount() {
         return -1;
     }
+
+    @Override
+    public boolean getUseOdometryEstimatorThread() {
+        return false;
+    }
+
+    @Override
+    public double getVisionHeadingDevBase() {
+        return 0.05;
+    }
+
+    @Override
+    public double getVisionAmbiguityDevScale() {
+        return 2.0;
+    }
+
+    @Override
+    public double getVisionYawVelocityDevScale() {
+        return 0.5;
+    }
+
+    @Override
+    public double getVisionMinTagAreaPercent() {
+        return 0.1;
+    }
+
+    @Override
+    public double getVisionMaxAverageTagDistanceMeters() {
+        return 5.0;
+    }
+
+    @Override
+    public double getVisionMaxAmbiguity() {
+        return 0.3;
+    }
+
+    @Override
+    public double getVisionMaxYawVelocityRadPerSec() {
+        return Math.toRadians(540);
+    }
+
+    @Override
+    public double getVisionGateEstimateTranslationDev() {
+        return 0.3;
+    }
+
+    @Override
+    public double getVisionGateEstimateHeadingDev() {
+        return Math.toRadians(10);
+    }
+
+    @Override
+    public double getVisionGateChiSquared() {
+        return 11.34;
+    }
+
+    @Override
+    public int getVisionGateMaxConsecutiveOutliers() {
+        return 15;
+    }
+
+    @Override
+    public PoseEstimatorBackend.Type getPoseEstimatorBackendType() {
+        return PoseEstimatorBackend.Type.WPILIB;
+    }
+
+    @Override
+    public double getEkfTranslationDevPerMeter() {
+        return 0.02;
+    }
+
+    @Override
+    public double getEkfWheelHeadingDevPerRad() {
+        return 0.05;
+    }
+
+    @Override
+    public double getEkfGyroHeadingDevRadPerSqrtSec() {
+        return Math.toRadians(0.05);
+    }
+
+    @Override
+    public double getEkfGyroBiasRandomWalkRadPerSecPerSqrtSec() {
+        return Math.toRadians(0.01);
+    }
+
+    @Override
+    public double getEkfSlipRandomWalkPerSqrtSec() {
+        return 0.005;
+    }
+
+    @Override
+    public double getEkfInitialGyroBiasDevRadPerSec() {
+        return Math.toRadians(0.1);
+    }
+
+    @Override
+    public double getEkfInitialSlipDev() {
+        return 0.03;
+    }
+
+    @Override
+    public boolean getUseSecondOrderOdometry() {
+        return true;
+    }
+
+    @Override
+    public double getWheelSlipResidualMetersPerSec() {
+        return 0.3;
+    }
+
+    @Override
+    public double getWheelSlipResidualFractionOfSpeed() {
+        return 0.15;
+    }
+
+    @Override
+    public int getImpactSlippingModuleCount() {
+        return 2;
+    }
+
+    @Override
+    public double getImpactHoldSeconds() {
+        return 0.3;
+    }
+
+    @Override
+    public double getImpactOdometryDevScale() {
+        return 5;
+    }
 }
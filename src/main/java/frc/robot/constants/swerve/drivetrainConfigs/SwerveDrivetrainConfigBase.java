@@ -55,4 +55,7 @@ public abstract class SwerveDrivetrainConfigBase {
     public abstract double getMaxAlignmentRotationAcelRadPerSecPerSec();
 
     public abstract double getAlgayRecessPoseOffset();
+
+    /** Fraction of the distance the simulated wheels report that they do not actually travel. */
+    public abstract double getSimWheelSlipFraction();
 }
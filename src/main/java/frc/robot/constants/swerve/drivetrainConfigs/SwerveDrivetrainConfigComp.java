@@ -184,4 +184,8 @@ public class SwerveDrivetrainConfigComp extends SwerveDrivetrainConfigBase {
         return 0.5;
     }
 
-}
\ No newline at end of file
+    @Override
+    public double getSimWheelSlipFraction() {
+        return 0;
+    }
+}
@@ -182,4 +182,9 @@ public class SwerveDrivetrainConfigProto extends SwerveDrivetrainConfigBase {
     public double getAlgayRecessPoseOffset() {
         return 0.3;
     }
-}
\ No newline at end of file
+
+    @Override
+    public double getSimWheelSlipFraction() {
+        return 0;
+    }
+}
@@ -226,4 +226,9 @@ public class SwerveDrivetrainConfigSim extends SwerveDrivetrainConfigBase {
     public double getAlgayRecessPoseOffset() {
         return 0.3;
     }
-}
\ No newline at end of file
+
+    @Override
+    public double getSimWheelSlipFraction() {
+        return 0.03;
+    }
+}
@@ -5,6 +5,9 @@ import com.ctre.phoenix6.signals.SensorDirectionValue;
 
 public abstract class SwerveModuleGeneralConfigBase {
     public abstract String getCanBusName();
+    public abstract boolean getUseCANivoreOdometryTimestamps();
+    public abstract int getOdometryThreadPriority();
+    public abstract int getOdometryThreadCpuCore();
 
     public abstract double getDriveSupplyCurrentLimit();
     public abstract double getDriveSupplyCurrentLimitLowerTime();
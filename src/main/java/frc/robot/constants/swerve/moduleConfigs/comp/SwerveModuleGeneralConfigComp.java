@@ -4,6 +4,7 @@ import com.ctre.phoenix6.signals.FeedbackSensorSourceValue;
 import com.ctre.phoenix6.signals.SensorDirectionValue;
 
 import frc.robot.constants.swerve.moduleConfigs.SwerveModuleGeneralConfigBase;
+import frc.robot.subsystems.swerve.RealTimeScheduling;
 
 public class SwerveModuleGeneralConfigComp extends SwerveModuleGeneralConfigBase {
 
@@ -22,6 +23,21 @@ public class SwerveModuleGeneralConfigComp extends SwerveModuleGeneralConfigBase
         return "drivetrain";
     }
 
+    @Override
+    public boolean getUseCANivoreOdometryTimestamps() {
+        return true;
+    }
+
+    @Override
+    public int getOdometryThreadPriority() {
+        return 1;
+    }
+
+    @Override
+    public int getOdometryThreadCpuCore() {
+        return RealTimeScheduling.kANY_CPU_CORE;
+    }
+
     @Override
     public double getDriveSupplyCurrentLimit() {
         return 70.0;
@@ -0,0 +1,39 @@
+package frc.robot.constants.vision;
+
+import java.util.Optional;
+
+import edu.wpi.first.math.geometry.Transform3d;
+
+public abstract class VisionConfigBase {
+    /**
+     * One Limelight.
+     *
+     * @param name NetworkTables name, each camera gets its own ingest thread
+     * @param robotToCamera camera pose relative to the robot center, sent to the camera on startup.
+     *     Empty keeps the pose set in the Limelight's web interface
+     * @param timeOffsetSeconds added to the camera's capture timestamps, for latency it does not report
+     */
+    public record CameraConfig(
+        String name,
+        Optional<Transform3d> robotToCamera,
+        double timeOffsetSeconds
+    ) {}
+
+    public abstract CameraConfig[] getCameras();
+    public abstract boolean getUseMegaTag2();
+
+    /** Estimates a camera may queue between loops before new ones are dropped. */
+    public abstract int getIngestQueueCapacity();
+    /** Time without a new estimate after which a camera counts as disconnected. */
+    public abstract double getDisconnectTimeoutSeconds();
+
+    /** Estimates from different cameras captured within this window are merged into one observation. */
+    public abstract double getFusionWindowSeconds();
+
+    // Simulated cameras
+    public abstract double getSimFrameRateHz();
+    public abstract double getSimLatencySeconds();
+    public abstract double getSimMaxTagDistanceMeters();
+    public abstract double getSimTranslationNoiseMeters();
+    public abstract double getSimAmbiguity();
+}
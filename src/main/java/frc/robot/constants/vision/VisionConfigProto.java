@@ -0,0 +1,68 @@
+package frc.robot.constants.vision;
+
+import java.util.Optional;
+
+public class VisionConfigProto extends VisionConfigBase {
+    private static VisionConfigProto instance;
+    public static VisionConfigProto getInstance() {
+        if (instance == null) {
+            instance = new VisionConfigProto();
+        }
+
+        return instance;
+    }
+
+    private VisionConfigProto() {}
+
+    @Override
+    public CameraConfig[] getCameras() {
+        return new CameraConfig[] {
+            new CameraConfig("limelight", Optional.empty(), 0)
+        };
+    }
+
+    @Override
+    public boolean getUseMegaTag2() {
+        return true;
+    }
+
+    @Override
+    public int getIngestQueueCapacity() {
+        return 16;
+    }
+
+    @Override
+    public double getDisconnectTimeoutSeconds() {
+        return 0.5;
+    }
+
+    @Override
+    public double getFusionWindowSeconds() {
+        return 0.015;
+    }
+
+    @Override
+    public double getSimFrameRateHz() {
+        return 30;
+    }
+
+    @Override
+    public double getSimLatencySeconds() {
+        return 0.035;
+    }
+
+    @Override
+    public double getSimMaxTagDistanceMeters() {
+        return 3.5;
+    }
+
+    @Override
+    public double getSimTranslationNoiseMeters() {
+        return 0.02;
+    }
+
+    @Override
+    public double getSimAmbiguity() {
+        return 0.05;
+    }
+}
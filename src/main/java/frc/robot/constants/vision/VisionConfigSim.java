@@ -0,0 +1,87 @@
+package frc.robot.constants.vision;
+
+import java.util.Optional;
+
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+
+public class VisionConfigSim extends VisionConfigBase {
+    private static VisionConfigSim instance;
+    public static VisionConfigSim getInstance() {
+        if (instance == null) {
+            instance = new VisionConfigSim();
+        }
+
+        return instance;
+    }
+
+    private VisionConfigSim() {}
+
+    @Override
+    public CameraConfig[] getCameras() {
+        return new CameraConfig[] {
+            new CameraConfig(
+                "limelight-left",
+                Optional.of(new Transform3d(
+                    new Translation3d(0.28, 0.25, 0.22),
+                    new Rotation3d(0, Math.toRadians(-15), Math.toRadians(20))
+                )),
+                0
+            ),
+            new CameraConfig(
+                "limelight-right",
+                Optional.of(new Transform3d(
+                    new Translation3d(0.28, -0.25, 0.22),
+                    new Rotation3d(0, Math.toRadians(-15), Math.toRadians(-20))
+                )),
+                0
+            )
+        };
+    }
+
+    @Override
+    public boolean getUseMegaTag2() {
+        return true;
+    }
+
+    @Override
+    public int getIngestQueueCapacity() {
+        return 16;
+    }
+
+    @Override
+    public double getDisconnectTimeoutSeconds() {
+        return 0.5;
+    }
+
+    @Override
+    public double getFusionWindowSeconds() {
+        return 0.015;
+    }
+
+    @Override
+    public double getSimFrameRateHz() {
+        return 30;
+    }
+
+    @Override
+    public double getSimLatencySeconds() {
+        return 0.035;
+    }
+
+    @Override
+    public double getSimMaxTagDistanceMeters() {
+        return 3.5;
+    }
+
+    @Override
+    public double getSimTranslationNoiseMeters() {
+        return 0;
+    }
+
+    @Override
+    public double getSimAmbiguity() {
+        return 0.05;
+    }
+}
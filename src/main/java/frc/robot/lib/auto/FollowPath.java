@@ -56,7 +56,7 @@ public class FollowPath extends Command {
     @Override
     public void initialize() {
         currentWaypointIndex = 0;
-        targetRotation = robotState.getEstimatedPose().getRotation();
+        targetRotation = robotState.getSnapshot().estimatedPose().getRotation();
         targetTranslation = waypoints.get(0).translation;
 
         rotationController.reset();
@@ -73,7 +73,7 @@ public class FollowPath extends Command {
 
     @Override
     public void execute() {
-        Pose2d currentPose = robotState.getEstimatedPose();
+        Pose2d currentPose = robotState.getSnapshot().estimatedPose();
 
         // translational velo
         double translationVelocity;
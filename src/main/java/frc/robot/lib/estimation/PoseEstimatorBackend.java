@@ -0,0 +1,81 @@
+package frc.robot.lib.estimation;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+
+/**
+ * Fuses swerve odometry, gyro and vision into a field relative pose. Mirrors the parts of
+ * SwerveDrivePoseEstimator RobotState uses, so the estimator behind RobotState can be swapped.
+ */
+public interface PoseEstimatorBackend {
+    public static enum Type {
+        /** WPILib's SwerveDrivePoseEstimator */
+        WPILIB,
+        /** Primitive array EKF that also estimates gyro bias and wheel slip */
+        EKF
+    }
+
+    /**
+     * Resets the estimate to pose.
+     *
+     * @param gyroAngle gyro angle at the reset, later gyro angles are relative to it
+     * @param wheelPositions wheel positions at the reset
+     */
+    public void resetPosition(Rotation2d gyroAngle, SwerveModulePosition[] wheelPositions, Pose2d pose);
+
+    /**
+     * Adds one odometry sample.
+     *
+     * @param gyroAngle gyro angle of the sample, when the gyro is disconnected the caller's best
+     * guess from the wheels, which backends that model the gyro may ignore
+     * @param isGyroConnected whether gyroAngle came from the gyro
+     * @param wheelPositions wheel positions of the sample, may be reused by the caller afterwards
+     * @return the estimated pose after the sample
+     */
+    public Pose2d updateWithTime(double timestampSeconds, Rotation2d gyroAngle, boolean isGyroConnected, SwerveModulePosition[] wheelPositions);
+
+    /**
+     * Adds a vision measurement taken at a past timestamp.
+     *
+     * @param stdDevs x, y and heading standard deviations of the measurement
+     */
+    public void addVisionMeasurement(Pose2d visionPose, double timestampSeconds, Matrix<N3, N1> stdDevs);
+
+    public Pose2d getEstimatedPosition();
+
+    /**
+     * How far a vision measurement may be behind the newest odometry sample and still be applied,
+     * older ones are ignored by {@link #addVisionMeasurement(Pose2d, double, Matrix)}.
+     */
+    public double getHistorySeconds();
+
+    /**
+     * Scales the odometry std devs of the following samples, to trust odometry less while it is known
+     * to be wrong. 1 is the configured noise.
+     */
+    public void setOdometryDevScale(double scale);
+
+    /**
+     * Whether adding a vision measurement discards the ones newer than it, which the caller then has
+     * to add again, as SwerveDrivePoseEstimator does.
+     */
+    public default boolean dropsNewerVisionMeasurements() {
+        return false;
+    }
+
+    /**
+     * Writes the 3x3 covariance of the estimated x, y and heading into out, row major.
+     *
+     * @return false if the backend does not track a covariance, out is left untouched
+     */
+    public default boolean getPoseCovariance(double[] out) {
+        return false;
+    }
+
+    /** Logs backend specific state under key. */
+    public default void log(String key) {}
+}
@@ -0,0 +1,67 @@
+package frc.robot.lib.estimation;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Corrects module positions for a steer angle that changes within an odometry sample.
+ *
+ * <p>Odometry takes each module's distance over a sample to have been driven along the sample's end
+ * angle. While the module steers, the wheel actually sweeps an arc of directions. With the steer rate
+ * and wheel speed constant over the sample, the displacement is the distance times
+ * sinc(delta / 2) along the mid angle, where delta is the change in steer angle. This class rewrites
+ * every sample so that the usual first order math on its output gives that second order
+ * displacement: the angle becomes the mid angle, and the distance difference is accumulated into a
+ * per module offset so the distances stay continuous.
+ *
+ * <p>At 250 Hz the correction only matters while modules steer quickly, spinning while translating or
+ * reversing direction, but those errors all land on the pose in the same direction and add up.
+ *
+ * <p>Module arrays are ordered front left, front right, back left, back right. Not thread safe.
+ */
+public class SecondOrderWheelOdometry {
+    private final double[] lastRawDistancesMeters = new double[4];
+    private final double[] lastAnglesRad = new double[4];
+    private final double[] offsetsMeters = new double[4];
+    private boolean hasLastSample = false;
+
+    /**
+     * Processes one odometry sample.
+     *
+     * @param rawDistancesMeters drive positions as measured
+     * @param anglesRad steer angles as measured, at the end of the sample
+     * @param distancesOut drive positions to give odometry, may be the same array as rawDistancesMeters
+     * @param anglesOut steer angles to give odometry, may be the same array as anglesRad
+     */
+    public void update(double[] rawDistancesMeters, double[] anglesRad, double[] distancesOut, double[] anglesOut) {
+        for (int i = 0; i < 4; i++) {
+            double rawDistance = rawDistancesMeters[i];
+            double angle = anglesRad[i];
+            double correctedAngle = angle;
+
+            if (hasLastSample) {
+                double distance = rawDistance - lastRawDistancesMeters[i];
+                double halfDelta = MathUtil.angleModulus(angle - lastAnglesRad[i]) / 2;
+                correctedAngle = MathUtil.angleModulus(lastAnglesRad[i] + halfDelta);
+                offsetsMeters[i] += distance * (sinc(halfDelta) - 1);
+            }
+
+            lastRawDistancesMeters[i] = rawDistance;
+            lastAnglesRad[i] = angle;
+            distancesOut[i] = rawDistance + offsetsMeters[i];
+            anglesOut[i] = correctedAngle;
+        }
+        hasLastSample = true;
+    }
+
+    /** Distance removed from each module by the correction, since startup. */
+    public double[] getOffsetsMeters() {
+        return offsetsMeters;
+    }
+
+    private static double sinc(double x) {
+        if (Math.abs(x) < 1e-4) {
+            return 1 - x * x / 6;
+        }
+        return Math.sin(x) / x;
+    }
+}
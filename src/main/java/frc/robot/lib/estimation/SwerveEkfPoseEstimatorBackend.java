@@ -0,0 +1,384 @@
+package frc.robot.lib.estimation;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import frc.robot.lib.util.PoseHistoryBuffer;
+import frc.robot.subsystems.swerve.FourModuleKinematics;
+
+/**
+ * Extended Kalman filter over {x, y, heading, gyro bias, wheel slip} on primitive arrays.
+ *
+ * <p>Prediction runs once per odometry sample. The heading moves by the gyro's change minus the
+ * estimated gyro bias (a yaw rate), or by the wheels' heading change while the gyro is disconnected.
+ * The translation moves by the wheel twist, scaled by 1 + slip, along the mid-sample heading. Bias
+ * and slip are random walks, vision makes them observable: a heading correction that keeps
+ * growing with time is bias, a translation correction that keeps growing with distance is slip.
+ *
+ * <p>Vision measurements arrive late. The estimate at the measurement's timestamp is the current
+ * estimate moved back by the odometry since then, kept in a dead reckoned history, and the
+ * correction is applied to the current state with the current covariance. Unlike the WPILib
+ * estimator nothing is replayed, so an update costs the same however old the measurement is.
+ *
+ * <p>Matrices are flat row major arrays, sizes are fixed, nothing allocates per update except the
+ * returned pose. Not thread safe.
+ */
+public class SwerveEkfPoseEstimatorBackend implements PoseEstimatorBackend {
+    /**
+     * Noise model of the filter, every value is a standard deviation.
+     *
+     * @param translationDevPerMeter wheel translation error per meter driven
+     * @param wheelHeadingDevPerRad wheel heading error per radian turned, used while the gyro is disconnected
+     * @param gyroHeadingDevRadPerSqrtSec gyro heading noise, grows with the square root of time
+     * @param gyroBiasRandomWalkRadPerSecPerSqrtSec how fast the gyro bias can wander
+     * @param slipRandomWalkPerSqrtSec how fast the slip can wander
+     * @param initialGyroBiasDevRadPerSec gyro bias uncertainty at startup
+     * @param initialSlipDev slip uncertainty at startup
+     */
+    public record Tuning(
+        double translationDevPerMeter,
+        double wheelHeadingDevPerRad,
+        double gyroHeadingDevRadPerSqrtSec,
+        double gyroBiasRandomWalkRadPerSecPerSqrtSec,
+        double slipRandomWalkPerSqrtSec,
+        double initialGyroBiasDevRadPerSec,
+        double initialSlipDev
+    ) {}
+
+    public static final int kX = 0;
+    public static final int kY = 1;
+    public static final int kTHETA = 2;
+    public static final int kGYRO_BIAS = 3;
+    public static final int kSLIP = 4;
+    public static final int kSTATE_SIZE = 5;
+
+    // Variance floor of the pose after a reset
+    private static final double kRESET_POSE_VARIANCE = 1e-6;
+    // Slip is clamped so a bad run of vision can never reverse or stop the wheels
+    private static final double kMAX_SLIP = 0.5;
+
+    private final FourModuleKinematics kinematics;
+    private final Tuning tuning;
+    private final double historySeconds;
+
+    private final double[] state = new double[kSTATE_SIZE];
+    private final double[] covariance = new double[kSTATE_SIZE * kSTATE_SIZE];
+
+    // Scratch
+    private final double[] jacobian = new double[kSTATE_SIZE * kSTATE_SIZE];
+    private final double[] product = new double[kSTATE_SIZE * kSTATE_SIZE];
+    private final double[] gain = new double[kSTATE_SIZE * 3];
+    private final double[] innovationInverse = new double[9];
+    private final double[] historyPose = new double[3];
+
+    // Odometry
+    private final double[] lastWheelDistancesMeters = new double[4];
+    private final double[] wheelDistancesMeters = new double[4];
+    private final double[] wheelAnglesRad = new double[4];
+    private final Twist2d twist = new Twist2d();
+    private double lastGyroRad = 0;
+    private boolean hasLastGyro = false;
+    private double lastTimestampSeconds = Double.NaN;
+    private double odometryDevScale = 1;
+
+    // Dead reckoned pose, only moved by odometry, for latency compensation
+    private double odometryX = 0;
+    private double odometryY = 0;
+    private double odometryTheta = 0;
+    private final PoseHistoryBuffer odometryHistory;
+
+    private Pose2d estimatedPose = new Pose2d();
+
+    /**
+     * @param historySeconds oldest vision measurement that can still be applied
+     * @param historyCapacity samples of history kept, should cover historySeconds at the odometry rate
+     */
+    public SwerveEkfPoseEstimatorBackend(FourModuleKinematics kinematics, Tuning tuning, double historySeconds, int historyCapacity) {
+        this.kinematics = kinematics;
+        this.tuning = tuning;
+        this.historySeconds = historySeconds;
+        odometryHistory = new PoseHistoryBuffer(historySeconds, historyCapacity);
+
+        for (int i = 0; i < kSTATE_SIZE; i++) {
+            covariance[i * kSTATE_SIZE + i] = kRESET_POSE_VARIANCE;
+        }
+        covariance[kGYRO_BIAS * kSTATE_SIZE + kGYRO_BIAS] = square(tuning.initialGyroBiasDevRadPerSec());
+        covariance[kSLIP * kSTATE_SIZE + kSLIP] = square(tuning.initialSlipDev());
+    }
+
+    /** Resets the pose and its covariance. The gyro bias and slip estimates carry over. */
+    @Override
+    public void resetPosition(Rotation2d gyroAngle, SwerveModulePosition[] wheelPositions, Pose2d pose) {
+        state[kX] = pose.getX();
+        state[kY] = pose.getY();
+        state[kTHETA] = pose.getRotation().getRadians();
+
+        for (int row = 0; row < kSTATE_SIZE; row++) {
+            for (int column = 0; column < kSTATE_SIZE; column++) {
+                if (row <= kTHETA || column <= kTHETA) {
+                    covariance[row * kSTATE_SIZE + column] = row == column ? kRESET_POSE_VARIANCE : 0;
+                }
+            }
+        }
+
+        for (int i = 0; i < 4; i++) {
+            lastWheelDistancesMeters[i] = wheelPositions[i].distanceMeters;
+        }
+        lastGyroRad = gyroAngle.getRadians();
+        hasLastGyro = true;
+
+        odometryHistory.clear();
+        estimatedPose = pose;
+    }
+
+    @Override
+    public Pose2d updateWithTime(double timestampSeconds, Rotation2d gyroAngle, boolean isGyroConnected, SwerveModulePosition[] wheelPositions) {
+        double dt = Double.isNaN(lastTimestampSeconds) ? 0 : Math.max(timestampSeconds - lastTimestampSeconds, 0);
+        lastTimestampSeconds = timestampSeconds;
+
+        for (int i = 0; i < 4; i++) {
+            wheelDistancesMeters[i] = wheelPositions[i].distanceMeters;
+            wheelAnglesRad[i] = wheelPositions[i].angle.getRadians();
+        }
+        kinematics.toTwist2d(lastWheelDistancesMeters, wheelDistancesMeters, wheelAnglesRad, twist);
+        System.arraycopy(wheelDistancesMeters, 0, lastWheelDistancesMeters, 0, 4);
+
+        // Heading change and its derivative with respect to the gyro bias
+        boolean useGyro = isGyroConnected && hasLastGyro;
+        double dtheta;
+        double dthetaDBias;
+        if (useGyro) {
+            dtheta = MathUtil.angleModulus(gyroAngle.getRadians() - lastGyroRad) - state[kGYRO_BIAS] * dt;
+            dthetaDBias = -dt;
+        } else {
+            dtheta = twist.dtheta;
+            dthetaDBias = 0;
+        }
+        // After a disconnect the first gyro sample only re-seeds the gyro
+        hasLastGyro = isGyroConnected;
+        if (isGyroConnected) {
+            lastGyroRad = gyroAngle.getRadians();
+        }
+
+        double scale = 1 + state[kSLIP];
+        double midTheta = state[kTHETA] + dtheta / 2;
+        double cos = Math.cos(midTheta);
+        double sin = Math.sin(midTheta);
+        // Wheel translation in the field frame, before slip
+        double wheelX = twist.dx * cos - twist.dy * sin;
+        double wheelY = twist.dx * sin + twist.dy * cos;
+
+        state[kX] += scale * wheelX;
+        state[kY] += scale * wheelY;
+        state[kTHETA] = MathUtil.angleModulus(state[kTHETA] + dtheta);
+
+        double odometryCos = Math.cos(odometryTheta + dtheta / 2);
+        double odometrySin = Math.sin(odometryTheta + dtheta / 2);
+        odometryX += scale * (twist.dx * odometryCos - twist.dy * odometrySin);
+        odometryY += scale * (twist.dx * odometrySin + twist.dy * odometryCos);
+        odometryTheta = MathUtil.angleModulus(odometryTheta + dtheta);
+        odometryHistory.addSample(timestampSeconds, odometryX, odometryY, odometryTheta);
+
+        // Jacobian of the prediction, identity plus the couplings below
+        for (int i = 0; i < jacobian.length; i++) {
+            jacobian[i] = 0;
+        }
+        for (int i = 0; i < kSTATE_SIZE; i++) {
+            jacobian[i * kSTATE_SIZE + i] = 1;
+        }
+        jacobian[kX * kSTATE_SIZE + kTHETA] = -scale * wheelY;
+        jacobian[kX * kSTATE_SIZE + kGYRO_BIAS] = -scale * wheelY * dthetaDBias / 2;
+        jacobian[kX * kSTATE_SIZE + kSLIP] = wheelX;
+        jacobian[kY * kSTATE_SIZE + kTHETA] = scale * wheelX;
+        jacobian[kY * kSTATE_SIZE + kGYRO_BIAS] = scale * wheelX * dthetaDBias / 2;
+        jacobian[kY * kSTATE_SIZE + kSLIP] = wheelY;
+        jacobian[kTHETA * kSTATE_SIZE + kGYRO_BIAS] = dthetaDBias;
+
+        // P = F P F^T + Q
+        multiply(jacobian, covariance, product);
+        multiplyTransposed(product, jacobian, covariance);
+
+        double distance = Math.hypot(twist.dx, twist.dy);
+        double translationVariance = square(tuning.translationDevPerMeter() * odometryDevScale * distance);
+        covariance[kX * kSTATE_SIZE + kX] += translationVariance;
+        covariance[kY * kSTATE_SIZE + kY] += translationVariance;
+        covariance[kTHETA * kSTATE_SIZE + kTHETA] += useGyro ?
+            square(tuning.gyroHeadingDevRadPerSqrtSec()) * dt :
+            square(tuning.wheelHeadingDevPerRad() * twist.dtheta);
+        covariance[kGYRO_BIAS * kSTATE_SIZE + kGYRO_BIAS] += square(tuning.gyroBiasRandomWalkRadPerSecPerSqrtSec()) * dt;
+        covariance[kSLIP * kSTATE_SIZE + kSLIP] += square(tuning.slipRandomWalkPerSqrtSec()) * dt;
+
+        estimatedPose = new Pose2d(state[kX], state[kY], new Rotation2d(state[kTHETA]));
+        return estimatedPose;
+    }
+
+    @Override
+    public void addVisionMeasurement(Pose2d visionPose, double timestampSeconds, Matrix<N3, N1> stdDevs) {
+        // Same cutoff as getHistorySeconds, a measurement between it and the oldest kept sample is
+        // less than a sample old and clamps to that sample
+        if (odometryHistory.isEmpty() || timestampSeconds < odometryHistory.getLatestTimestamp() - historySeconds) {
+            return;
+        }
+
+        // Estimate at the measurement time, the current estimate moved back by the odometry since
+        odometryHistory.getPose(timestampSeconds, historyPose);
+        double dx = historyPose[0] - odometryX;
+        double dy = historyPose[1] - odometryY;
+        double odometryCos = Math.cos(odometryTheta);
+        double odometrySin = Math.sin(odometryTheta);
+        double localX = dx * odometryCos + dy * odometrySin;
+        double localY = -dx * odometrySin + dy * odometryCos;
+
+        double cos = Math.cos(state[kTHETA]);
+        double sin = Math.sin(state[kTHETA]);
+        double pastX = state[kX] + localX * cos - localY * sin;
+        double pastY = state[kY] + localX * sin + localY * cos;
+        double pastTheta = state[kTHETA] + MathUtil.angleModulus(historyPose[2] - odometryTheta);
+
+        double innovationX = visionPose.getX() - pastX;
+        double innovationY = visionPose.getY() - pastY;
+        double innovationTheta = MathUtil.angleModulus(visionPose.getRotation().getRadians() - pastTheta);
+
+        // S = H P H^T + R, H selects the pose
+        double s00 = covariance[0] + square(stdDevs.get(0, 0));
+        double s01 = covariance[1];
+        double s02 = covariance[2];
+        double s11 = covariance[kSTATE_SIZE + 1] + square(stdDevs.get(1, 0));
+        double s12 = covariance[kSTATE_SIZE + 2];
+        double s22 = covariance[2 * kSTATE_SIZE + 2] + square(stdDevs.get(2, 0));
+
+        double c00 = s11 * s22 - s12 * s12;
+        double c01 = s02 * s12 - s01 * s22;
+        double c02 = s01 * s12 - s02 * s11;
+        double determinant = s00 * c00 + s01 * c01 + s02 * c02;
+        if (!(determinant > 0)) {
+            return;
+        }
+        innovationInverse[0] = c00 / determinant;
+        innovationInverse[1] = innovationInverse[3] = c01 / determinant;
+        innovationInverse[2] = innovationInverse[6] = c02 / determinant;
+        innovationInverse[4] = (s00 * s22 - s02 * s02) / determinant;
+        innovationInverse[5] = innovationInverse[7] = (s01 * s02 - s00 * s12) / determinant;
+        innovationInverse[8] = (s00 * s11 - s01 * s01) / determinant;
+
+        // K = P H^T S^-1, 5 x 3
+        for (int row = 0; row < kSTATE_SIZE; row++) {
+            for (int column = 0; column < 3; column++) {
+                double sum = 0;
+                for (int k = 0; k < 3; k++) {
+                    sum += covariance[row * kSTATE_SIZE + k] * innovationInverse[k * 3 + column];
+                }
+                gain[row * 3 + column] = sum;
+            }
+        }
+
+        for (int row = 0; row < kSTATE_SIZE; row++) {
+            state[row] += gain[row * 3] * innovationX + gain[row * 3 + 1] * innovationY + gain[row * 3 + 2] * innovationTheta;
+        }
+        state[kTHETA] = MathUtil.angleModulus(state[kTHETA]);
+        state[kSLIP] = MathUtil.clamp(state[kSLIP], -kMAX_SLIP, kMAX_SLIP);
+
+        // P = P - K H P, then symmetrized against rounding
+        for (int row = 0; row < kSTATE_SIZE; row++) {
+            for (int column = 0; column < kSTATE_SIZE; column++) {
+                double sum = 0;
+                for (int k = 0; k < 3; k++) {
+                    sum += gain[row * 3 + k] * covariance[k * kSTATE_SIZE + column];
+                }
+                product[row * kSTATE_SIZE + column] = covariance[row * kSTATE_SIZE + column] - sum;
+            }
+        }
+        for (int row = 0; row < kSTATE_SIZE; row++) {
+            for (int column = row; column < kSTATE_SIZE; column++) {
+                double value = (product[row * kSTATE_SIZE + column] + product[column * kSTATE_SIZE + row]) / 2;
+                covariance[row * kSTATE_SIZE + column] = value;
+                covariance[column * kSTATE_SIZE + row] = value;
+            }
+        }
+
+        estimatedPose = new Pose2d(state[kX], state[kY], new Rotation2d(state[kTHETA]));
+    }
+
+    @Override
+    public void setOdometryDevScale(double scale) {
+        odometryDevScale = scale;
+    }
+
+    @Override
+    public Pose2d getEstimatedPosition() {
+        return estimatedPose;
+    }
+
+    @Override
+    public double getHistorySeconds() {
+        return historySeconds;
+    }
+
+    @Override
+    public boolean getPoseCovariance(double[] out) {
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 3; column++) {
+                out[row * 3 + column] = covariance[row * kSTATE_SIZE + column];
+            }
+        }
+        return true;
+    }
+
+    /** Estimated gyro bias, positive when the gyro reads counterclockwise of the true heading. */
+    public double getGyroBiasRadPerSec() {
+        return state[kGYRO_BIAS];
+    }
+
+    /** Estimated wheel slip, the fraction the wheels under-report the distance driven. */
+    public double getSlip() {
+        return state[kSLIP];
+    }
+
+    @Override
+    public void log(String key) {
+        Logger.recordOutput(key + "/gyroBiasRadPerSec", state[kGYRO_BIAS]);
+        Logger.recordOutput(key + "/slip", state[kSLIP]);
+        Logger.recordOutput(key + "/xDevMeters", Math.sqrt(covariance[kX * kSTATE_SIZE + kX]));
+        Logger.recordOutput(key + "/yDevMeters", Math.sqrt(covariance[kY * kSTATE_SIZE + kY]));
+        Logger.recordOutput(key + "/thetaDevRad", Math.sqrt(covariance[kTHETA * kSTATE_SIZE + kTHETA]));
+        Logger.recordOutput(key + "/gyroBiasDevRadPerSec", Math.sqrt(covariance[kGYRO_BIAS * kSTATE_SIZE + kGYRO_BIAS]));
+        Logger.recordOutput(key + "/slipDev", Math.sqrt(covariance[kSLIP * kSTATE_SIZE + kSLIP]));
+    }
+
+    /** out = a * b */
+    private static void multiply(double[] a, double[] b, double[] out) {
+        for (int row = 0; row < kSTATE_SIZE; row++) {
+            for (int column = 0; column < kSTATE_SIZE; column++) {
+                double sum = 0;
+                for (int k = 0; k < kSTATE_SIZE; k++) {
+                    sum += a[row * kSTATE_SIZE + k] * b[k * kSTATE_SIZE + column];
+                }
+                out[row * kSTATE_SIZE + column] = sum;
+            }
+        }
+    }
+
+    /** out = a * b^T */
+    private static void multiplyTransposed(double[] a, double[] b, double[] out) {
+        for (int row = 0; row < kSTATE_SIZE; row++) {
+            for (int column = 0; column < kSTATE_SIZE; column++) {
+                double sum = 0;
+                for (int k = 0; k < kSTATE_SIZE; k++) {
+                    sum += a[row * kSTATE_SIZE + k] * b[column * kSTATE_SIZE + k];
+                }
+                out[row * kSTATE_SIZE + column] = sum;
+            }
+        }
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+}
@@ -0,0 +1,240 @@
+package frc.robot.lib.estimation;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.RobotState.VisionObservation;
+import frc.robot.RobotState.VisionObservationScale;
+import frc.robot.constants.robotState.RobotStateConfigBase;
+import frc.robot.lib.util.LimelightHelpers.PoseEstimate;
+import frc.robot.lib.util.LimelightHelpers.RawFiducial;
+
+/**
+ * Turns Limelight pose estimates into vision observations with standard deviations that reflect how
+ * much the estimate can be trusted, and gates observations that disagree with the current estimate.
+ *
+ * <p>Translation std devs grow with the square of the average tag distance, shrink with the tag
+ * count, and grow with the worst fiducial ambiguity and the robot's yaw rate. Tags that look smaller
+ * than the minimum area, seen edge on or partly occluded, grow them in inverse proportion to the
+ * area, the corners of a small tag are only a few pixels apart. Heading is only
+ * trusted from multi tag MegaTag1 estimates, MegaTag2 takes its heading from the gyro.
+ */
+public class VisionObservationScorer {
+    /** Heading std dev of observations whose heading should be ignored. */
+    public static final double kIGNORED_HEADING_DEV = 9999999;
+
+    public static enum Rejection {
+        NONE,
+        NO_TAGS,
+        TOO_FAR,
+        TOO_AMBIGUOUS,
+        SPINNING_TOO_FAST,
+        OUTLIER
+    }
+
+    private final RobotStateConfigBase config;
+
+    private Rejection lastRejection = Rejection.NONE;
+    private double lastMahalanobisDistanceSq = 0;
+    private int consecutiveOutlierCount = 0;
+
+    public VisionObservationScorer(RobotStateConfigBase config) {
+        this.config = config;
+    }
+
+    /**
+     * Scores a pose estimate.
+     *
+     * @param yawVelocityRadPerSec yaw rate of the robot when the estimate was captured
+     * @return the observation, or null if the estimate was rejected, see {@link #getLastRejection()}
+     */
+    public VisionObservation score(PoseEstimate estimate, VisionObservationScale scale, double yawVelocityRadPerSec) {
+        if (estimate == null) {
+            return reject(Rejection.NO_TAGS);
+        }
+
+        double maxAmbiguity = 0;
+        for (RawFiducial fiducial : estimate.rawFiducials) {
+            maxAmbiguity = Math.max(maxAmbiguity, fiducial.ambiguity);
+        }
+
+        return score(
+            estimate.pose.getX(),
+            estimate.pose.getY(),
+            estimate.pose.getRotation().getRadians(),
+            estimate.timestampSeconds,
+            estimate.tagCount,
+            estimate.avgTagDist,
+            estimate.avgTagArea,
+            maxAmbiguity,
+            estimate.isMegaTag2,
+            scale,
+            yawVelocityRadPerSec
+        );
+    }
+
+    /**
+     * Scores a pose estimate given as its fields, so callers holding decoded estimates need not
+     * rebuild LimelightHelpers objects. Only an accepted estimate allocates, for its observation.
+     *
+     * @param avgTagAreaPercent average tag area in percent of the image, 0 if unknown
+     * @param maxAmbiguity highest ambiguity of the estimate's fiducials
+     * @param yawVelocityRadPerSec yaw rate of the robot when the estimate was captured
+     * @return the observation, or null if the estimate was rejected, see {@link #getLastRejection()}
+     */
+    public VisionObservation score(
+        double xMeters,
+        double yMeters,
+        double yawRad,
+        double timestampSeconds,
+        int tagCount,
+        double avgTagDistMeters,
+        double avgTagAreaPercent,
+        double maxAmbiguity,
+        boolean isMegaTag2,
+        VisionObservationScale scale,
+        double yawVelocityRadPerSec
+    ) {
+        if (tagCount <= 0) {
+            return reject(Rejection.NO_TAGS);
+        }
+        if (avgTagDistMeters > config.getVisionMaxAverageTagDistanceMeters()) {
+            return reject(Rejection.TOO_FAR);
+        }
+        if (Math.abs(yawVelocityRadPerSec) > config.getVisionMaxYawVelocityRadPerSec()) {
+            return reject(Rejection.SPINNING_TOO_FAST);
+        }
+        // Ambiguity only matters for single tag solves, multiple tags disambiguate each other
+        if (tagCount == 1 && maxAmbiguity > config.getVisionMaxAmbiguity()) {
+            return reject(Rejection.TOO_AMBIGUOUS);
+        }
+
+        double distanceFactor = avgTagDistMeters * avgTagDistMeters / tagCount;
+        double areaFactor = avgTagAreaPercent > 0 ? config.getVisionMinTagAreaPercent() / avgTagAreaPercent : 1;
+        double translationDev =
+            config.getVisionTranslationDevBase() *
+            Math.max(distanceFactor, 1) *
+            Math.max(areaFactor, 1) *
+            (1 + config.getVisionAmbiguityDevScale() * maxAmbiguity) *
+            (1 + config.getVisionYawVelocityDevScale() * Math.abs(yawVelocityRadPerSec));
+
+        double headingDev = !isMegaTag2 && tagCount >= 2 ?
+            config.getVisionHeadingDevBase() * Math.max(distanceFactor, 1) :
+            kIGNORED_HEADING_DEV;
+
+        lastRejection = Rejection.NONE;
+        return new VisionObservation(
+            new Pose2d(xMeters, yMeters, new Rotation2d(yawRad)),
+            timestampSeconds,
+            VecBuilder.fill(translationDev, translationDev, headingDev),
+            scale
+        );
+    }
+
+    /**
+     * Checks an observation against the estimated pose at its timestamp. The squared Mahalanobis
+     * distance of the difference is compared against a chi-squared threshold, with the estimate's own
+     * uncertainty added to the observation's. After too many outliers in a row the estimate is assumed
+     * to be the one that is wrong, and observations pass again.
+     *
+     * @param estimateCovariance 3x3 covariance of the estimated x, y and heading, row major, or null to
+     *     use the configured estimate std devs
+     * @return false if the observation is an outlier
+     */
+    public boolean gate(VisionObservation observation, Pose2d estimatedPose, double[] estimateCovariance) {
+        double translationVariance = square(observation.stdDevs().get(0, 0));
+        double dx = observation.visionPose().getX() - estimatedPose.getX();
+        double dy = observation.visionPose().getY() - estimatedPose.getY();
+        double headingDev = observation.stdDevs().get(2, 0);
+        boolean isHeadingUsed = headingDev < kIGNORED_HEADING_DEV;
+        double dtheta = isHeadingUsed ?
+            MathUtil.angleModulus(observation.visionPose().getRotation().getRadians() - estimatedPose.getRotation().getRadians()) :
+            0;
+
+        double distanceSq;
+        if (estimateCovariance == null) {
+            double estimateDev = config.getVisionGateEstimateTranslationDev();
+            distanceSq = (dx * dx + dy * dy) / (translationVariance + square(estimateDev));
+            if (isHeadingUsed) {
+                distanceSq += dtheta * dtheta / (square(headingDev) + square(config.getVisionGateEstimateHeadingDev()));
+            }
+        } else if (isHeadingUsed) {
+            distanceSq = mahalanobisDistanceSq3(
+                dx, dy, dtheta,
+                estimateCovariance[0] + translationVariance, estimateCovariance[1], estimateCovariance[2],
+                estimateCovariance[4] + translationVariance, estimateCovariance[5],
+                estimateCovariance[8] + square(headingDev)
+            );
+        } else {
+            // Heading is not measured, only the translation block of the covariance applies
+            distanceSq = mahalanobisDistanceSq2(
+                dx, dy,
+                estimateCovariance[0] + translationVariance, estimateCovariance[1],
+                estimateCovariance[4] + translationVariance
+            );
+        }
+        lastMahalanobisDistanceSq = distanceSq;
+
+        if (distanceSq > config.getVisionGateChiSquared() && consecutiveOutlierCount < config.getVisionGateMaxConsecutiveOutliers()) {
+            consecutiveOutlierCount++;
+            lastRejection = Rejection.OUTLIER;
+            return false;
+        }
+
+        consecutiveOutlierCount = 0;
+        return true;
+    }
+
+    /** Forget outliers seen so far, for when the estimate is reset. */
+    public void reset() {
+        consecutiveOutlierCount = 0;
+    }
+
+    public Rejection getLastRejection() {
+        return lastRejection;
+    }
+
+    public double getLastMahalanobisDistanceSq() {
+        return lastMahalanobisDistanceSq;
+    }
+
+    public int getConsecutiveOutlierCount() {
+        return consecutiveOutlierCount;
+    }
+
+    private VisionObservation reject(Rejection rejection) {
+        lastRejection = rejection;
+        return null;
+    }
+
+    /** d^T S^-1 d for the symmetric 2x2 S = [[a, b], [b, c]]. */
+    private static double mahalanobisDistanceSq2(double dx, double dy, double a, double b, double c) {
+        double determinant = a * c - b * b;
+        return (c * dx * dx - 2 * b * dx * dy + a * dy * dy) / determinant;
+    }
+
+    /** d^T S^-1 d for the symmetric 3x3 S = [[a, b, c], [b, d, e], [c, e, f]], by cofactors. */
+    private static double mahalanobisDistanceSq3(
+        double dx, double dy, double dz,
+        double a, double b, double c,
+        double d, double e,
+        double f
+    ) {
+        double cofactorA = d * f - e * e;
+        double cofactorB = c * e - b * f;
+        double cofactorC = b * e - c * d;
+        double cofactorD = a * f - c * c;
+        double cofactorE = b * c - a * e;
+        double cofactorF = a * d - b * b;
+        double determinant = a * cofactorA + b * cofactorB + c * cofactorC;
+        return (
+            cofactorA * dx * dx + cofactorD * dy * dy + cofactorF * dz * dz +
+            2 * (cofactorB * dx * dy + cofactorC * dx * dz + cofactorE * dy * dz)
+        ) / determinant;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+}
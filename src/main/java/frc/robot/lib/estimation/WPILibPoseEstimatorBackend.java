@@ -0,0 +1,62 @@
+package frc.robot.lib.estimation;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+
+/** {@link PoseEstimatorBackend} over WPILib's SwerveDrivePoseEstimator. */
+public class WPILibPoseEstimatorBackend implements PoseEstimatorBackend {
+    // SwerveDrivePoseEstimator's odometry buffer length, which it does not expose
+    private static final double kHISTORY_SECONDS = 1.5;
+
+    private final SwerveDrivePoseEstimator estimator;
+
+    private double odometryDevScale = 1;
+
+    public WPILibPoseEstimatorBackend(SwerveDrivePoseEstimator estimator) {
+        this.estimator = estimator;
+    }
+
+    @Override
+    public void resetPosition(Rotation2d gyroAngle, SwerveModulePosition[] wheelPositions, Pose2d pose) {
+        estimator.resetPosition(gyroAngle, wheelPositions, pose);
+    }
+
+    @Override
+    public Pose2d updateWithTime(double timestampSeconds, Rotation2d gyroAngle, boolean isGyroConnected, SwerveModulePosition[] wheelPositions) {
+        return estimator.updateWithTime(timestampSeconds, gyroAngle, wheelPositions);
+    }
+
+    @Override
+    public void addVisionMeasurement(Pose2d visionPose, double timestampSeconds, Matrix<N3, N1> stdDevs) {
+        estimator.addVisionMeasurement(visionPose, timestampSeconds, odometryDevScale == 1 ? stdDevs : stdDevs.div(odometryDevScale));
+    }
+
+    /**
+     * The estimator's odometry std devs are fixed at construction. Its correction only depends on the
+     * ratio of odometry to vision variance, so vision std devs are scaled down instead.
+     */
+    @Override
+    public void setOdometryDevScale(double scale) {
+        odometryDevScale = scale;
+    }
+
+    @Override
+    public boolean dropsNewerVisionMeasurements() {
+        return true;
+    }
+
+    @Override
+    public Pose2d getEstimatedPosition() {
+        return estimator.getEstimatedPosition();
+    }
+
+    @Override
+    public double getHistorySeconds() {
+        return kHISTORY_SECONDS;
+    }
+}
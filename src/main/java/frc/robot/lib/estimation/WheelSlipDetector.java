@@ -0,0 +1,257 @@
+package frc.robot.lib.estimation;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Finds slipping wheels by comparing every module's displacement over an odometry sample against the
+ * rigid body motion of the chassis, and removes their slip from the wheel distances the estimator
+ * sees.
+ *
+ * <p>The chassis heading change comes from the gyro when it is connected, the translation is the
+ * least squares fit of the modules given that rotation. A module whose displacement misses the fit
+ * by more than a threshold, which grows with the chassis speed, is slipping. Its share is dropped,
+ * the fit is redone from the remaining modules, and the slipping module's distance is replaced by
+ * the fit's displacement along its wheel direction. The correction accumulates in a per module
+ * offset so later samples stay continuous with it.
+ *
+ * <p>Several modules slipping at once is an impact, a collision or a shove that moves the whole
+ * chassis past what the wheels report. For a while after one the odometry std devs are scaled up, so
+ * vision pulls the estimate back sooner.
+ *
+ * <p>Module arrays are ordered front left, front right, back left, back right. Not thread safe.
+ */
+public class WheelSlipDetector {
+    /**
+     * @param residualMetersPerSec residual that counts as slip at standstill
+     * @param residualFractionOfSpeed extra residual allowed per meter per second of chassis speed
+     * @param impactModuleCount slipping modules in one sample that count as an impact
+     * @param impactHoldSeconds how long the odometry std devs stay raised after an impact
+     * @param impactOdometryDevScale odometry std dev multiplier during an impact
+     */
+    public record Tuning(
+        double residualMetersPerSec,
+        double residualFractionOfSpeed,
+        int impactModuleCount,
+        double impactHoldSeconds,
+        double impactOdometryDevScale
+    ) {}
+
+    // Always fit the chassis to at least this many modules
+    private static final int kMIN_TRUSTED_MODULES = 2;
+
+    private final Tuning tuning;
+    // Module positions relative to their centroid
+    private final double[] moduleX = new double[4];
+    private final double[] moduleY = new double[4];
+    private final double moduleRadiusSqSum;
+
+    private final double[] lastRawDistancesMeters = new double[4];
+    private final double[] offsetsMeters = new double[4];
+    private double lastTimestampSeconds = Double.NaN;
+    private double lastYawRad = 0;
+    private boolean hasLastYaw = false;
+
+    // Per sample scratch
+    private final double[] displacementX = new double[4];
+    private final double[] displacementY = new double[4];
+    private final boolean[] isSlipping = new boolean[4];
+    private double fitTranslationX = 0;
+    private double fitTranslationY = 0;
+    private double fitSpeedMetersPerSec = 0;
+
+    private final double[] residualsMetersPerSec = new double[4];
+    private final int[] slipSampleCounts = new int[4];
+    private int impactCount = 0;
+    private double impactUntilSeconds = Double.NEGATIVE_INFINITY;
+    private boolean isImpact = false;
+
+    public WheelSlipDetector(Translation2d[] modulePositionsMeters, Tuning tuning) {
+        this.tuning = tuning;
+
+        double centroidX = 0;
+        double centroidY = 0;
+        for (int i = 0; i < 4; i++) {
+            centroidX += modulePositionsMeters[i].getX() / 4;
+            centroidY += modulePositionsMeters[i].getY() / 4;
+        }
+
+        double radiusSqSum = 0;
+        for (int i = 0; i < 4; i++) {
+            moduleX[i] = modulePositionsMeters[i].getX() - centroidX;
+            moduleY[i] = modulePositionsMeters[i].getY() - centroidY;
+            radiusSqSum += moduleX[i] * moduleX[i] + moduleY[i] * moduleY[i];
+        }
+        moduleRadiusSqSum = radiusSqSum;
+    }
+
+    /**
+     * Processes one odometry sample.
+     *
+     * @param rawDistancesMeters drive positions as measured
+     * @param anglesRad steer angles of the sample
+     * @param isGyroConnected whether yawRad is valid, otherwise the rotation is fit from the modules too
+     * @param correctedDistancesOut drive positions with the slip removed, for the estimator
+     */
+    public void update(
+        double timestampSeconds,
+        double[] rawDistancesMeters,
+        double[] anglesRad,
+        boolean isGyroConnected,
+        double yawRad,
+        double[] correctedDistancesOut
+    ) {
+        double dt = timestampSeconds - lastTimestampSeconds;
+        boolean hasLastSample = dt > 0;
+        lastTimestampSeconds = timestampSeconds;
+
+        boolean hasGyroDelta = isGyroConnected && hasLastYaw;
+        double gyroDeltaRad = hasGyroDelta ? MathUtil.angleModulus(yawRad - lastYawRad) : 0;
+        hasLastYaw = isGyroConnected;
+        lastYawRad = yawRad;
+
+        int slippingCount = 0;
+        for (int i = 0; i < 4; i++) {
+            isSlipping[i] = false;
+        }
+        if (hasLastSample) {
+            for (int i = 0; i < 4; i++) {
+                double delta = rawDistancesMeters[i] - lastRawDistancesMeters[i];
+                displacementX[i] = delta * Math.cos(anglesRad[i]);
+                displacementY[i] = delta * Math.sin(anglesRad[i]);
+            }
+
+            double dtheta = hasGyroDelta ? gyroDeltaRad : fitRotation();
+            fitAndMeasure(dtheta, dt);
+
+            // Drop the worst module first so it can't drag the fit toward itself, then check the rest
+            int worst = 0;
+            for (int i = 1; i < 4; i++) {
+                if (residualsMetersPerSec[i] > residualsMetersPerSec[worst]) {
+                    worst = i;
+                }
+            }
+            if (residualsMetersPerSec[worst] > threshold()) {
+                isSlipping[worst] = true;
+                slippingCount = 1;
+                fitAndMeasure(hasGyroDelta ? gyroDeltaRad : fitRotation(), dt);
+
+                for (int i = 0; i < 4 && 4 - slippingCount > kMIN_TRUSTED_MODULES; i++) {
+                    if (!isSlipping[i] && residualsMetersPerSec[i] > threshold()) {
+                        isSlipping[i] = true;
+                        slippingCount++;
+                    }
+                }
+                double fitRotation = hasGyroDelta ? gyroDeltaRad : fitRotation();
+                fitAndMeasure(fitRotation, dt);
+
+                // Replace slipping modules' displacement with the fit's, along their wheel direction
+                for (int i = 0; i < 4; i++) {
+                    if (isSlipping[i]) {
+                        double fitX = fitTranslationX - fitRotation * moduleY[i];
+                        double fitY = fitTranslationY + fitRotation * moduleX[i];
+                        double delta = rawDistancesMeters[i] - lastRawDistancesMeters[i];
+                        offsetsMeters[i] += fitX * Math.cos(anglesRad[i]) + fitY * Math.sin(anglesRad[i]) - delta;
+                        slipSampleCounts[i]++;
+                    }
+                }
+            }
+        }
+
+        isImpact = slippingCount >= tuning.impactModuleCount();
+        if (isImpact) {
+            impactCount++;
+            impactUntilSeconds = timestampSeconds + tuning.impactHoldSeconds();
+        }
+
+        for (int i = 0; i < 4; i++) {
+            lastRawDistancesMeters[i] = rawDistancesMeters[i];
+            correctedDistancesOut[i] = rawDistancesMeters[i] + offsetsMeters[i];
+        }
+    }
+
+    /** Least squares chassis rotation from the trusted modules' displacements, about the module centroid. */
+    private double fitRotation() {
+        double cross = 0;
+        double radiusSq = 0;
+        double meanX = 0;
+        double meanY = 0;
+        int count = 0;
+        for (int i = 0; i < 4; i++) {
+            if (!isSlipping[i]) {
+                meanX += displacementX[i];
+                meanY += displacementY[i];
+                count++;
+            }
+        }
+        meanX /= count;
+        meanY /= count;
+        for (int i = 0; i < 4; i++) {
+            if (!isSlipping[i]) {
+                cross += moduleX[i] * (displacementY[i] - meanY) - moduleY[i] * (displacementX[i] - meanX);
+                radiusSq += moduleX[i] * moduleX[i] + moduleY[i] * moduleY[i];
+            }
+        }
+        return radiusSq > 0 ? cross / radiusSq : cross / moduleRadiusSqSum;
+    }
+
+    /** Fits the chassis translation to the trusted modules given the rotation, and updates every module's residual. */
+    private void fitAndMeasure(double dtheta, double dt) {
+        double sumX = 0;
+        double sumY = 0;
+        int count = 0;
+        for (int i = 0; i < 4; i++) {
+            if (!isSlipping[i]) {
+                sumX += displacementX[i] + dtheta * moduleY[i];
+                sumY += displacementY[i] - dtheta * moduleX[i];
+                count++;
+            }
+        }
+        fitTranslationX = sumX / count;
+        fitTranslationY = sumY / count;
+        fitSpeedMetersPerSec = Math.hypot(fitTranslationX, fitTranslationY) / dt;
+
+        for (int i = 0; i < 4; i++) {
+            double residualX = displacementX[i] - (fitTranslationX - dtheta * moduleY[i]);
+            double residualY = displacementY[i] - (fitTranslationY + dtheta * moduleX[i]);
+            residualsMetersPerSec[i] = Math.hypot(residualX, residualY) / dt;
+        }
+    }
+
+    private double threshold() {
+        return tuning.residualMetersPerSec() + tuning.residualFractionOfSpeed() * fitSpeedMetersPerSec;
+    }
+
+    /** Whether the module slipped in the last sample. */
+    public boolean isSlipping(int module) {
+        return isSlipping[module];
+    }
+
+    /** Residual of every module in the last sample, against the fit of the trusted modules. A copy, safe to log. */
+    public double[] getResidualsMetersPerSec() {
+        return residualsMetersPerSec.clone();
+    }
+
+    /** Samples each module has been flagged as slipping in, since startup. A copy, safe to log. */
+    public int[] getSlipSampleCounts() {
+        return slipSampleCounts.clone();
+    }
+
+    /** Distance removed from each module by slip corrections, since startup. A copy, safe to log. */
+    public double[] getOffsetsMeters() {
+        return offsetsMeters.clone();
+    }
+
+    public boolean isImpact() {
+        return isImpact;
+    }
+
+    public int getImpactCount() {
+        return impactCount;
+    }
+
+    /** Multiplier for the odometry std devs of the last sample, raised for a while after impacts. */
+    public double getOdometryDevScale() {
+        return lastTimestampSeconds < impactUntilSeconds ? tuning.impactOdometryDevScale() : 1;
+    }
+}
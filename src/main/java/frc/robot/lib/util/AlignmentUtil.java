@@ -412,7 +412,7 @@ public class AlignmentUtil {
     }
 
     public static Pose2d getClosestAlgayPose() {
-        Pose2d current = RobotState.getInstance().getEstimatedPose();
+        Pose2d current = RobotState.getInstance().getSnapshot().estimatedPose();
         Pose2d nearest = algayCandidates.get(getClosestReefFace(current, algayCandidates));
 
         Logger.recordOutput("AlignmentUtil/alignmentPoseSearch/nearest", nearest);
@@ -440,7 +440,7 @@ public class AlignmentUtil {
     }
 
     public static Pose2d getClosestLeftBranchPose() { // relative to blue driver station
-        Pose2d current = RobotState.getInstance().getEstimatedPose();
+        Pose2d current = RobotState.getInstance().getSnapshot().estimatedPose();
         Pose2d nearest = leftBranchCandidates.get(getClosestReefFace(current, leftBranchCandidates));
 
         Logger.recordOutput("AlignmentUtil/alignmentPoseSearch/nearest", nearest);
@@ -448,7 +448,7 @@ public class AlignmentUtil {
     }
 
     public static Pose2d getClosestRightBranchPose() { // relative to blue driver station
-        Pose2d current = RobotState.getInstance().getEstimatedPose();
+        Pose2d current = RobotState.getInstance().getSnapshot().estimatedPose();
         Pose2d nearest = rightBranchCandidates.get(getClosestReefFace(current, rightBranchCandidates));
 
         Logger.recordOutput("AlignmentUtil/alignmentPoseSearch/nearest", nearest);
@@ -472,7 +472,7 @@ public class AlignmentUtil {
     }
 
     public static Pose2d getClosestBargePose() {
-        Pose2d current = RobotState.getInstance().getEstimatedPose();
+        Pose2d current = RobotState.getInstance().getSnapshot().estimatedPose();
         Pose2d nearest = new Pose2d(bargeAxis.getPointOnAxis(current.getTranslation()), bargeAxisRotation);
         
         Logger.recordOutput("AlignmentUtil/alignmentPoseSearch/nearest", nearest);
@@ -480,7 +480,7 @@ public class AlignmentUtil {
     }
 
     public static Pose2d getClosestBargePoseWithFlip() {
-        Pose2d curr = RobotState.getInstance().getEstimatedPose();
+        Pose2d curr = RobotState.getInstance().getSnapshot().estimatedPose();
         double rot = Math.abs(180-Math.abs(curr.getRotation().getDegrees())) <= 90 ? Math.PI : 0;
         Pose2d nearest = new Pose2d(bargeAxis.getPointOnAxis(curr.getTranslation()), new Rotation2d(rot));
         Logger.recordOutput("AlignmentUtil/alignmentPoseSearch/nearest", nearest);
@@ -488,7 +488,7 @@ public class AlignmentUtil {
     }
 
     public static Pose2d getClosestSourcePose() { 
-        Pose2d current = RobotState.getInstance().getEstimatedPose();
+        Pose2d current = RobotState.getInstance().getSnapshot().estimatedPose();
 
         Pose2d rightNearest = new Pose2d(rightSourceAxis.getPointOnAxis(current.getTranslation()), rightSourceAxisRotation);
         Pose2d leftNearest = new Pose2d(leftSourceAxis.getPointOnAxis(current.getTranslation()), leftSourceAxisRotation);
@@ -504,7 +504,7 @@ public class AlignmentUtil {
     }
 
     public static Pose2d getClosestCagePose() {
-        Pose2d current = RobotState.getInstance().getEstimatedPose();
+        Pose2d current = RobotState.getInstance().getSnapshot().estimatedPose();
         Pose2d nearest = current.nearest(cageCandidates);
         Logger.recordOutput("AlignmentUtil/alignmentPoseSearch/nearest", nearest);
         return nearest;
@@ -0,0 +1,175 @@
+package frc.robot.lib.util;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Publishes one kind of event to named subscribers. <br>
+ * Subscribers either receive every event synchronously from {@link #publish(Object)}, or only the
+ * latest event once per loop from {@link #dispatchCoalesced()}, which keeps them out of the
+ * publisher's path. Either kind can be rate limited, and the time spent in every subscriber is
+ * logged so a slow one is easy to find.
+ *
+ * <p>Events are published and dispatched from the main loop. Subscribing is safe from any thread,
+ * the subscriber array is replaced on every change and never modified.
+ */
+public class EventTopic<T> {
+    private final String logKey;
+
+    private volatile Subscription<T>[] subscriptions = newSubscriptionArray(0);
+
+    private T latestEvent = null;
+    private long latestSequence = 0;
+
+    private static final class Subscription<T> {
+        private final Consumer<T> listener;
+        private final boolean isCoalesced;
+        private final double minPeriodSeconds;
+
+        private final String lastDurationKey;
+        private final String maxDurationKey;
+        private final String deliveredCountKey;
+        private final String skippedCountKey;
+
+        private long lastDeliveredSequence = 0;
+        private double lastDeliveryTimestamp = Double.NEGATIVE_INFINITY;
+        private double lastDurationSeconds = 0;
+        private double maxDurationSeconds = 0;
+        private long deliveredCount = 0;
+        private long skippedCount = 0;
+
+        private Subscription(String logKey, Consumer<T> listener, boolean isCoalesced, double minPeriodSeconds) {
+            this.listener = listener;
+            this.isCoalesced = isCoalesced;
+            this.minPeriodSeconds = minPeriodSeconds;
+
+            lastDurationKey = logKey + "/lastDurationSeconds";
+            maxDurationKey = logKey + "/maxDurationSeconds";
+            deliveredCountKey = logKey + "/deliveredCount";
+            skippedCountKey = logKey + "/skippedCount";
+        }
+
+        private void deliver(T event, long sequence, double timestamp) {
+            long startNanos = System.nanoTime();
+            listener.accept(event);
+            lastDurationSeconds = (System.nanoTime() - startNanos) / 1e9;
+            maxDurationSeconds = Math.max(maxDurationSeconds, lastDurationSeconds);
+
+            lastDeliveredSequence = sequence;
+            lastDeliveryTimestamp = timestamp;
+            deliveredCount++;
+        }
+    }
+
+    /** @param logKey logged statistics go under logKey/subscriberName */
+    public EventTopic(String logKey) {
+        this.logKey = logKey;
+    }
+
+    /** Receive every event, synchronously from {@link #publish(Object)}. */
+    public void subscribe(String name, Consumer<T> listener) {
+        subscribe(name, listener, 0);
+    }
+
+    /** Receive events synchronously from {@link #publish(Object)}, dropping any that arrive within minPeriodSeconds of the last delivered one. */
+    public void subscribe(String name, Consumer<T> listener, double minPeriodSeconds) {
+        add(new Subscription<T>(logKey + "/" + name, listener, false, minPeriodSeconds));
+    }
+
+    /** Receive at most the latest event once per loop, from {@link #dispatchCoalesced()}. */
+    public void subscribeCoalesced(String name, Consumer<T> listener) {
+        subscribeCoalesced(name, listener, 0);
+    }
+
+    /**
+     * Receive at most the latest event once per loop, from {@link #dispatchCoalesced()}, and no more
+     * often than every minPeriodSeconds. Events held back by the rate limit are not lost, the latest
+     * one is delivered once the period has passed.
+     */
+    public void subscribeCoalesced(String name, Consumer<T> listener, double minPeriodSeconds) {
+        add(new Subscription<T>(logKey + "/" + name, listener, true, minPeriodSeconds));
+    }
+
+    private synchronized void add(Subscription<T> subscription) {
+        Subscription<T>[] updated = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        updated[updated.length - 1] = subscription;
+        subscriptions = updated;
+    }
+
+    /** Delivers the event to the synchronous subscribers and holds it for the coalesced ones. */
+    public void publish(T event) {
+        latestEvent = event;
+        long sequence = ++latestSequence;
+
+        Subscription<T>[] current = subscriptions;
+        if (current.length == 0) {
+            return;
+        }
+
+        double timestamp = Timer.getTimestamp();
+        for (Subscription<T> subscription : current) {
+            if (subscription.isCoalesced) {
+                continue;
+            }
+
+            if (timestamp - subscription.lastDeliveryTimestamp < subscription.minPeriodSeconds) {
+                subscription.skippedCount++;
+                continue;
+            }
+            subscription.deliver(event, sequence, timestamp);
+        }
+    }
+
+    /**
+     * Delivers the latest event to every coalesced subscriber that has not seen it and is outside
+     * its rate limit. Call once per loop.
+     */
+    public void dispatchCoalesced() {
+        Subscription<T>[] current = subscriptions;
+        if (current.length == 0 || latestSequence == 0) {
+            return;
+        }
+
+        double timestamp = Timer.getTimestamp();
+        for (Subscription<T> subscription : current) {
+            if (!subscription.isCoalesced || subscription.lastDeliveredSequence == latestSequence) {
+                continue;
+            }
+
+            if (timestamp - subscription.lastDeliveryTimestamp < subscription.minPeriodSeconds) {
+                continue;
+            }
+            // Every event since the last delivery but the latest is never seen by this subscriber
+            subscription.skippedCount += latestSequence - subscription.lastDeliveredSequence - 1;
+            subscription.deliver(latestEvent, latestSequence, timestamp);
+        }
+    }
+
+    /** Latest published event, or null if nothing has been published. */
+    public T getLatestEvent() {
+        return latestEvent;
+    }
+
+    /** Number of events published so far. */
+    public long getPublishCount() {
+        return latestSequence;
+    }
+
+    public void logStats() {
+        for (Subscription<T> subscription : subscriptions) {
+            Logger.recordOutput(subscription.lastDurationKey, subscription.lastDurationSeconds);
+            Logger.recordOutput(subscription.maxDurationKey, subscription.maxDurationSeconds);
+            Logger.recordOutput(subscription.deliveredCountKey, subscription.deliveredCount);
+            Logger.recordOutput(subscription.skippedCountKey, subscription.skippedCount);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Subscription<T>[] newSubscriptionArray(int length) {
+        return (Subscription<T>[]) new Subscription<?>[length];
+    }
+}
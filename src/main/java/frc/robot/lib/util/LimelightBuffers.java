@@ -0,0 +1,402 @@
+package frc.robot.lib.util;
+
+import java.util.Arrays;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.lib.util.LimelightHelpers.PoseEstimate;
+import frc.robot.lib.util.LimelightHelpers.RawDetection;
+import frc.robot.lib.util.LimelightHelpers.RawFiducial;
+
+/**
+ * Mutable, preallocated counterparts of the {@link LimelightHelpers} result classes.
+ *
+ * <p>The LimelightHelpers decoders allocate a Pose2d, an array and one object per tag on every call,
+ * which adds up with several cameras at 90 fps. These buffers decode the published arrays in place
+ * into primitive fields and struct-of-arrays storage sized for a fixed maximum number of tags, and
+ * never allocate after construction. Tags past the maximum are dropped.
+ *
+ * <p>The decoding rules match LimelightHelpers: missing header values read as 0, and fiducials are
+ * only decoded when the array length matches the tag count. {@link ResultsBuffer} is filled from the
+ * JSON results by {@link LimelightResultsParser}.
+ */
+public final class LimelightBuffers {
+    /** Tags decoded per estimate, more than are on the field. */
+    public static final int kMAX_FIDUCIALS = 32;
+    public static final int kMAX_DETECTIONS = 32;
+    public static final int kMAX_TARGETS = 32;
+
+    public static final int kVALUES_PER_FIDUCIAL = 7;
+    public static final int kVALUES_PER_DETECTION = 12;
+    private static final int kBOTPOSE_HEADER_LENGTH = 11;
+
+    private LimelightBuffers() {}
+
+    /** Fiducials of one frame, see {@link RawFiducial}. */
+    public static final class RawFiducialBuffer {
+        private final int capacity;
+        private int count = 0;
+
+        public final int[] ids;
+        public final double[] txnc;
+        public final double[] tync;
+        public final double[] ta;
+        public final double[] distToCamera;
+        public final double[] distToRobot;
+        public final double[] ambiguity;
+
+        public RawFiducialBuffer(int capacity) {
+            this.capacity = capacity;
+            ids = new int[capacity];
+            txnc = new double[capacity];
+            tync = new double[capacity];
+            ta = new double[capacity];
+            distToCamera = new double[capacity];
+            distToRobot = new double[capacity];
+            ambiguity = new double[capacity];
+        }
+
+        /** Decodes the value of the rawfiducials entry, empties the buffer if it is malformed. */
+        public void decode(double[] rawFiducialArray) {
+            if (rawFiducialArray.length % kVALUES_PER_FIDUCIAL != 0) {
+                count = 0;
+                return;
+            }
+            decode(rawFiducialArray, 0, rawFiducialArray.length / kVALUES_PER_FIDUCIAL);
+        }
+
+        /** Decodes fiducialCount fiducials laid out back to back from offset. */
+        public void decode(double[] array, int offset, int fiducialCount) {
+            count = Math.min(fiducialCount, capacity);
+            for (int i = 0; i < count; i++) {
+                int base = offset + i * kVALUES_PER_FIDUCIAL;
+                ids[i] = (int) array[base];
+                txnc[i] = array[base + 1];
+                tync[i] = array[base + 2];
+                ta[i] = array[base + 3];
+                distToCamera[i] = array[base + 4];
+                distToRobot[i] = array[base + 5];
+                ambiguity[i] = array[base + 6];
+            }
+        }
+
+        public void clear() {
+            count = 0;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getMaxAmbiguity() {
+            double maxAmbiguity = 0;
+            for (int i = 0; i < count; i++) {
+                maxAmbiguity = Math.max(maxAmbiguity, ambiguity[i]);
+            }
+            return maxAmbiguity;
+        }
+
+        public void copyFrom(RawFiducialBuffer other) {
+            count = Math.min(other.count, capacity);
+            System.arraycopy(other.ids, 0, ids, 0, count);
+            System.arraycopy(other.txnc, 0, txnc, 0, count);
+            System.arraycopy(other.tync, 0, tync, 0, count);
+            System.arraycopy(other.ta, 0, ta, 0, count);
+            System.arraycopy(other.distToCamera, 0, distToCamera, 0, count);
+            System.arraycopy(other.distToRobot, 0, distToRobot, 0, count);
+            System.arraycopy(other.ambiguity, 0, ambiguity, 0, count);
+        }
+
+        /** Allocating copy, for code that still takes LimelightHelpers types. */
+        public RawFiducial[] toRawFiducials() {
+            RawFiducial[] fiducials = new RawFiducial[count];
+            for (int i = 0; i < count; i++) {
+                fiducials[i] = new RawFiducial(ids[i], txnc[i], tync[i], ta[i], distToCamera[i], distToRobot[i], ambiguity[i]);
+            }
+            return fiducials;
+        }
+    }
+
+    /** Neural detections of one frame, see {@link RawDetection}. Corners are stored x0, y0, ..., x3, y3 per detection. */
+    public static final class RawDetectionBuffer {
+        private final int capacity;
+        private int count = 0;
+
+        public final int[] classIds;
+        public final double[] txnc;
+        public final double[] tync;
+        public final double[] ta;
+        public final double[] corners;
+
+        public RawDetectionBuffer(int capacity) {
+            this.capacity = capacity;
+            classIds = new int[capacity];
+            txnc = new double[capacity];
+            tync = new double[capacity];
+            ta = new double[capacity];
+            corners = new double[capacity * 8];
+        }
+
+        /** Decodes the value of the rawdetections entry, empties the buffer if it is malformed. */
+        public void decode(double[] rawDetectionArray) {
+            if (rawDetectionArray.length % kVALUES_PER_DETECTION != 0) {
+                count = 0;
+                return;
+            }
+
+            count = Math.min(rawDetectionArray.length / kVALUES_PER_DETECTION, capacity);
+            for (int i = 0; i < count; i++) {
+                int base = i * kVALUES_PER_DETECTION;
+                classIds[i] = (int) rawDetectionArray[base];
+                txnc[i] = rawDetectionArray[base + 1];
+                tync[i] = rawDetectionArray[base + 2];
+                ta[i] = rawDetectionArray[base + 3];
+                System.arraycopy(rawDetectionArray, base + 4, corners, i * 8, 8);
+            }
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    /** One botpose estimate, see {@link PoseEstimate}. */
+    public static final class PoseEstimateBuffer {
+        public double x = 0;
+        public double y = 0;
+        public double yawRad = 0;
+        public double timestampSeconds = 0;
+        public double latencyMs = 0;
+        public int tagCount = 0;
+        public double tagSpan = 0;
+        public double avgTagDist = 0;
+        public double avgTagArea = 0;
+        public boolean isMegaTag2 = false;
+        public final RawFiducialBuffer rawFiducials;
+
+        public PoseEstimateBuffer() {
+            this(kMAX_FIDUCIALS);
+        }
+
+        public PoseEstimateBuffer(int maxFiducials) {
+            rawFiducials = new RawFiducialBuffer(maxFiducials);
+        }
+
+        /**
+         * Decodes a botpose array as published by the Limelight.
+         *
+         * @param poseArray value of one of the botpose entries
+         * @param timestampMicros NetworkTables timestamp of the value
+         * @param isMegaTag2 whether the value came from one of the botpose_orb entries
+         * @return false if the array is empty, the buffer is left unchanged then
+         */
+        public boolean decode(double[] poseArray, long timestampMicros, boolean isMegaTag2) {
+            if (poseArray.length == 0) {
+                return false;
+            }
+
+            if (poseArray.length >= 6) {
+                x = poseArray[0];
+                y = poseArray[1];
+                yawRad = Math.toRadians(poseArray[5]);
+            } else {
+                x = 0;
+                y = 0;
+                yawRad = 0;
+            }
+            latencyMs = entry(poseArray, 6);
+            tagCount = (int) entry(poseArray, 7);
+            tagSpan = entry(poseArray, 8);
+            avgTagDist = entry(poseArray, 9);
+            avgTagArea = entry(poseArray, 10);
+            timestampSeconds = timestampMicros / 1e6 - latencyMs / 1e3;
+            this.isMegaTag2 = isMegaTag2;
+
+            if (poseArray.length == kBOTPOSE_HEADER_LENGTH + kVALUES_PER_FIDUCIAL * tagCount) {
+                rawFiducials.decode(poseArray, kBOTPOSE_HEADER_LENGTH, tagCount);
+            } else {
+                rawFiducials.clear();
+            }
+            return true;
+        }
+
+        public void copyFrom(PoseEstimateBuffer other) {
+            x = other.x;
+            y = other.y;
+            yawRad = other.yawRad;
+            timestampSeconds = other.timestampSeconds;
+            latencyMs = other.latencyMs;
+            tagCount = other.tagCount;
+            tagSpan = other.tagSpan;
+            avgTagDist = other.avgTagDist;
+            avgTagArea = other.avgTagArea;
+            isMegaTag2 = other.isMegaTag2;
+            rawFiducials.copyFrom(other.rawFiducials);
+        }
+
+        /** Allocates the pose, call only where a Pose2d is needed. */
+        public Pose2d getPose() {
+            return new Pose2d(x, y, new Rotation2d(yawRad));
+        }
+
+        /** Allocating copy, for code that still takes LimelightHelpers types. */
+        public PoseEstimate toPoseEstimate() {
+            return new PoseEstimate(
+                getPose(),
+                timestampSeconds,
+                latencyMs,
+                tagCount,
+                tagSpan,
+                avgTagDist,
+                avgTagArea,
+                rawFiducials.toRawFiducials(),
+                isMegaTag2
+            );
+        }
+
+        private static double entry(double[] array, int index) {
+            return index < array.length ? array[index] : 0;
+        }
+    }
+
+    /**
+     * Fiducial or retroreflective targets of one JSON results frame, see
+     * {@link LimelightHelpers.LimelightTarget_Fiducial}. Poses are stored 6 values per target: x, y, z
+     * in meters, then roll, pitch, yaw in degrees.
+     */
+    public static final class TargetBuffer {
+        private final int capacity;
+        private int count = 0;
+
+        public final int[] fiducialIds;
+        public final double[] tx;
+        public final double[] ty;
+        public final double[] ta;
+        public final double[] txPixels;
+        public final double[] tyPixels;
+        public final double[] txNoCrosshair;
+        public final double[] tyNoCrosshair;
+        public final double[] ts;
+
+        public final double[] cameraPoseTargetSpace;
+        public final double[] robotPoseFieldSpace;
+        public final double[] robotPoseTargetSpace;
+        public final double[] targetPoseCameraSpace;
+        public final double[] targetPoseRobotSpace;
+
+        public TargetBuffer(int capacity) {
+            this.capacity = capacity;
+            fiducialIds = new int[capacity];
+            tx = new double[capacity];
+            ty = new double[capacity];
+            ta = new double[capacity];
+            txPixels = new double[capacity];
+            tyPixels = new double[capacity];
+            txNoCrosshair = new double[capacity];
+            tyNoCrosshair = new double[capacity];
+            ts = new double[capacity];
+            cameraPoseTargetSpace = new double[capacity * 6];
+            robotPoseFieldSpace = new double[capacity * 6];
+            robotPoseTargetSpace = new double[capacity * 6];
+            targetPoseCameraSpace = new double[capacity * 6];
+            targetPoseRobotSpace = new double[capacity * 6];
+        }
+
+        /**
+         * Appends a zeroed target.
+         *
+         * @return its index, or -1 if the buffer is full
+         */
+        public int add() {
+            if (count == capacity) {
+                return -1;
+            }
+
+            int i = count++;
+            fiducialIds[i] = 0;
+            tx[i] = 0;
+            ty[i] = 0;
+            ta[i] = 0;
+            txPixels[i] = 0;
+            tyPixels[i] = 0;
+            txNoCrosshair[i] = 0;
+            tyNoCrosshair[i] = 0;
+            ts[i] = 0;
+            Arrays.fill(cameraPoseTargetSpace, i * 6, i * 6 + 6, 0);
+            Arrays.fill(robotPoseFieldSpace, i * 6, i * 6 + 6, 0);
+            Arrays.fill(robotPoseTargetSpace, i * 6, i * 6 + 6, 0);
+            Arrays.fill(targetPoseCameraSpace, i * 6, i * 6 + 6, 0);
+            Arrays.fill(targetPoseRobotSpace, i * 6, i * 6 + 6, 0);
+            return i;
+        }
+
+        public void clear() {
+            count = 0;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * One JSON results frame, see {@link LimelightHelpers.LimelightResults}. Classifier, detector and
+     * barcode results are not kept.
+     */
+    public static final class ResultsBuffer {
+        /** Null if the last parse succeeded. */
+        public String error = null;
+
+        public double pipelineId = 0;
+        public double latencyPipelineMs = 0;
+        public double latencyCaptureMs = 0;
+        public double latencyJsonParseMs = 0;
+        public double timestampLimelightPublish = 0;
+        public double timestampRioFpgaCapture = 0;
+        public boolean isValid = false;
+
+        // x, y, z, roll, pitch, yaw
+        public final double[] botpose = new double[6];
+        public final double[] botposeWpiRed = new double[6];
+        public final double[] botposeWpiBlue = new double[6];
+        public final double[] cameraPoseRobotSpace = new double[6];
+        public double botposeTagCount = 0;
+        public double botposeSpan = 0;
+        public double botposeAvgDist = 0;
+        public double botposeAvgArea = 0;
+
+        public final TargetBuffer fiducialTargets;
+        public final TargetBuffer retroTargets;
+
+        public ResultsBuffer() {
+            this(kMAX_TARGETS);
+        }
+
+        public ResultsBuffer(int maxTargets) {
+            fiducialTargets = new TargetBuffer(maxTargets);
+            retroTargets = new TargetBuffer(maxTargets);
+        }
+
+        /** Back to the values of an empty results frame. */
+        public void clear() {
+            error = null;
+            pipelineId = 0;
+            latencyPipelineMs = 0;
+            latencyCaptureMs = 0;
+            latencyJsonParseMs = 0;
+            timestampLimelightPublish = 0;
+            timestampRioFpgaCapture = 0;
+            isValid = false;
+            Arrays.fill(botpose, 0);
+            Arrays.fill(botposeWpiRed, 0);
+            Arrays.fill(botposeWpiBlue, 0);
+            Arrays.fill(cameraPoseRobotSpace, 0);
+            botposeTagCount = 0;
+            botposeSpan = 0;
+            botposeAvgDist = 0;
+            botposeAvgArea = 0;
+            fiducialTargets.clear();
+            retroTargets.clear();
+        }
+    }
+}
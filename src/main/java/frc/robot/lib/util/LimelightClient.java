@@ -0,0 +1,170 @@
+package frc.robot.lib.util;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.DoubleSubscriber;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.StringSubscriber;
+import frc.robot.lib.util.LimelightBuffers.RawDetectionBuffer;
+import frc.robot.lib.util.LimelightBuffers.RawFiducialBuffer;
+import frc.robot.lib.util.LimelightBuffers.ResultsBuffer;
+import frc.robot.lib.util.LimelightHelpers.RawFiducial;
+
+/**
+ * One Limelight's NetworkTables topics, resolved once.
+ *
+ * <p>Every {@link LimelightHelpers} call looks its entry up by name and copies the value out again.
+ * This client subscribes and publishes once on construction and reads through the cached handles,
+ * so a getter costs one native read and a setter one native write, with no string building or
+ * table lookups. The botpose subscribers queue every value the camera publishes, for listeners that
+ * need every frame exactly once, see {@link #getBotposeSubscriber(boolean)}.
+ *
+ * <p>Safe to read from any thread, setters should stay on the main loop.
+ */
+public class LimelightClient {
+    private final String name;
+    private final NetworkTableInstance instance;
+
+    private final DoubleSubscriber tvSubscriber;
+    private final DoubleSubscriber txSubscriber;
+    private final DoubleSubscriber tySubscriber;
+    private final DoubleSubscriber taSubscriber;
+    private final DoubleSubscriber heartbeatSubscriber;
+    private final DoubleArraySubscriber rawFiducialsSubscriber;
+    private final DoubleArraySubscriber rawDetectionsSubscriber;
+    private final StringSubscriber jsonSubscriber;
+    private final DoubleArraySubscriber botposeSubscriber;
+    private final DoubleArraySubscriber botposeMegaTag2Subscriber;
+
+    private final DoubleArrayPublisher robotOrientationPublisher;
+    private final DoubleArrayPublisher cameraPosePublisher;
+    private final DoublePublisher priorityIdPublisher;
+    private final DoublePublisher pipelinePublisher;
+
+    private final double[] robotOrientation = new double[6];
+    private final double[] cameraPose = new double[6];
+
+    public LimelightClient(String name) {
+        this.name = name;
+        instance = NetworkTableInstance.getDefault();
+        NetworkTable table = instance.getTable(name);
+
+        tvSubscriber = table.getDoubleTopic("tv").subscribe(0);
+        txSubscriber = table.getDoubleTopic("tx").subscribe(0);
+        tySubscriber = table.getDoubleTopic("ty").subscribe(0);
+        taSubscriber = table.getDoubleTopic("ta").subscribe(0);
+        heartbeatSubscriber = table.getDoubleTopic("hb").subscribe(0);
+        rawFiducialsSubscriber = table.getDoubleArrayTopic("rawfiducials").subscribe(new double[] {});
+        rawDetectionsSubscriber = table.getDoubleArrayTopic("rawdetections").subscribe(new double[] {});
+        jsonSubscriber = table.getStringTopic("json").subscribe("");
+
+        // Keep identical consecutive frames and every value between reads, a listener gets all of them
+        botposeSubscriber = table.getDoubleArrayTopic("botpose_wpiblue")
+            .subscribe(new double[] {}, PubSubOption.keepDuplicates(true), PubSubOption.sendAll(true));
+        botposeMegaTag2Subscriber = table.getDoubleArrayTopic("botpose_orb_wpiblue")
+            .subscribe(new double[] {}, PubSubOption.keepDuplicates(true), PubSubOption.sendAll(true));
+
+        robotOrientationPublisher = table.getDoubleArrayTopic("robot_orientation_set").publish();
+        cameraPosePublisher = table.getDoubleArrayTopic("camerapose_robotspace_set").publish();
+        priorityIdPublisher = table.getDoubleTopic("priorityid").publish();
+        pipelinePublisher = table.getDoubleTopic("pipeline").publish();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Whether the camera has a valid target. */
+    public boolean getTV() {
+        return tvSubscriber.get() == 1.0;
+    }
+
+    public double getTX() {
+        return txSubscriber.get();
+    }
+
+    public double getTY() {
+        return tySubscriber.get();
+    }
+
+    public double getTA() {
+        return taSubscriber.get();
+    }
+
+    /** Counter the camera increments every frame, stops changing when it disconnects. */
+    public double getHeartbeat() {
+        return heartbeatSubscriber.get();
+    }
+
+    public RawFiducial[] getRawFiducials() {
+        return LimelightHelpers.toRawFiducials(rawFiducialsSubscriber.get());
+    }
+
+    /** Decodes the latest raw fiducials into out, without allocating per fiducial. */
+    public void readRawFiducials(RawFiducialBuffer out) {
+        out.decode(rawFiducialsSubscriber.get());
+    }
+
+    /** Decodes the latest raw neural detections into out, without allocating per detection. */
+    public void readRawDetections(RawDetectionBuffer out) {
+        out.decode(rawDetectionsSubscriber.get());
+    }
+
+    /**
+     * Parses the latest JSON results into out.
+     *
+     * @return false if the results are malformed, see {@link LimelightResultsParser#parse(String, ResultsBuffer)}
+     */
+    public boolean readLatestResults(LimelightResultsParser parser, ResultsBuffer out) {
+        return parser.parse(jsonSubscriber.get(), out);
+    }
+
+    /**
+     * Subscriber of the blue origin botpose, queueing every value. Pass it to a NetworkTables listener
+     * to get each frame as it arrives, the value timestamps are the frames' publish times.
+     */
+    public DoubleArraySubscriber getBotposeSubscriber(boolean isMegaTag2) {
+        return isMegaTag2 ? botposeMegaTag2Subscriber : botposeSubscriber;
+    }
+
+    /**
+     * Sends the robot's orientation for MegaTag2 and flushes it right away, the camera solves the
+     * next frame with it.
+     */
+    public void setRobotOrientation(double yawDeg, double yawRateDegPerSec) {
+        robotOrientation[0] = yawDeg;
+        robotOrientation[1] = yawRateDegPerSec;
+        robotOrientationPublisher.set(robotOrientation);
+        instance.flush();
+    }
+
+    /**
+     * Sets the camera's pose relative to the robot center, the camera uses it to turn its own pose
+     * into the robot's.
+     *
+     * @param forwardMeters forward of the robot center
+     * @param sideMeters left of the robot center
+     * @param upMeters above the floor
+     */
+    public void setCameraPoseRobotSpace(double forwardMeters, double sideMeters, double upMeters, double rollDeg, double pitchDeg, double yawDeg) {
+        cameraPose[0] = forwardMeters;
+        cameraPose[1] = sideMeters;
+        cameraPose[2] = upMeters;
+        cameraPose[3] = rollDeg;
+        cameraPose[4] = pitchDeg;
+        cameraPose[5] = yawDeg;
+        cameraPosePublisher.set(cameraPose);
+    }
+
+    /** Tag the camera should prefer, or -1 for none. */
+    public void setPriorityTagId(int id) {
+        priorityIdPublisher.set(id);
+    }
+
+    public void setPipelineIndex(int index) {
+        pipelinePublisher.set(index);
+    }
+}
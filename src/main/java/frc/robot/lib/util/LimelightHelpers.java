@@ -707,9 +707,18 @@ public class LimelightHelpers {
         DoubleArrayEntry poseEntry = LimelightHelpers.getLimelightDoubleArrayEntry(limelightName, entryName);
         
         TimestampedDoubleArray tsValue = poseEntry.getAtomic();
-        double[] poseArray = tsValue.value;
-        long timestamp = tsValue.timestamp;
-        
+        return toPoseEstimate(tsValue.value, tsValue.timestamp, isMegaTag2);
+    }
+
+    /**
+     * Decodes a botpose array as published by the Limelight.
+     *
+     * @param poseArray value of one of the botpose entries
+     * @param timestamp NetworkTables timestamp of the value, in microseconds
+     * @param isMegaTag2 whether the value came from one of the botpose_orb entries
+     * @return the pose estimate, or null if the array is empty
+     */
+    public static PoseEstimate toPoseEstimate(double[] poseArray, long timestamp, boolean isMegaTag2) {
         if (poseArray.length == 0) {
             // Handle the case where no data is available
             return null; // or some default PoseEstimate
@@ -756,7 +765,16 @@ public class LimelightHelpers {
      */
     public static RawFiducial[] getRawFiducials(String limelightName) {
         var entry = LimelightHelpers.getLimelightNTTableEntry(limelightName, "rawfiducials");
-        var rawFiducialArray = entry.getDoubleArray(new double[0]);
+        return toRawFiducials(entry.getDoubleArray(new double[0]));
+    }
+
+    /**
+     * Decodes a rawfiducials array as published by the Limelight.
+     *
+     * @param rawFiducialArray value of the rawfiducials entry
+     * @return Array of RawFiducial objects, empty if the array is malformed
+     */
+    public static RawFiducial[] toRawFiducials(double[] rawFiducialArray) {
         int valsPerEntry = 7;
         if (rawFiducialArray.length % valsPerEntry != 0) {
             return new RawFiducial[0];
@@ -0,0 +1,223 @@
+package frc.robot.lib.util;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import frc.robot.lib.util.LimelightBuffers.ResultsBuffer;
+import frc.robot.lib.util.LimelightBuffers.TargetBuffer;
+
+/**
+ * Parses a Limelight's JSON results into a reusable {@link ResultsBuffer} with Jackson's streaming
+ * parser.
+ *
+ * <p>{@link LimelightHelpers#getLatestResults(String)} maps the whole document into new objects with
+ * an ObjectMapper, which can take milliseconds on the RIO. This walks the tokens once, writes the
+ * values it keeps straight into the buffer, and skips classifier, detector and barcode results
+ * without building anything for them.
+ *
+ * <p>A parser holds no state between calls besides its JsonFactory. Give every thread its own parser
+ * and buffer, then parsing can run off the main loop.
+ */
+public class LimelightResultsParser {
+    private final JsonFactory factory = new JsonFactory();
+
+    /**
+     * Parses one results document, out is cleared first.
+     *
+     * @return false if the document is malformed, out.error says why and holds what was parsed before
+     */
+    public boolean parse(String json, ResultsBuffer out) {
+        long startNanos = System.nanoTime();
+        out.clear();
+
+        boolean isParsed;
+        try (JsonParser parser = factory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected the results object");
+            }
+            parseResults(parser, out);
+            isParsed = true;
+        } catch (IOException e) {
+            out.error = "lljson error: " + e.getMessage();
+            isParsed = false;
+        }
+
+        out.latencyJsonParseMs = (System.nanoTime() - startNanos) * 1e-6;
+        return isParsed;
+    }
+
+    private static void parseResults(JsonParser parser, ResultsBuffer out) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken token = parser.nextToken();
+
+            switch (name) {
+                // Older firmware wraps everything in a Results object
+                case "Results":
+                    if (token == JsonToken.START_OBJECT) {
+                        parseResults(parser, out);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+
+                case "pID":
+                    out.pipelineId = parser.getValueAsDouble();
+                    break;
+                case "tl":
+                    out.latencyPipelineMs = parser.getValueAsDouble();
+                    break;
+                case "cl":
+                    out.latencyCaptureMs = parser.getValueAsDouble();
+                    break;
+                case "ts":
+                    out.timestampLimelightPublish = parser.getValueAsDouble();
+                    break;
+                case "ts_rio":
+                    out.timestampRioFpgaCapture = parser.getValueAsDouble();
+                    break;
+                case "v":
+                    // Published as 0 or 1, getValueAsDouble reads true as 1 too
+                    out.isValid = parser.getValueAsDouble() != 0;
+                    break;
+
+                case "botpose":
+                    readDoubles(parser, out.botpose, 0, 6);
+                    break;
+                case "botpose_wpired":
+                    readDoubles(parser, out.botposeWpiRed, 0, 6);
+                    break;
+                case "botpose_wpiblue":
+                    readDoubles(parser, out.botposeWpiBlue, 0, 6);
+                    break;
+                case "t6c_rs":
+                    readDoubles(parser, out.cameraPoseRobotSpace, 0, 6);
+                    break;
+                case "botpose_tagcount":
+                    out.botposeTagCount = parser.getValueAsDouble();
+                    break;
+                case "botpose_span":
+                    out.botposeSpan = parser.getValueAsDouble();
+                    break;
+                case "botpose_avgdist":
+                    out.botposeAvgDist = parser.getValueAsDouble();
+                    break;
+                case "botpose_avgarea":
+                    out.botposeAvgArea = parser.getValueAsDouble();
+                    break;
+
+                case "Fiducial":
+                    readTargets(parser, out.fiducialTargets);
+                    break;
+                case "Retro":
+                    readTargets(parser, out.retroTargets);
+                    break;
+
+                // Classifier, Detector, Barcode and anything newer
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+    }
+
+    private static void readTargets(JsonParser parser, TargetBuffer out) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            int i = out.add();
+            if (i < 0) {
+                // Full, the rest of the targets are dropped
+                parser.skipChildren();
+                continue;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+
+                switch (name) {
+                    case "fID":
+                        out.fiducialIds[i] = parser.getValueAsInt();
+                        break;
+                    case "tx":
+                        out.tx[i] = parser.getValueAsDouble();
+                        break;
+                    case "ty":
+                        out.ty[i] = parser.getValueAsDouble();
+                        break;
+                    case "ta":
+                        out.ta[i] = parser.getValueAsDouble();
+                        break;
+                    case "txp":
+                        out.txPixels[i] = parser.getValueAsDouble();
+                        break;
+                    case "typ":
+                        out.tyPixels[i] = parser.getValueAsDouble();
+                        break;
+                    case "tx_nocross":
+                        out.txNoCrosshair[i] = parser.getValueAsDouble();
+                        break;
+                    case "ty_nocross":
+                        out.tyNoCrosshair[i] = parser.getValueAsDouble();
+                        break;
+                    case "ts":
+                        out.ts[i] = parser.getValueAsDouble();
+                        break;
+                    case "t6c_ts":
+                        readDoubles(parser, out.cameraPoseTargetSpace, i * 6, 6);
+                        break;
+                    case "t6r_fs":
+                        readDoubles(parser, out.robotPoseFieldSpace, i * 6, 6);
+                        break;
+                    case "t6r_ts":
+                        readDoubles(parser, out.robotPoseTargetSpace, i * 6, 6);
+                        break;
+                    case "t6t_cs":
+                        readDoubles(parser, out.targetPoseCameraSpace, i * 6, 6);
+                        break;
+                    case "t6t_rs":
+                        readDoubles(parser, out.targetPoseRobotSpace, i * 6, 6);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+    }
+
+    /** Reads a number array into out from offset, values past length are ignored. */
+    private static void readDoubles(JsonParser parser, double[] out, int offset, int length) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        int count = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token.isNumeric()) {
+                if (count < length) {
+                    out[offset + count] = parser.getDoubleValue();
+                }
+                count++;
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+}
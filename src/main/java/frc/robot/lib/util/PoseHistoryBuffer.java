@@ -0,0 +1,224 @@
+package frc.robot.lib.util;
+
+import java.util.Optional;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Fixed capacity history of timestamped poses, stored as parallel primitive arrays in a ring.
+ *
+ * <p>Replaces TimeInterpolatableBuffer for pose history: adding a sample never allocates, samples
+ * older than the history length are dropped from the tail as new ones arrive, and lookups binary
+ * search the ring. Between samples the translation is interpolated linearly and the heading along
+ * the shortest arc, which at odometry rates is indistinguishable from twist interpolation.
+ *
+ * <p>Samples must be added in increasing time order. Not thread safe.
+ */
+public class PoseHistoryBuffer {
+    private final double historySeconds;
+    private final int capacity;
+
+    private final double[] timestamps;
+    private final double[] xMeters;
+    private final double[] yMeters;
+    private final double[] thetaRad;
+
+    // Oldest sample is at head, size samples are stored
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * @param historySeconds samples older than this, relative to the newest sample, are dropped
+     * @param capacity maximum number of samples, should cover historySeconds at the sample rate
+     */
+    public PoseHistoryBuffer(double historySeconds, int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Pose history capacity must be at least 2, got " + capacity);
+        }
+
+        this.historySeconds = historySeconds;
+        this.capacity = capacity;
+
+        timestamps = new double[capacity];
+        xMeters = new double[capacity];
+        yMeters = new double[capacity];
+        thetaRad = new double[capacity];
+    }
+
+    /**
+     * Adds a sample. A sample at the same time as the newest one replaces it, older samples are ignored.
+     * When full the oldest sample is overwritten.
+     */
+    public void addSample(double timestamp, double x, double y, double theta) {
+        if (size > 0) {
+            double latestTimestamp = getLatestTimestamp();
+            if (timestamp < latestTimestamp) {
+                return;
+            }
+            if (timestamp == latestTimestamp) {
+                set(index(size - 1), timestamp, x, y, theta);
+                return;
+            }
+        }
+
+        if (size == capacity) {
+            head = (head + 1) % capacity;
+            size--;
+        }
+        set(index(size), timestamp, x, y, theta);
+        size++;
+
+        // Samples are in time order, so expired ones are always at the tail
+        while (size > 1 && timestamps[head] < timestamp - historySeconds) {
+            head = (head + 1) % capacity;
+            size--;
+        }
+    }
+
+    public void addSample(double timestamp, Pose2d pose) {
+        addSample(timestamp, pose.getX(), pose.getY(), pose.getRotation().getRadians());
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Number of samples strictly newer than timestamp. */
+    public int countSamplesAfter(double timestamp) {
+        return size - findUpper(timestamp);
+    }
+
+    /** Timestamp of the oldest sample, or NaN if the buffer is empty. */
+    public double getOldestTimestamp() {
+        return size == 0 ? Double.NaN : timestamps[head];
+    }
+
+    /** Timestamp of the newest sample, or NaN if the buffer is empty. */
+    public double getLatestTimestamp() {
+        return size == 0 ? Double.NaN : timestamps[index(size - 1)];
+    }
+
+    /**
+     * Writes the pose at the given time into out as {x, y, theta}, interpolating between samples and
+     * clamping to the oldest and newest ones.
+     *
+     * @return false if the buffer is empty, out is left untouched
+     */
+    public boolean getPose(double timestamp, double[] out) {
+        if (size == 0) {
+            return false;
+        }
+
+        int upper = findUpper(timestamp);
+        if (upper == 0) {
+            copy(index(0), out);
+            return true;
+        }
+        if (upper == size) {
+            copy(index(size - 1), out);
+            return true;
+        }
+
+        int i0 = index(upper - 1);
+        int i1 = index(upper);
+        double t = (timestamp - timestamps[i0]) / (timestamps[i1] - timestamps[i0]);
+
+        out[0] = xMeters[i0] + (xMeters[i1] - xMeters[i0]) * t;
+        out[1] = yMeters[i0] + (yMeters[i1] - yMeters[i0]) * t;
+        out[2] = MathUtil.angleModulus(thetaRad[i0] + MathUtil.angleModulus(thetaRad[i1] - thetaRad[i0]) * t);
+        return true;
+    }
+
+    /** Pose at the given time, see {@link #getPose(double, double[])}. Allocates. */
+    public Optional<Pose2d> getPose(double timestamp) {
+        double[] pose = new double[3];
+        if (!getPose(timestamp, pose)) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new Pose2d(pose[0], pose[1], new Rotation2d(pose[2])));
+    }
+
+    /**
+     * Writes the field relative velocity at the given time into out as {vx, vy, omega}, the finite
+     * difference of the two samples around it. Outside the stored range the first or last pair is used.
+     *
+     * @return false if fewer than two samples are stored, out is left untouched
+     */
+    public boolean getVelocity(double timestamp, double[] out) {
+        if (size < 2) {
+            return false;
+        }
+
+        int upper = MathUtil.clamp(findUpper(timestamp), 1, size - 1);
+        int i0 = index(upper - 1);
+        int i1 = index(upper);
+        double dt = timestamps[i1] - timestamps[i0];
+
+        out[0] = (xMeters[i1] - xMeters[i0]) / dt;
+        out[1] = (yMeters[i1] - yMeters[i0]) / dt;
+        out[2] = MathUtil.angleModulus(thetaRad[i1] - thetaRad[i0]) / dt;
+        return true;
+    }
+
+    /**
+     * Copies the samples strictly newer than timestamp into the arrays, oldest first. If there are more
+     * than the arrays hold, only the newest ones are copied.
+     *
+     * @return number of samples copied
+     */
+    public int copySamplesAfter(double timestamp, double[] timestampsOut, double[] xOut, double[] yOut, double[] thetaOut) {
+        int first = Math.max(findUpper(timestamp), size - timestampsOut.length);
+        for (int position = first; position < size; position++) {
+            int i = index(position);
+            timestampsOut[position - first] = timestamps[i];
+            xOut[position - first] = xMeters[i];
+            yOut[position - first] = yMeters[i];
+            thetaOut[position - first] = thetaRad[i];
+        }
+        return size - first;
+    }
+
+    /** Position (0 is oldest) of the first sample strictly newer than timestamp, size if there is none. */
+    private int findUpper(double timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[index(mid)] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int index(int position) {
+        return (head + position) % capacity;
+    }
+
+    private void set(int i, double timestamp, double x, double y, double theta) {
+        timestamps[i] = timestamp;
+        xMeters[i] = x;
+        yMeters[i] = y;
+        thetaRad[i] = theta;
+    }
+
+    private void copy(int i, double[] out) {
+        out[0] = xMeters[i];
+        out[1] = yMeters[i];
+        out[2] = thetaRad[i];
+    }
+}
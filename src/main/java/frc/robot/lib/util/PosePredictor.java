@@ -0,0 +1,253 @@
+package frc.robot.lib.util;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Predicts future poses from the recent pose history. <br>
+ * x, y and heading are each fit with a least squares quadratic in time over a short window ending
+ * at the newest sample, which gives velocity and acceleration at the newest sample. Predictions
+ * extrapolate those from the newest pose.
+ *
+ * <p>The fit is done in the field frame. A robot rotating while it translates traces a curve in the
+ * field frame, and the quadratic follows that curve over the window, while a constant robot
+ * relative velocity would not. Driven field relative, as this robot is, the field frame velocity is
+ * also what stays roughly constant over a lookahead.
+ *
+ * <p>The variance of every prediction comes from the fit residuals, so it grows with the lookahead
+ * and when the history is noisy or stepped by a vision correction inside the window.
+ *
+ * <p>Never allocates after construction except for the returned prediction. Not thread safe.
+ */
+public class PosePredictor {
+    /**
+     * Predicted pose and the variance of each of its components.
+     *
+     * @param pose predicted field relative pose
+     * @param xVarianceMetersSq variance of the x prediction
+     * @param yVarianceMetersSq variance of the y prediction
+     * @param thetaVarianceRadSq variance of the heading prediction
+     */
+    public record Prediction(
+        Pose2d pose,
+        double xVarianceMetersSq,
+        double yVarianceMetersSq,
+        double thetaVarianceRadSq
+    ) {}
+
+    private static final int kAXIS_COUNT = 3;
+    private static final int kMIN_SAMPLE_COUNT = 4;
+
+    private final double windowSeconds;
+
+    private final double[] sampleTimestamps;
+    private final double[][] sampleValues;
+
+    // Fit, in units of the window so the normal matrix stays well conditioned
+    private boolean isFit = false;
+    private double latestTimestamp = 0;
+    private final double[] latestValues = new double[kAXIS_COUNT];
+    // Per axis {value, velocity, acceleration / 2} of the quadratic, relative to the newest sample
+    private final double[][] coefficients = new double[kAXIS_COUNT][3];
+    private final double[] residualVariances = new double[kAXIS_COUNT];
+    // Inverse of the normal matrix, shared by every axis
+    private final double[][] normalInverse = new double[3][3];
+
+    /**
+     * @param windowSeconds length of history fit, ending at the newest sample
+     * @param maxSampleCount maximum number of samples fit, the newest are used if the window holds more
+     */
+    public PosePredictor(double windowSeconds, int maxSampleCount) {
+        if (maxSampleCount < kMIN_SAMPLE_COUNT) {
+            throw new IllegalArgumentException("Pose predictor needs at least " + kMIN_SAMPLE_COUNT + " samples, got " + maxSampleCount);
+        }
+
+        this.windowSeconds = windowSeconds;
+
+        sampleTimestamps = new double[maxSampleCount];
+        sampleValues = new double[kAXIS_COUNT][maxSampleCount];
+    }
+
+    /**
+     * Fits the samples in the window ending at the newest sample of history.
+     *
+     * @return false if the window holds too few samples to fit, predictions fail until the next fit
+     */
+    public boolean fit(PoseHistoryBuffer history) {
+        isFit = false;
+        if (history.size() < kMIN_SAMPLE_COUNT) {
+            return false;
+        }
+
+        latestTimestamp = history.getLatestTimestamp();
+        int n = history.copySamplesAfter(
+            latestTimestamp - windowSeconds,
+            sampleTimestamps,
+            sampleValues[0],
+            sampleValues[1],
+            sampleValues[2]
+        );
+        if (n < kMIN_SAMPLE_COUNT) {
+            return false;
+        }
+
+        // Unwrap the heading so the fit never sees a jump across +-pi
+        for (int i = 1; i < n; i++) {
+            sampleValues[2][i] = sampleValues[2][i - 1] + MathUtil.angleModulus(sampleValues[2][i] - sampleValues[2][i - 1]);
+        }
+        for (int axis = 0; axis < kAXIS_COUNT; axis++) {
+            latestValues[axis] = sampleValues[axis][n - 1];
+        }
+
+        // Normal matrix of the basis {1, u, u^2}, u is time since the newest sample in windows
+        double s0 = n;
+        double s1 = 0;
+        double s2 = 0;
+        double s3 = 0;
+        double s4 = 0;
+        for (int i = 0; i < n; i++) {
+            double u = (sampleTimestamps[i] - latestTimestamp) / windowSeconds;
+            double u2 = u * u;
+            s1 += u;
+            s2 += u2;
+            s3 += u2 * u;
+            s4 += u2 * u2;
+        }
+
+        double c00 = s2 * s4 - s3 * s3;
+        double c01 = s2 * s3 - s1 * s4;
+        double c02 = s1 * s3 - s2 * s2;
+        double c11 = s0 * s4 - s2 * s2;
+        double c12 = s1 * s2 - s0 * s3;
+        double c22 = s0 * s2 - s1 * s1;
+        double determinant = s0 * c00 + s1 * c01 + s2 * c02;
+        if (determinant < 1e-12) {
+            return false;
+        }
+
+        normalInverse[0][0] = c00 / determinant;
+        normalInverse[0][1] = normalInverse[1][0] = c01 / determinant;
+        normalInverse[0][2] = normalInverse[2][0] = c02 / determinant;
+        normalInverse[1][1] = c11 / determinant;
+        normalInverse[1][2] = normalInverse[2][1] = c12 / determinant;
+        normalInverse[2][2] = c22 / determinant;
+
+        for (int axis = 0; axis < kAXIS_COUNT; axis++) {
+            double[] values = sampleValues[axis];
+            double b0 = 0;
+            double b1 = 0;
+            double b2 = 0;
+            for (int i = 0; i < n; i++) {
+                double u = (sampleTimestamps[i] - latestTimestamp) / windowSeconds;
+                double value = values[i] - latestValues[axis];
+                b0 += value;
+                b1 += value * u;
+                b2 += value * u * u;
+            }
+
+            double[] coefficient = coefficients[axis];
+            for (int row = 0; row < 3; row++) {
+                coefficient[row] = normalInverse[row][0] * b0 + normalInverse[row][1] * b1 + normalInverse[row][2] * b2;
+            }
+
+            double residualSumOfSquares = 0;
+            for (int i = 0; i < n; i++) {
+                double u = (sampleTimestamps[i] - latestTimestamp) / windowSeconds;
+                double residual = values[i] - latestValues[axis] - (coefficient[0] + coefficient[1] * u + coefficient[2] * u * u);
+                residualSumOfSquares += residual * residual;
+            }
+            residualVariances[axis] = residualSumOfSquares / (n - 3);
+        }
+
+        isFit = true;
+        return true;
+    }
+
+    public boolean isFit() {
+        return isFit;
+    }
+
+    /** Timestamp of the newest sample of the last fit, predictions are relative to it. */
+    public double getLatestTimestamp() {
+        return latestTimestamp;
+    }
+
+    /**
+     * Field relative velocity at the newest sample as {vx, vy, omega}.
+     *
+     * @return false if there is no fit, out is left untouched
+     */
+    public boolean getVelocity(double[] out) {
+        if (!isFit) {
+            return false;
+        }
+
+        for (int axis = 0; axis < kAXIS_COUNT; axis++) {
+            out[axis] = coefficients[axis][1] / windowSeconds;
+        }
+        return true;
+    }
+
+    /**
+     * Field relative acceleration at the newest sample as {ax, ay, alpha}.
+     *
+     * @return false if there is no fit, out is left untouched
+     */
+    public boolean getAcceleration(double[] out) {
+        if (!isFit) {
+            return false;
+        }
+
+        for (int axis = 0; axis < kAXIS_COUNT; axis++) {
+            out[axis] = 2 * coefficients[axis][2] / (windowSeconds * windowSeconds);
+        }
+        return true;
+    }
+
+    /**
+     * Pose predicted lookahead seconds after the newest sample, translation and rotation may look
+     * ahead by different amounts. Returns null if there is no fit.
+     */
+    public Prediction predict(double translationLookaheadS, double rotationLookaheadS) {
+        if (!isFit) {
+            return null;
+        }
+
+        double translationU = translationLookaheadS / windowSeconds;
+        double rotationU = rotationLookaheadS / windowSeconds;
+
+        // Extrapolate from the newest sample, the fit's own offset at u = 0 is residual noise
+        return new Prediction(
+            new Pose2d(
+                latestValues[0] + extrapolate(0, translationU),
+                latestValues[1] + extrapolate(1, translationU),
+                new Rotation2d(latestValues[2] + extrapolate(2, rotationU))
+            ),
+            variance(0, translationU),
+            variance(1, translationU),
+            variance(2, rotationU)
+        );
+    }
+
+    /** Pose predicted at a timestamp in the history's time base. Returns null if there is no fit. */
+    public Prediction predictAt(double timestamp) {
+        return predict(timestamp - latestTimestamp, timestamp - latestTimestamp);
+    }
+
+    private double extrapolate(int axis, double u) {
+        double[] coefficient = coefficients[axis];
+        return (coefficient[1] + coefficient[2] * u) * u;
+    }
+
+    /** Variance of the fit quadratic's change from u = 0 to u. */
+    private double variance(int axis, double u) {
+        // Gradient of the change with respect to the coefficients is {0, u, u^2}
+        double u2 = u * u;
+        double quadraticForm =
+            u * u * normalInverse[1][1] +
+            2 * u * u2 * normalInverse[1][2] +
+            u2 * u2 * normalInverse[2][2];
+        return residualVariances[axis] * quadraticForm;
+    }
+}
@@ -0,0 +1,115 @@
+package frc.robot.subsystems.swerve;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-rate scheduler for a periodic thread, based on absolute deadlines.
+ *
+ * <p>Release times lie on a fixed grid ({@code start + n * period}) instead of being a sleep after
+ * each cycle, so time spent in the cycle itself never makes the rate drift. A cycle that is released
+ * a full period or more late is an overrun, handled by the {@link CatchUpPolicy}.
+ *
+ * <p>{@link #waitForNextRelease()} must only be called by the scheduled thread. The stats getters
+ * may be called from any thread.
+ */
+public class DeadlineScheduler {
+    public static enum CatchUpPolicy {
+        /** Drop the missed releases and continue on the next grid point in the future. */
+        SKIP,
+        /**
+         * Run the missed releases back to back until caught up. Falls back to {@link #SKIP} when more
+         * than {@link DeadlineScheduler#kMAX_BURST_CYCLES} releases behind.
+         */
+        BURST
+    }
+
+    public static final int kMAX_BURST_CYCLES = 5;
+
+    private final long periodNanos;
+    private final CatchUpPolicy catchUpPolicy;
+
+    // Scheduled thread only
+    private long nextReleaseNanos = -1;
+    private long rateWindowStartNanos = -1;
+    private int rateWindowCycles = 0;
+    private final int rateWindowLength;
+
+    private final AtomicLong cycleCount = new AtomicLong(0);
+    private final AtomicLong missedReleaseCount = new AtomicLong(0);
+    private final AtomicLong worstLatenessNanos = new AtomicLong(0);
+    private volatile double achievedRateHz = 0.0;
+
+    /**
+     * @param frequencyHz nominal release rate
+     * @param catchUpPolicy what to do after an overrun
+     */
+    public DeadlineScheduler(double frequencyHz, CatchUpPolicy catchUpPolicy) {
+        this.periodNanos = Math.round(1e9 / frequencyHz);
+        this.catchUpPolicy = catchUpPolicy;
+        // Measure the achieved rate over roughly one second
+        this.rateWindowLength = Math.max(1, (int) Math.round(frequencyHz));
+    }
+
+    /** Blocks until the next release time. The first call starts the grid. */
+    public void waitForNextRelease() {
+        long now = System.nanoTime();
+        if (nextReleaseNanos < 0) {
+            nextReleaseNanos = now;
+            rateWindowStartNanos = now;
+        } else {
+            nextReleaseNanos += periodNanos;
+        }
+
+        long periodsBehind = (now - nextReleaseNanos) / periodNanos;
+        if (periodsBehind > 0) {
+            // Overrun, this release and periodsBehind - 1 more are already in the past
+            boolean shouldSkip = catchUpPolicy == CatchUpPolicy.SKIP || periodsBehind > kMAX_BURST_CYCLES;
+            if (shouldSkip) {
+                nextReleaseNanos += (periodsBehind + 1) * periodNanos;
+                missedReleaseCount.addAndGet(periodsBehind + 1);
+            }
+        }
+
+        long remainingNanos;
+        while ((remainingNanos = nextReleaseNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remainingNanos);
+        }
+
+        long releasedNanos = System.nanoTime();
+        long latenessNanos = releasedNanos - nextReleaseNanos;
+        if (latenessNanos > worstLatenessNanos.get()) {
+            worstLatenessNanos.set(latenessNanos);
+        }
+
+        cycleCount.incrementAndGet();
+        if (++rateWindowCycles >= rateWindowLength) {
+            achievedRateHz = rateWindowCycles / ((releasedNanos - rateWindowStartNanos) / 1e9);
+            rateWindowCycles = 0;
+            rateWindowStartNanos = releasedNanos;
+        }
+    }
+
+    /** Release rate measured over the last second. */
+    public double getAchievedRateHz() {
+        return achievedRateHz;
+    }
+
+    /** Largest delay between a scheduled release and the actual wakeup. */
+    public double getWorstLatenessSeconds() {
+        return worstLatenessNanos.get() / 1e9;
+    }
+
+    /** Releases dropped by overruns. */
+    public long getMissedReleaseCount() {
+        return missedReleaseCount.get();
+    }
+
+    public long getCycleCount() {
+        return cycleCount.get();
+    }
+
+    public double getPeriodSeconds() {
+        return periodNanos / 1e9;
+    }
+}
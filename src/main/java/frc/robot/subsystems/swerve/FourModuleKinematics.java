@@ -0,0 +1,139 @@
+package frc.robot.subsystems.swerve;
+
+import org.ejml.simple.SimpleMatrix;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
+/**
+ * Kinematics of a four module swerve drive on primitive arrays.
+ *
+ * <p>Does the same math as SwerveDriveKinematics (center of rotation at the robot center) with the
+ * matrix products unrolled. The forward matrix is the same EJML pseudo inverse, computed once, and
+ * the sums are taken in the same order EJML takes them, so forward kinematics and twists come out
+ * identical. Module angles are atan2 of the module velocity instead of a Rotation2d round trip, which
+ * can differ in the last bit.
+ *
+ * <p>Module arrays are ordered front left, front right, back left, back right.
+ */
+public class FourModuleKinematics {
+    private final double[] moduleXMeters = new double[4];
+    private final double[] moduleYMeters = new double[4];
+
+    // 3 x 8 pseudo inverse of the inverse kinematics matrix, row major
+    private final double[] forwardKinematics = new double[24];
+
+    public FourModuleKinematics(
+        Translation2d frontLeftMeters,
+        Translation2d frontRightMeters,
+        Translation2d backLeftMeters,
+        Translation2d backRightMeters
+    ) {
+        Translation2d[] modulePositions = {frontLeftMeters, frontRightMeters, backLeftMeters, backRightMeters};
+
+        SimpleMatrix inverseKinematics = new SimpleMatrix(8, 3);
+        for (int i = 0; i < 4; i++) {
+            moduleXMeters[i] = modulePositions[i].getX();
+            moduleYMeters[i] = modulePositions[i].getY();
+
+            inverseKinematics.setRow(i * 2 + 0, 0, 1, 0, -moduleYMeters[i]);
+            inverseKinematics.setRow(i * 2 + 1, 0, 0, 1, moduleXMeters[i]);
+        }
+
+        SimpleMatrix pseudoInverse = inverseKinematics.pseudoInverse();
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 8; col++) {
+                forwardKinematics[row * 8 + col] = pseudoInverse.get(row, col);
+            }
+        }
+    }
+
+    /**
+     * Module speeds and angles for the given robot relative speeds. When the robot is commanded to
+     * stop the speeds are zeroed and the angles are left untouched, so modules hold their heading.
+     */
+    public void toModuleStates(double vxMetersPerSec, double vyMetersPerSec, double omegaRadPerSec, double[] speedsMetersPerSecOut, double[] anglesRadOut) {
+        if (vxMetersPerSec == 0.0 && vyMetersPerSec == 0.0 && omegaRadPerSec == 0.0) {
+            speedsMetersPerSecOut[0] = 0.0;
+            speedsMetersPerSecOut[1] = 0.0;
+            speedsMetersPerSecOut[2] = 0.0;
+            speedsMetersPerSecOut[3] = 0.0;
+            return;
+        }
+
+        for (int i = 0; i < 4; i++) {
+            double moduleVx = vxMetersPerSec - moduleYMeters[i] * omegaRadPerSec;
+            double moduleVy = vyMetersPerSec + moduleXMeters[i] * omegaRadPerSec;
+
+            double speed = Math.hypot(moduleVx, moduleVy);
+            speedsMetersPerSecOut[i] = speed;
+            anglesRadOut[i] = speed > 1e-6 ? Math.atan2(moduleVy, moduleVx) : 0.0;
+        }
+    }
+
+    /** Least squares robot relative speeds from the module speeds and angles. */
+    public void toChassisSpeeds(double[] speedsMetersPerSec, double[] anglesRad, ChassisSpeeds out) {
+        double vx0 = speedsMetersPerSec[0] * Math.cos(anglesRad[0]);
+        double vy0 = speedsMetersPerSec[0] * Math.sin(anglesRad[0]);
+        double vx1 = speedsMetersPerSec[1] * Math.cos(anglesRad[1]);
+        double vy1 = speedsMetersPerSec[1] * Math.sin(anglesRad[1]);
+        double vx2 = speedsMetersPerSec[2] * Math.cos(anglesRad[2]);
+        double vy2 = speedsMetersPerSec[2] * Math.sin(anglesRad[2]);
+        double vx3 = speedsMetersPerSec[3] * Math.cos(anglesRad[3]);
+        double vy3 = speedsMetersPerSec[3] * Math.sin(anglesRad[3]);
+
+        out.vxMetersPerSecond = forwardRow(0, vx0, vy0, vx1, vy1, vx2, vy2, vx3, vy3);
+        out.vyMetersPerSecond = forwardRow(1, vx0, vy0, vx1, vy1, vx2, vy2, vx3, vy3);
+        out.omegaRadiansPerSecond = forwardRow(2, vx0, vy0, vx1, vy1, vx2, vy2, vx3, vy3);
+    }
+
+    /** Robot motion between two sets of module positions, using the end angles like WPILib does. */
+    public void toTwist2d(double[] startDistancesMeters, double[] endDistancesMeters, double[] endAnglesRad, Twist2d out) {
+        double d0 = endDistancesMeters[0] - startDistancesMeters[0];
+        double d1 = endDistancesMeters[1] - startDistancesMeters[1];
+        double d2 = endDistancesMeters[2] - startDistancesMeters[2];
+        double d3 = endDistancesMeters[3] - startDistancesMeters[3];
+
+        double dx0 = d0 * Math.cos(endAnglesRad[0]);
+        double dy0 = d0 * Math.sin(endAnglesRad[0]);
+        double dx1 = d1 * Math.cos(endAnglesRad[1]);
+        double dy1 = d1 * Math.sin(endAnglesRad[1]);
+        double dx2 = d2 * Math.cos(endAnglesRad[2]);
+        double dy2 = d2 * Math.sin(endAnglesRad[2]);
+        double dx3 = d3 * Math.cos(endAnglesRad[3]);
+        double dy3 = d3 * Math.sin(endAnglesRad[3]);
+
+        out.dx = forwardRow(0, dx0, dy0, dx1, dy1, dx2, dy2, dx3, dy3);
+        out.dy = forwardRow(1, dx0, dy0, dx1, dy1, dx2, dy2, dx3, dy3);
+        out.dtheta = forwardRow(2, dx0, dy0, dx1, dy1, dx2, dy2, dx3, dy3);
+    }
+
+    /** Scales all speeds down so none exceeds maxSpeedMetersPerSec, same as SwerveDriveKinematics.desaturateWheelSpeeds. */
+    public static void desaturate(double[] speedsMetersPerSec, double maxSpeedMetersPerSec) {
+        double realMaxSpeed = Math.max(
+            Math.max(Math.abs(speedsMetersPerSec[0]), Math.abs(speedsMetersPerSec[1])),
+            Math.max(Math.abs(speedsMetersPerSec[2]), Math.abs(speedsMetersPerSec[3]))
+        );
+
+        if (realMaxSpeed > maxSpeedMetersPerSec) {
+            for (int i = 0; i < 4; i++) {
+                speedsMetersPerSec[i] = speedsMetersPerSec[i] / realMaxSpeed * maxSpeedMetersPerSec;
+            }
+        }
+    }
+
+    // Same summation order as EJML's matrix vector product
+    private double forwardRow(int row, double a0, double a1, double a2, double a3, double a4, double a5, double a6, double a7) {
+        int offset = row * 8;
+        double total = forwardKinematics[offset + 0] * a0;
+        total += forwardKinematics[offset + 1] * a1;
+        total += forwardKinematics[offset + 2] * a2;
+        total += forwardKinematics[offset + 3] * a3;
+        total += forwardKinematics[offset + 4] * a4;
+        total += forwardKinematics[offset + 5] * a5;
+        total += forwardKinematics[offset + 6] * a6;
+        total += forwardKinematics[offset + 7] * a7;
+        return total;
+    }
+}
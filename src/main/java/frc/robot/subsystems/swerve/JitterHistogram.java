@@ -0,0 +1,72 @@
+package frc.robot.subsystems.swerve;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of the interval between consecutive events of a periodic thread.
+ *
+ * <p>One thread records event timestamps, any other thread may read the counts. Counts are
+ * cumulative since construction; the last bucket also holds every interval past the histogram range.
+ */
+public class JitterHistogram {
+    private final long bucketWidthMicros;
+    private final AtomicLongArray counts;
+
+    private final AtomicLong sampleCount = new AtomicLong(0);
+    private final AtomicLong totalIntervalMicros = new AtomicLong(0);
+    private final AtomicLong maxIntervalMicros = new AtomicLong(0);
+
+    // Recording thread only
+    private long lastTimestampMicros = -1;
+
+    /**
+     * @param bucketWidthSeconds width of each bucket
+     * @param bucketCount number of buckets, the histogram covers bucketWidth * bucketCount seconds
+     */
+    public JitterHistogram(double bucketWidthSeconds, int bucketCount) {
+        this.bucketWidthMicros = Math.max(1, Math.round(bucketWidthSeconds * 1e6));
+        this.counts = new AtomicLongArray(bucketCount);
+    }
+
+    /** Records an event at the given FPGA timestamp. Recording thread only. */
+    public void record(long timestampMicros) {
+        if (lastTimestampMicros >= 0) {
+            long intervalMicros = timestampMicros - lastTimestampMicros;
+            int bucket = (int) Math.min(intervalMicros / bucketWidthMicros, counts.length() - 1);
+            counts.incrementAndGet(Math.max(bucket, 0));
+
+            sampleCount.incrementAndGet();
+            totalIntervalMicros.addAndGet(intervalMicros);
+            if (intervalMicros > maxIntervalMicros.get()) {
+                maxIntervalMicros.set(intervalMicros);
+            }
+        }
+        lastTimestampMicros = timestampMicros;
+    }
+
+    /** Copies the bucket counts into {@code destination}. */
+    public void getCounts(long[] destination) {
+        int length = Math.min(destination.length, counts.length());
+        for (int i = 0; i < length; i++) {
+            destination[i] = counts.get(i);
+        }
+    }
+
+    public int getBucketCount() {
+        return counts.length();
+    }
+
+    public double getBucketWidthSeconds() {
+        return bucketWidthMicros / 1e6;
+    }
+
+    public double getMeanIntervalSeconds() {
+        long samples = sampleCount.get();
+        return samples == 0 ? 0.0 : totalIntervalMicros.get() / 1e6 / samples;
+    }
+
+    public double getMaxIntervalSeconds() {
+        return maxIntervalMicros.get() / 1e6;
+    }
+}
@@ -0,0 +1,258 @@
+package frc.robot.subsystems.swerve;
+
+import java.util.concurrent.locks.LockSupport;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.util.Units;
+import frc.robot.lib.estimation.SecondOrderWheelOdometry;
+import frc.robot.lib.estimation.WheelSlipDetector;
+import frc.robot.lib.util.PoseHistoryBuffer;
+
+/**
+ * Integrates odometry at the odometry rate, on its own thread, from the frames of
+ * {@link PhoenixOdometryThread}.
+ *
+ * <p>RobotState still owns the pose estimate, updated by the main loop. After every update it
+ * publishes an {@link Anchor}, the estimated pose at the newest odometry sample it has seen. This
+ * thread keeps an odometry only pose history and publishes an {@link Estimate}: the anchor moved by
+ * the odometry measured since the anchor's timestamp. Readers get a pose that is at most one frame
+ * old instead of up to one main loop old, and vision corrections still come from RobotState.
+ *
+ * <p>The odometry here must match the estimator's between anchors. Samples get the same corrections
+ * RobotState applies, from its own {@link SecondOrderWheelOdometry} and {@link WheelSlipDetector}
+ * built from the same config, and are timestamped like RobotState's: the mean of the modules'
+ * sample timestamps, so anchors are looked up in the same timebase they were published in. While
+ * RobotState reports the gyro disconnected, heading comes from the wheels here too.
+ *
+ * <p>Both records are immutable and handed over through volatile fields, neither side ever locks.
+ */
+public class OdometryEstimatorThread extends Thread {
+    /** Estimated pose at an odometry sample timestamp, published by RobotState. */
+    public static record Anchor(double timestampSeconds, Pose2d pose) {}
+
+    /** Anchor moved by the odometry since, up to the newest frame. Only valid while its anchor is the newest one. */
+    public static record Estimate(Anchor anchor, double timestampSeconds, Pose2d pose, long frameSequence) {}
+
+    private static final double kHistorySeconds = 0.5;
+
+    private final FourModuleKinematics kinematics;
+    private final SecondOrderWheelOdometry secondOrderWheelOdometry;
+    private final WheelSlipDetector wheelSlipDetector;
+    private final int[] drivePositionColumns;
+    private final int[] steerPositionColumns;
+    private final int[] timestampColumns;
+    private final int yawColumn;
+
+    private OdometryFrameBuffer frames;
+
+    private final long[] frameSequences = new long[PhoenixOdometryThread.FRAME_CAPACITY];
+    private final double[][] frameDrivePositions = new double[4][PhoenixOdometryThread.FRAME_CAPACITY];
+    private final double[][] frameSteerPositions = new double[4][PhoenixOdometryThread.FRAME_CAPACITY];
+    private final double[][] frameModuleTimestamps = new double[4][PhoenixOdometryThread.FRAME_CAPACITY];
+    private final double[] frameYaws = new double[PhoenixOdometryThread.FRAME_CAPACITY];
+
+    // Odometry only pose, integrated from the first frame
+    private final PoseHistoryBuffer odometryHistory = new PoseHistoryBuffer(
+        kHistorySeconds,
+        (int) Math.ceil(kHistorySeconds * SwerveDrive.ODOMETRY_FREQUENCY) + 1
+    );
+    private boolean hasLastSample = false;
+    private double odometryX = 0;
+    private double odometryY = 0;
+    private double odometryTheta = 0;
+    private final double[] lastDistancesMeters = new double[4];
+    private final double[] rawDistancesMeters = new double[4];
+    private final double[] distancesMeters = new double[4];
+    private final double[] anglesRad = new double[4];
+    private double lastYawRad = 0;
+    private boolean hasLastYaw = false;
+    private final Twist2d twist = new Twist2d();
+    private double lastSampleTimestampSeconds = 0;
+    private final double[] anchorOdometry = new double[3];
+
+    private volatile Anchor anchor = null;
+    private volatile boolean isGyroConnected = true;
+    private volatile Estimate estimate = null;
+
+    /**
+     * @param kinematics drivetrain kinematics
+     * @param secondOrderWheelOdometry second order correction, or null if RobotState does not apply one
+     * @param wheelSlipDetector slip detector tuned like RobotState's, owned by this thread
+     * @param drivePositionColumns frame column of each module's drive position, in meters
+     * @param steerPositionColumns frame column of each module's steer position, in rotations
+     * @param timestampColumns frame column of each module's sample timestamp, or -1 to use the frame timestamp
+     * @param yawColumn frame column of the gyro yaw in degrees, or -1 to take heading from the wheels
+     */
+    public OdometryEstimatorThread(
+        FourModuleKinematics kinematics,
+        SecondOrderWheelOdometry secondOrderWheelOdometry,
+        WheelSlipDetector wheelSlipDetector,
+        int[] drivePositionColumns,
+        int[] steerPositionColumns,
+        int[] timestampColumns,
+        int yawColumn
+    ) {
+        this.kinematics = kinematics;
+        this.secondOrderWheelOdometry = secondOrderWheelOdometry;
+        this.wheelSlipDetector = wheelSlipDetector;
+        this.drivePositionColumns = drivePositionColumns;
+        this.steerPositionColumns = steerPositionColumns;
+        this.timestampColumns = timestampColumns;
+        this.yawColumn = yawColumn;
+
+        setName("OdometryEstimatorThread");
+        setDaemon(true);
+    }
+
+    /** Starts consuming frames. The odometry thread must have been started with this thread as its frame listener. */
+    @Override
+    public void start() {
+        frames = PhoenixOdometryThread.getInstance().getListenerFrames();
+        if (frames != null) {
+            super.start();
+        }
+    }
+
+    /** Called by RobotState after every estimator update. */
+    public void setAnchor(Anchor anchor) {
+        this.anchor = anchor;
+    }
+
+    /** Called by RobotState with every odometry batch, so both sides trust the gyro at the same time. */
+    public void setGyroConnected(boolean isGyroConnected) {
+        this.isGyroConnected = isGyroConnected;
+    }
+
+    /** Newest estimate, or null until the first anchor has been matched to odometry. */
+    public Estimate getEstimate() {
+        return estimate;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            // Unparked by the odometry thread after each frame, spurious wakeups just find no frames
+            LockSupport.park();
+
+            frames.latch();
+            int frameCount;
+            try {
+                frameCount = frames.getLatchedFrameCount();
+                frames.readSequences(frameSequences);
+                for (int j = 0; j < 4; j++) {
+                    frames.readSignal(drivePositionColumns[j], frameDrivePositions[j]);
+                    frames.readSignal(steerPositionColumns[j], frameSteerPositions[j]);
+                    if (timestampColumns[j] >= 0) {
+                        frames.readSignal(timestampColumns[j], frameModuleTimestamps[j]);
+                    } else {
+                        frames.readTimestamps(frameModuleTimestamps[j]);
+                    }
+                }
+                if (yawColumn >= 0) {
+                    frames.readSignal(yawColumn, frameYaws);
+                }
+            } finally {
+                frames.release();
+            }
+
+            boolean useGyro = yawColumn >= 0 && isGyroConnected;
+            for (int i = 0; i < frameCount; i++) {
+                integrate(i, useGyro);
+            }
+
+            if (frameCount > 0) {
+                publish(lastSampleTimestampSeconds, frameSequences[frameCount - 1]);
+            }
+        }
+    }
+
+    private void integrate(int frame, boolean useGyro) {
+        // Same sample pipeline as RobotState.addOdometryObservations, or the anchors would not line up
+        double timestampSeconds = 0;
+        for (int j = 0; j < 4; j++) {
+            rawDistancesMeters[j] = frameDrivePositions[j][frame];
+            anglesRad[j] = Units.rotationsToRadians(frameSteerPositions[j][frame]);
+            timestampSeconds += frameModuleTimestamps[j][frame] / 4.0;
+        }
+        double yawRad = Units.degreesToRadians(frameYaws[frame]);
+
+        if (secondOrderWheelOdometry != null) {
+            secondOrderWheelOdometry.update(rawDistancesMeters, anglesRad, rawDistancesMeters, anglesRad);
+        }
+        wheelSlipDetector.update(timestampSeconds, rawDistancesMeters, anglesRad, useGyro, useGyro ? yawRad : 0, distancesMeters);
+
+        if (hasLastSample) {
+            kinematics.toTwist2d(lastDistancesMeters, distancesMeters, anglesRad, twist);
+            double dtheta = useGyro && hasLastYaw ? MathUtil.angleModulus(yawRad - lastYawRad) : twist.dtheta;
+
+            // Pose2d.exp, unrolled
+            double sinTheta = Math.sin(dtheta);
+            double cosTheta = Math.cos(dtheta);
+            double s;
+            double c;
+            if (Math.abs(dtheta) < 1e-9) {
+                s = 1.0 - dtheta * dtheta / 6.0;
+                c = 0.5 * dtheta;
+            } else {
+                s = sinTheta / dtheta;
+                c = (1.0 - cosTheta) / dtheta;
+            }
+            double localX = twist.dx * s - twist.dy * c;
+            double localY = twist.dx * c + twist.dy * s;
+
+            double cos = Math.cos(odometryTheta);
+            double sin = Math.sin(odometryTheta);
+            odometryX += localX * cos - localY * sin;
+            odometryY += localX * sin + localY * cos;
+            odometryTheta = MathUtil.angleModulus(odometryTheta + dtheta);
+        }
+
+        System.arraycopy(distancesMeters, 0, lastDistancesMeters, 0, 4);
+        lastYawRad = yawRad;
+        hasLastYaw = useGyro;
+        hasLastSample = true;
+
+        lastSampleTimestampSeconds = timestampSeconds;
+        odometryHistory.addSample(timestampSeconds, odometryX, odometryY, odometryTheta);
+    }
+
+    private void publish(double timestampSeconds, long frameSequence) {
+        Anchor currentAnchor = anchor;
+        // Anchors ahead of the newest sample, like the one after a pose reset, wait for odometry to catch up
+        if (
+            currentAnchor == null ||
+            odometryHistory.isEmpty() ||
+            currentAnchor.timestampSeconds() < odometryHistory.getOldestTimestamp() ||
+            currentAnchor.timestampSeconds() > timestampSeconds
+        ) {
+            return;
+        }
+        odometryHistory.getPose(currentAnchor.timestampSeconds(), anchorOdometry);
+
+        // Odometry since the anchor, in the anchor's odometry frame
+        double dx = odometryX - anchorOdometry[0];
+        double dy = odometryY - anchorOdometry[1];
+        double cos = Math.cos(anchorOdometry[2]);
+        double sin = Math.sin(anchorOdometry[2]);
+        double localX = dx * cos + dy * sin;
+        double localY = -dx * sin + dy * cos;
+        double dtheta = MathUtil.angleModulus(odometryTheta - anchorOdometry[2]);
+
+        Pose2d anchorPose = currentAnchor.pose();
+        double anchorCos = anchorPose.getRotation().getCos();
+        double anchorSin = anchorPose.getRotation().getSin();
+        estimate = new Estimate(
+            currentAnchor,
+            timestampSeconds,
+            new Pose2d(
+                anchorPose.getX() + localX * anchorCos - localY * anchorSin,
+                anchorPose.getY() + localX * anchorSin + localY * anchorCos,
+                anchorPose.getRotation().plus(new Rotation2d(dtheta))
+            ),
+            frameSequence
+        );
+    }
+}
@@ -0,0 +1,157 @@
+package frc.robot.subsystems.swerve;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated single-producer / single-consumer buffer of odometry frames.
+ *
+ * <p>A frame is one sample of every registered odometry signal plus its timestamp, so consumers can
+ * never see the signals of one frame misaligned with another. Frames are stored struct-of-arrays: one
+ * timestamp array, one sequence array and one contiguous column per signal.
+ *
+ * <p>Every offered frame is stamped with a monotonically increasing sequence number, including frames
+ * that are dropped because the consumer fell behind, so a gap in the sequence numbers is exactly the
+ * number of dropped frames.
+ *
+ * <p>The consumer reads in cycles: {@link #latch()} fixes the set of published frames, the read
+ * methods copy them out, and {@link #release()} frees their slots for the producer. Neither side ever
+ * blocks the other. {@link #getContendedFrameCount()} counts the frames published while the consumer
+ * held a latch, each of which would have blocked one of the threads behind a lock.
+ */
+public class OdometryFrameBuffer {
+  private final int capacity;
+  private final int signalCount;
+
+  private final double[] timestamps;
+  private final long[] sequences;
+  // Column major, signal s of slot i is at s * capacity + i
+  private final double[] values;
+
+  // Producer state
+  private long nextSequence = 0;
+  private final AtomicLong droppedFrames = new AtomicLong(0);
+  private final AtomicLong contendedFrames = new AtomicLong(0);
+
+  // Frames [readIndex, writeIndex) are published and unread
+  private final AtomicLong writeIndex = new AtomicLong(0);
+  private final AtomicLong readIndex = new AtomicLong(0);
+
+  // Odd while the consumer holds a latch, written by the consumer only
+  private final AtomicLong latchState = new AtomicLong(0);
+
+  // Consumer state
+  private long latchedReadIndex = 0;
+  private int latchedFrameCount = 0;
+
+  public OdometryFrameBuffer(int capacity, int signalCount) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Odometry frame capacity must be positive, got " + capacity);
+    }
+
+    this.capacity = capacity;
+    this.signalCount = signalCount;
+
+    timestamps = new double[capacity];
+    sequences = new long[capacity];
+    values = new double[capacity * signalCount];
+  }
+
+  /**
+   * Publishes one frame. Producer thread only.
+   *
+   * @param timestamp FPGA timestamp of the frame in seconds
+   * @param frameValues one value per signal, indexed by signal column
+   * @return false if the buffer was full and the frame was dropped
+   */
+  public boolean offer(double timestamp, double[] frameValues) {
+    long sequence = nextSequence++;
+
+    long write = writeIndex.get();
+    if (write - readIndex.get() >= capacity) {
+      droppedFrames.incrementAndGet();
+      return false;
+    }
+
+    int slot = (int) (write % capacity);
+    timestamps[slot] = timestamp;
+    sequences[slot] = sequence;
+    for (int signal = 0; signal < signalCount; signal++) {
+      values[signal * capacity + slot] = frameValues[signal];
+    }
+
+    writeIndex.lazySet(write + 1);
+    if ((latchState.get() & 1) != 0) {
+      contendedFrames.incrementAndGet();
+    }
+    return true;
+  }
+
+  /** Fixes the set of frames the following reads will return. Consumer thread only. */
+  public void latch() {
+    latchState.set(latchState.get() + 1);
+    latchedReadIndex = readIndex.get();
+    latchedFrameCount = (int) (writeIndex.get() - latchedReadIndex);
+  }
+
+  /** Frees the latched frames for the producer. Consumer thread only. */
+  public void release() {
+    readIndex.lazySet(latchedReadIndex + latchedFrameCount);
+    latchState.set(latchState.get() + 1);
+  }
+
+  /** Number of frames latched by the last {@link #latch()}. */
+  public int getLatchedFrameCount() {
+    return latchedFrameCount;
+  }
+
+  /** Copies the latched frame timestamps into {@code destination}, oldest first. */
+  public void readTimestamps(double[] destination) {
+    int count = Math.min(latchedFrameCount, destination.length);
+    for (int i = 0; i < count; i++) {
+      destination[i] = timestamps[slot(i)];
+    }
+  }
+
+  /** Copies the latched frame sequence numbers into {@code destination}, oldest first. */
+  public void readSequences(long[] destination) {
+    int count = Math.min(latchedFrameCount, destination.length);
+    for (int i = 0; i < count; i++) {
+      destination[i] = sequences[slot(i)];
+    }
+  }
+
+  /** Copies one signal of the latched frames into {@code destination}, oldest first. */
+  public void readSignal(int signal, double[] destination) {
+    int count = Math.min(latchedFrameCount, destination.length);
+    int offset = signal * capacity;
+    for (int i = 0; i < count; i++) {
+      destination[i] = values[offset + slot(i)];
+    }
+  }
+
+  /** Sequence number of the newest latched frame, or -1 if no frames are latched. */
+  public long getLatestLatchedSequence() {
+    return latchedFrameCount > 0 ? sequences[slot(latchedFrameCount - 1)] : -1;
+  }
+
+  public long getDroppedFrameCount() {
+    return droppedFrames.get();
+  }
+
+  /** Frames published while the consumer held a latch. Readable from any thread. */
+  public long getContendedFrameCount() {
+    return contendedFrames.get();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public int getSignalCount() {
+    return signalCount;
+  }
+
+  private int slot(int latchedIndex) {
+    return (int) ((latchedReadIndex + latchedIndex) % capacity);
+  }
+}
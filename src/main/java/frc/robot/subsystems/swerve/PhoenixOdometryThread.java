@@ -9,33 +9,80 @@ package frc.robot.subsystems.swerve;
 
 import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.Timestamp;
+import com.ctre.phoenix6.Utils;
 import edu.wpi.first.wpilibj.RobotController;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.DoubleSupplier;
 
 /**
- * Provides an interface for asynchronously reading high-frequency measurements to a set of queues.
+ * Provides an interface for asynchronously reading high-frequency measurements into odometry frames.
  *
  * <p>This version is intended for Phoenix 6 devices on both the RIO and CANivore buses. When using
  * a CANivore, the thread uses the "waitForAll" blocking method to enable more consistent sampling.
  * This also allows Phoenix Pro users to benefit from lower latency between devices using CANivore
  * time synchronization.
+ *
+ * <p>Each sample of every registered signal is published atomically as one frame in a preallocated
+ * {@link OdometryFrameBuffer}, so consumers can never see signals from different samples at the same
+ * index. The main loop latches the published frames once per cycle with {@link #latchFrames()},
+ * every consumer copies out the columns it registered, and {@link #releaseFrames()} hands the slots
+ * back to the thread. Neither thread ever blocks the other.
+ *
+ * <p>Consumers attach a timestamp to their samples with {@link #registerTimestamp(int...)}. By
+ * default that is the frame timestamp, estimated from the average latency of every signal. With
+ * {@link #setUseCANivoreTimestamps(boolean)} it is instead the mean CANivore receive timestamp of the
+ * consumer's own signals, mapped into the FPGA timebase with a continuously estimated clock offset.
  */
 public class PhoenixOdometryThread extends Thread {
+  /** Frames buffered for the main loop, 80 ms worth of samples at the odometry frequency. */
+  public static final int FRAME_CAPACITY = (int) Math.ceil(SwerveDrive.ODOMETRY_FREQUENCY * 0.08);
+
   private final Lock signalsLock =
       new ReentrantLock(); // Prevents conflicts when registering signals
   private BaseStatusSignal[] phoenixSignals = new BaseStatusSignal[0];
+  private int[] phoenixColumns = new int[0];
   private final List<DoubleSupplier> genericSignals = new ArrayList<>();
-  private final List<Queue<Double>> phoenixQueues = new ArrayList<>();
-  private final List<Queue<Double>> genericQueues = new ArrayList<>();
-  private final List<Queue<Double>> timestampQueues = new ArrayList<>();
+  private final List<Integer> genericColumns = new ArrayList<>();
+  private int columnCount = 0;
+
+  // Each timestamp column is the timestamp of a group of Phoenix signals, by index in phoenixSignals
+  private int[][] timestampGroups = new int[0][];
+  private int[] timestampColumns = new int[0];
+
+  // Phoenix timestamps are in the Phoenix timebase, offset + phoenix time = FPGA time
+  private static final double kClockOffsetFilterGain = 0.02;
+  private static final double kMaxClockReadSeconds = 100e-6;
+  private volatile double clockOffsetSeconds = 0.0;
+  private boolean hasClockOffset = false;
+
+  // Scheduling, applied by the thread itself when it starts running
+  private int threadPriority = RealTimeScheduling.kNON_REAL_TIME_PRIORITY;
+  private int cpuCore = RealTimeScheduling.kANY_CPU_CORE;
+  private volatile boolean isRealTime = false;
+  private volatile boolean isPinned = false;
+
+  // 0.25 ms buckets up to 10 ms, the nominal interval is 4 ms at 250 Hz
+  private final JitterHistogram intervalHistogram = new JitterHistogram(0.25e-3, 40);
+
+  // Paces sampling when "waitForAll" cannot be used, see run()
+  private final DeadlineScheduler fallbackScheduler =
+      new DeadlineScheduler(SwerveDrive.ODOMETRY_FREQUENCY, DeadlineScheduler.CatchUpPolicy.SKIP);
+
+  // Allocated once all signals are registered, when the thread starts
+  private OdometryFrameBuffer frames = null;
+  private double[] frameValues = null;
+
+  // Optional second consumer on its own thread, with its own copy of every frame
+  private Thread frameListener = null;
+  private OdometryFrameBuffer listenerFrames = null;
 
   private static boolean isCANFD = true;
+  private static boolean useCANivoreTimestamps = false;
   private static PhoenixOdometryThread instance = null;
 
   public static PhoenixOdometryThread getInstance() {
@@ -52,80 +99,239 @@ public class PhoenixOdometryThread extends Thread {
 
   @Override
   public void start() {
-    if (timestampQueues.size() > 0) {
+    if (columnCount > 0) {
+      frames = new OdometryFrameBuffer(FRAME_CAPACITY, columnCount);
+      frameValues = new double[columnCount];
+      if (frameListener != null) {
+        listenerFrames = new OdometryFrameBuffer(FRAME_CAPACITY, columnCount);
+      }
       super.start();
     }
   }
 
-  /** Registers a Phoenix signal to be read from the thread. */
-public <T> Queue<Double> registerSignal(StatusSignal<T> signal) {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
+  /**
+   * Registers a Phoenix signal to be read from the thread.
+   *
+   * @return the frame column of the signal, see {@link #readSignal(int, double[])}
+   */
+  public <T> int registerSignal(StatusSignal<T> signal) {
     signalsLock.lock();
-    SwerveDrive.odometryLock.lock();
     try {
+      checkNotStarted();
+
       BaseStatusSignal[] newSignals = new BaseStatusSignal[phoenixSignals.length + 1];
       System.arraycopy(phoenixSignals, 0, newSignals, 0, phoenixSignals.length);
       newSignals[phoenixSignals.length] = signal;
       phoenixSignals = newSignals;
-      phoenixQueues.add(queue);
+
+      int[] newColumns = new int[phoenixColumns.length + 1];
+      System.arraycopy(phoenixColumns, 0, newColumns, 0, phoenixColumns.length);
+      newColumns[phoenixColumns.length] = columnCount;
+      phoenixColumns = newColumns;
+
+      return columnCount++;
     } finally {
       signalsLock.unlock();
-      SwerveDrive.odometryLock.unlock();
     }
-    return queue;
   }
 
-  /** Registers a generic signal to be read from the thread. */
-  public Queue<Double> registerSignal(DoubleSupplier signal) {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
+  /**
+   * Registers a generic signal to be read from the thread.
+   *
+   * @return the frame column of the signal, see {@link #readSignal(int, double[])}
+   */
+  public int registerSignal(DoubleSupplier signal) {
     signalsLock.lock();
-    SwerveDrive.odometryLock.lock();
     try {
+      checkNotStarted();
+
       genericSignals.add(signal);
-      genericQueues.add(queue);
+      genericColumns.add(columnCount);
+
+      return columnCount++;
     } finally {
       signalsLock.unlock();
-      SwerveDrive.odometryLock.unlock();
     }
-    return queue;
   }
 
-  /** Returns a new queue that returns timestamp values for each sample. */
-  public Queue<Double> makeTimestampQueue() {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
-    SwerveDrive.odometryLock.lock();
+  /**
+   * Registers a per-sample timestamp for a group of already registered Phoenix signals, typically all
+   * the signals of one device or module.
+   *
+   * @param signalColumns frame columns returned by {@link #registerSignal(StatusSignal)}
+   * @return the frame column of the timestamp, in FPGA seconds
+   */
+  public int registerTimestamp(int... signalColumns) {
+    signalsLock.lock();
     try {
-      timestampQueues.add(queue);
+      checkNotStarted();
+
+      int[] group = new int[signalColumns.length];
+      for (int i = 0; i < signalColumns.length; i++) {
+        group[i] = -1;
+        for (int j = 0; j < phoenixColumns.length; j++) {
+          if (phoenixColumns[j] == signalColumns[i]) {
+            group[i] = j;
+          }
+        }
+        if (group[i] < 0) {
+          throw new IllegalArgumentException(
+              "Column " + signalColumns[i] + " is not a registered Phoenix signal");
+        }
+      }
+
+      int[][] newGroups = new int[timestampGroups.length + 1][];
+      System.arraycopy(timestampGroups, 0, newGroups, 0, timestampGroups.length);
+      newGroups[timestampGroups.length] = group;
+      timestampGroups = newGroups;
+
+      int[] newColumns = new int[timestampColumns.length + 1];
+      System.arraycopy(timestampColumns, 0, newColumns, 0, timestampColumns.length);
+      newColumns[timestampColumns.length] = columnCount;
+      timestampColumns = newColumns;
+
+      return columnCount++;
     } finally {
-        SwerveDrive.odometryLock.unlock();
+      signalsLock.unlock();
     }
-    return queue;
+  }
+
+  /**
+   * Timestamps samples with the CANivore receive time of each device instead of the frame's average
+   * latency. Only meaningful on a CANivore bus, must be set before the thread starts.
+   */
+  public void setUseCANivoreTimestamps(boolean useCANivoreTimestamps) {
+    PhoenixOdometryThread.useCANivoreTimestamps = useCANivoreTimestamps;
+  }
+
+  /**
+   * Sets how the thread is scheduled once it starts. Must be called before {@link #start()}.
+   *
+   * @param threadPriority real-time priority, or {@link RealTimeScheduling#kNON_REAL_TIME_PRIORITY}
+   * @param cpuCore core to pin the thread to, or {@link RealTimeScheduling#kANY_CPU_CORE}
+   */
+  public void setScheduling(int threadPriority, int cpuCore) {
+    this.threadPriority = threadPriority;
+    this.cpuCore = cpuCore;
+  }
+
+  public boolean isRealTime() {
+    return isRealTime;
+  }
+
+  public boolean isPinned() {
+    return isPinned;
+  }
+
+  /** Histogram of the interval between published frames. */
+  public JitterHistogram getIntervalHistogram() {
+    return intervalHistogram;
+  }
+
+  /** Whether the signals are on a CAN FD bus. Must be set before the thread starts. */
+  public void setCANFD(boolean isCANFD) {
+    PhoenixOdometryThread.isCANFD = isCANFD;
+  }
+
+  public boolean isCANFD() {
+    return isCANFD;
+  }
+
+  /** Stats of the fixed-rate scheduler used on non CAN FD buses. */
+  public DeadlineScheduler getFallbackScheduler() {
+    return fallbackScheduler;
+  }
+
+  /**
+   * Publishes every frame to a second buffer as well, read by the listener thread on its own
+   * schedule. The listener is unparked after each frame. Must be called before the thread starts.
+   */
+  public void setFrameListener(Thread listener) {
+    checkNotStarted();
+    frameListener = listener;
+  }
+
+  /** Frames for the listener, or null if there is none or the thread has not started. */
+  public OdometryFrameBuffer getListenerFrames() {
+    return listenerFrames;
+  }
+
+  /** Current estimate of FPGA time minus Phoenix time, in seconds. */
+  public double getClockOffsetSeconds() {
+    return clockOffsetSeconds;
+  }
+
+  private void checkNotStarted() {
+    if (frames != null) {
+      throw new IllegalStateException(
+          "Odometry signals must be registered before the odometry thread is started");
+    }
+  }
+
+  /**
+   * Latches every frame published since the previous cycle. Must be called once per main loop cycle
+   * before any consumer reads, and followed by {@link #releaseFrames()}.
+   */
+  public void latchFrames() {
+    if (frames != null) frames.latch();
+  }
+
+  /** Hands the latched frames back to the thread. */
+  public void releaseFrames() {
+    if (frames != null) frames.release();
+  }
+
+  /** Number of frames latched this cycle. */
+  public int getLatchedFrameCount() {
+    return frames == null ? 0 : frames.getLatchedFrameCount();
+  }
+
+  /** Copies the timestamps of the latched frames, oldest first. */
+  public void readTimestamps(double[] destination) {
+    if (frames != null) frames.readTimestamps(destination);
+  }
+
+  /** Copies one registered signal of the latched frames, oldest first. */
+  public void readSignal(int column, double[] destination) {
+    if (frames != null) frames.readSignal(column, destination);
+  }
+
+  /** Sequence number of the newest latched frame, or -1 if none are latched. */
+  public long getLatestFrameSequence() {
+    return frames == null ? -1 : frames.getLatestLatchedSequence();
+  }
+
+  /** Frames dropped because the main loop fell behind and the buffer was full. */
+  public long getDroppedFrameCount() {
+    return frames == null ? 0 : frames.getDroppedFrameCount();
+  }
+
+  /** Frames published while the main loop was reading, each one a wait under the old lock. */
+  public long getContendedFrameCount() {
+    return frames == null ? 0 : frames.getContendedFrameCount();
   }
 
   @Override
   public void run() {
+    isRealTime = RealTimeScheduling.setCurrentThreadPriority(threadPriority);
+    isPinned = RealTimeScheduling.pinCurrentThreadToCore(cpuCore);
+
     while (true) {
-      // Wait for updates from all signals
+      // Only contended by signal registration, never by the main loop
       signalsLock.lock();
       try {
+        // Wait for updates from all signals
         if (isCANFD && phoenixSignals.length > 0) {
           BaseStatusSignal.waitForAll(2.0 / SwerveDrive.ODOMETRY_FREQUENCY, phoenixSignals);
         } else {
           // "waitForAll" does not support blocking on multiple signals with a bus
           // that is not CAN FD, regardless of Pro licensing. No reasoning for this
           // behavior is provided by the documentation.
-          Thread.sleep((long) (1000.0 / SwerveDrive.ODOMETRY_FREQUENCY));
+          // Sleep until an absolute deadline so refresh time does not lower the rate.
+          fallbackScheduler.waitForNextRelease();
           if (phoenixSignals.length > 0) BaseStatusSignal.refreshAll(phoenixSignals);
         }
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-      } finally {
-        signalsLock.unlock();
-      }
 
-      // Save new data to queues
-      SwerveDrive.odometryLock.lock();
-      try {
         // Sample timestamp is current FPGA time minus average CAN latency
         //     Default timestamps from Phoenix are NOT compatible with
         //     FPGA timestamps, this solution is imperfect but close
@@ -138,19 +344,65 @@ public <T> Queue<Double> registerSignal(StatusSignal<T> signal) {
           timestamp -= totalLatency / phoenixSignals.length;
         }
 
-        // Add new samples to queues
+        if (useCANivoreTimestamps) {
+          updateClockOffset();
+        }
+        for (int i = 0; i < timestampGroups.length; i++) {
+          frameValues[timestampColumns[i]] =
+              useCANivoreTimestamps ? getGroupTimestamp(timestampGroups[i], timestamp) : timestamp;
+        }
+
+        // Publish all signals as one frame
         for (int i = 0; i < phoenixSignals.length; i++) {
-          phoenixQueues.get(i).offer(phoenixSignals[i].getValueAsDouble());
+          frameValues[phoenixColumns[i]] = phoenixSignals[i].getValueAsDouble();
         }
         for (int i = 0; i < genericSignals.size(); i++) {
-          genericQueues.get(i).offer(genericSignals.get(i).getAsDouble());
+          frameValues[genericColumns.get(i)] = genericSignals.get(i).getAsDouble();
         }
-        for (int i = 0; i < timestampQueues.size(); i++) {
-          timestampQueues.get(i).offer(timestamp);
+        frames.offer(timestamp, frameValues);
+        if (listenerFrames != null) {
+          listenerFrames.offer(timestamp, frameValues);
+          LockSupport.unpark(frameListener);
         }
+        intervalHistogram.record(RobotController.getFPGATime());
       } finally {
-        SwerveDrive.odometryLock.unlock();
+        signalsLock.unlock();
       }
     }
   }
-}
\ No newline at end of file
+
+  /** Mean CANivore timestamp of a signal group in FPGA seconds, or the fallback if any is invalid. */
+  private double getGroupTimestamp(int[] group, double fallbackTimestamp) {
+    double totalTimestamp = 0.0;
+    for (int signalIndex : group) {
+      Timestamp canivoreTimestamp =
+          phoenixSignals[signalIndex].getAllTimestamps().getCANivoreTimestamp();
+      if (!canivoreTimestamp.isValid()) {
+        return fallbackTimestamp;
+      }
+      totalTimestamp += canivoreTimestamp.getTime();
+    }
+    return group.length > 0 ? totalTimestamp / group.length + clockOffsetSeconds : fallbackTimestamp;
+  }
+
+  /** Low-pass filters the offset between the Phoenix and FPGA clocks. */
+  private void updateClockOffset() {
+    // Bracket the FPGA read with two Phoenix reads so the sample is centered
+    double phoenixTimeBefore = Utils.getCurrentTimeSeconds();
+    double fpgaTime = RobotController.getFPGATime() / 1e6;
+    double phoenixTimeAfter = Utils.getCurrentTimeSeconds();
+
+    // A read that was preempted would skew the estimate
+    if (phoenixTimeAfter - phoenixTimeBefore > kMaxClockReadSeconds) {
+      return;
+    }
+
+    double offsetSample = fpgaTime - (phoenixTimeBefore + phoenixTimeAfter) / 2.0;
+    if (!hasClockOffset) {
+      clockOffsetSeconds = offsetSample;
+      hasClockOffset = true;
+    } else {
+      clockOffsetSeconds += kClockOffsetFilterGain * (offsetSample - clockOffsetSeconds);
+    }
+  }
+}
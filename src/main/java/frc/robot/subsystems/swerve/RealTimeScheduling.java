@@ -0,0 +1,78 @@
+package frc.robot.subsystems.swerve;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Threads;
+
+/**
+ * Scheduling helpers for the high frequency sampling threads of the drivetrain.
+ *
+ * <p>Both operations are best effort: they only succeed on Linux with sufficient privileges (the
+ * roboRIO), and failures are reported to the driver station instead of thrown.
+ */
+public class RealTimeScheduling {
+    /** Leaves the thread on the normal, non real-time scheduler. */
+    public static final int kNON_REAL_TIME_PRIORITY = 0;
+    /** Lets the kernel run the thread on any core. */
+    public static final int kANY_CPU_CORE = -1;
+
+    private RealTimeScheduling() {}
+
+    /**
+     * Switches the calling thread to the real-time scheduler.
+     *
+     * @param priority real-time priority from 1 (lowest) to 99, or {@link #kNON_REAL_TIME_PRIORITY}
+     * @return true if the priority was applied
+     */
+    public static boolean setCurrentThreadPriority(int priority) {
+        if (priority == kNON_REAL_TIME_PRIORITY) {
+            return false;
+        }
+
+        boolean isApplied = Threads.setCurrentThreadPriority(true, priority);
+        if (!isApplied) {
+            DriverStation.reportWarning(
+                "Failed to set real-time priority " + priority + " on " + Thread.currentThread().getName(),
+                false
+            );
+        }
+        return isApplied;
+    }
+
+    /**
+     * Pins the calling thread to a single CPU core.
+     *
+     * @param cpuCore core index, or {@link #kANY_CPU_CORE}
+     * @return true if the affinity was applied
+     */
+    public static boolean pinCurrentThreadToCore(int cpuCore) {
+        if (cpuCore == kANY_CPU_CORE) {
+            return false;
+        }
+
+        try {
+            // On Linux "/proc/thread-self" links to "<pid>/task/<tid>" for the calling thread
+            String threadId = Files.readSymbolicLink(Path.of("/proc/thread-self")).getFileName().toString();
+            Process taskset = new ProcessBuilder("taskset", "-p", "-c", Integer.toString(cpuCore), threadId)
+                .redirectErrorStream(true)
+                .start();
+
+            if (taskset.waitFor() == 0) {
+                return true;
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            // Not on Linux or taskset is unavailable, reported below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        DriverStation.reportWarning(
+            "Failed to pin " + Thread.currentThread().getName() + " to CPU core " + cpuCore,
+            false
+        );
+        return false;
+    }
+}
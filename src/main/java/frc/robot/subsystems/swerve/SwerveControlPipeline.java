@@ -0,0 +1,163 @@
+package frc.robot.subsystems.swerve;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
+
+/**
+ * Turns desired robot relative speeds into module setpoints without allocating.
+ *
+ * <p>Runs the same steps SwerveDrive used to run through ChassisSpeeds and SwerveModuleState
+ * objects: field relative transform, acceleration limiting, back to robot relative, inverse
+ * kinematics, desaturation and optimization against the measured steer angles. All state lives in
+ * preallocated fields that are overwritten every cycle, the ChassisSpeeds getters return those same
+ * objects and should not be kept across cycles.
+ */
+public class SwerveControlPipeline {
+    private final SwerveDrivetrainConfigBase drivetrainConfig;
+
+    private final FourModuleKinematics kinematics;
+
+    private final ChassisSpeeds desiredFieldRelativeSpeeds = new ChassisSpeeds();
+    private final ChassisSpeeds obtainableFieldRelativeSpeeds = new ChassisSpeeds();
+    private final ChassisSpeeds obtainableRobotRelativeSpeeds = new ChassisSpeeds();
+
+    private double desiredAcceleration = 0;
+    private double obtainableAcceleration = 0;
+    private double desiredOmegaAcceleration = 0;
+    private double obtainableOmegaAcceleration = 0;
+
+    private final double[] desaturatedSpeedsMetersPerSec = new double[4];
+    private final double[] desaturatedAnglesRad = new double[4];
+    private final double[] optimizedSpeedsMetersPerSec = new double[4];
+    private final double[] optimizedAnglesRad = new double[4];
+
+    public SwerveControlPipeline(SwerveDrivetrainConfigBase drivetrainConfig, FourModuleKinematics kinematics) {
+        this.drivetrainConfig = drivetrainConfig;
+        this.kinematics = kinematics;
+    }
+
+    /**
+     * Runs one control cycle.
+     *
+     * @param desiredRobotRelativeSpeeds requested speeds, only read
+     * @param headingRad estimated robot heading
+     * @param dt time since the last cycle in seconds
+     * @param measuredSteerAnglesRad current steer angle of each module, used to optimize the setpoints
+     */
+    public void update(ChassisSpeeds desiredRobotRelativeSpeeds, double headingRad, double dt, double[] measuredSteerAnglesRad) {
+        double cos = Math.cos(headingRad);
+        double sin = Math.sin(headingRad);
+
+        // Robot relative to field relative
+        desiredFieldRelativeSpeeds.vxMetersPerSecond =
+            desiredRobotRelativeSpeeds.vxMetersPerSecond * cos - desiredRobotRelativeSpeeds.vyMetersPerSecond * sin;
+        desiredFieldRelativeSpeeds.vyMetersPerSecond =
+            desiredRobotRelativeSpeeds.vxMetersPerSecond * sin + desiredRobotRelativeSpeeds.vyMetersPerSecond * cos;
+        desiredFieldRelativeSpeeds.omegaRadiansPerSecond = desiredRobotRelativeSpeeds.omegaRadiansPerSecond;
+
+        limitAcceleration(dt);
+
+        // Field relative back to robot relative
+        obtainableRobotRelativeSpeeds.vxMetersPerSecond =
+            obtainableFieldRelativeSpeeds.vxMetersPerSecond * cos + obtainableFieldRelativeSpeeds.vyMetersPerSecond * sin;
+        obtainableRobotRelativeSpeeds.vyMetersPerSecond =
+            -obtainableFieldRelativeSpeeds.vxMetersPerSecond * sin + obtainableFieldRelativeSpeeds.vyMetersPerSecond * cos;
+        obtainableRobotRelativeSpeeds.omegaRadiansPerSecond = obtainableFieldRelativeSpeeds.omegaRadiansPerSecond;
+
+        kinematics.toModuleStates(
+            obtainableRobotRelativeSpeeds.vxMetersPerSecond,
+            obtainableRobotRelativeSpeeds.vyMetersPerSecond,
+            obtainableRobotRelativeSpeeds.omegaRadiansPerSecond,
+            desaturatedSpeedsMetersPerSec,
+            desaturatedAnglesRad
+        );
+        FourModuleKinematics.desaturate(desaturatedSpeedsMetersPerSec, drivetrainConfig.getMaxModuleVelocity());
+
+        for (int i = 0; i < 4; i++) {
+            optimize(i, measuredSteerAnglesRad[i]);
+        }
+    }
+
+    private void limitAcceleration(double dt) {
+        double dvx = desiredFieldRelativeSpeeds.vxMetersPerSecond - obtainableFieldRelativeSpeeds.vxMetersPerSecond;
+        double dvy = desiredFieldRelativeSpeeds.vyMetersPerSecond - obtainableFieldRelativeSpeeds.vyMetersPerSecond;
+
+        desiredAcceleration = Math.hypot(dvx, dvy) / dt;
+        obtainableAcceleration = MathUtil.clamp(
+            desiredAcceleration,
+            0,
+            drivetrainConfig.getMaxTranslationalAccelerationMetersPerSecSec()
+        );
+        double theta = Math.atan2(dvy, dvx);
+
+        desiredOmegaAcceleration = (desiredFieldRelativeSpeeds.omegaRadiansPerSecond - obtainableFieldRelativeSpeeds.omegaRadiansPerSecond) / dt;
+        obtainableOmegaAcceleration = MathUtil.clamp(
+            desiredOmegaAcceleration,
+            -drivetrainConfig.getMaxAngularAccelerationRadiansPerSecSec(),
+            drivetrainConfig.getMaxAngularAccelerationRadiansPerSecSec()
+        );
+
+        obtainableFieldRelativeSpeeds.vxMetersPerSecond += Math.cos(theta) * obtainableAcceleration * dt;
+        obtainableFieldRelativeSpeeds.vyMetersPerSecond += Math.sin(theta) * obtainableAcceleration * dt;
+        obtainableFieldRelativeSpeeds.omegaRadiansPerSecond += obtainableOmegaAcceleration * dt;
+    }
+
+    /** Same as SwerveModuleState.optimize, never turns a module more than 90 degrees. */
+    private void optimize(int module, double currentAngleRad) {
+        double speed = desaturatedSpeedsMetersPerSec[module];
+        double angle = desaturatedAnglesRad[module];
+
+        if (Math.abs(MathUtil.angleModulus(angle - currentAngleRad)) > Math.PI / 2.0) {
+            speed = -speed;
+            angle = MathUtil.angleModulus(angle + Math.PI);
+        }
+
+        optimizedSpeedsMetersPerSec[module] = speed;
+        optimizedAnglesRad[module] = angle;
+    }
+
+    public ChassisSpeeds getDesiredFieldRelativeSpeeds() {
+        return desiredFieldRelativeSpeeds;
+    }
+
+    public ChassisSpeeds getObtainableFieldRelativeSpeeds() {
+        return obtainableFieldRelativeSpeeds;
+    }
+
+    public ChassisSpeeds getObtainableRobotRelativeSpeeds() {
+        return obtainableRobotRelativeSpeeds;
+    }
+
+    public double getDesiredAcceleration() {
+        return desiredAcceleration;
+    }
+
+    public double getObtainableAcceleration() {
+        return obtainableAcceleration;
+    }
+
+    public double getDesiredOmegaAcceleration() {
+        return desiredOmegaAcceleration;
+    }
+
+    public double getObtainableOmegaAcceleration() {
+        return obtainableOmegaAcceleration;
+    }
+
+    public double getDesaturatedSpeedMetersPerSec(int module) {
+        return desaturatedSpeedsMetersPerSec[module];
+    }
+
+    public double getDesaturatedAngleRad(int module) {
+        return desaturatedAnglesRad[module];
+    }
+
+    public double getOptimizedSpeedMetersPerSec(int module) {
+        return optimizedSpeedsMetersPerSec[module];
+    }
+
+    public double getOptimizedAngleRad(int module) {
+        return optimizedAnglesRad[module];
+    }
+}
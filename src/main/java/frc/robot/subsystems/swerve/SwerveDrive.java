@@ -4,24 +4,19 @@ import static edu.wpi.first.units.Units.Second;
 import static edu.wpi.first.units.Units.Seconds;
 import static edu.wpi.first.units.Units.Volts;
 
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-
 import org.littletonrobotics.junction.Logger;
 
-import edu.wpi.first.math.MathUtil;
+import com.ctre.phoenix6.CANBus;
+
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
-import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
-import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine.Direction;
 import frc.robot.RobotState;
-import frc.robot.RobotState.OdometryObservation;
 import frc.robot.constants.Constants;
 import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
 import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigComp;
@@ -57,8 +52,6 @@ public class SwerveDrive extends SubsystemBase {
 
     public static final double ODOMETRY_FREQUENCY = 250;
 
-    public static final Lock odometryLock = new ReentrantLock();
-
     private ModuleIO[] modules;
     private ModuleIOInputsAutoLogged[] moduleInputs = {
             new ModuleIOInputsAutoLogged(),
@@ -70,14 +63,50 @@ public class SwerveDrive extends SubsystemBase {
     private final GyroIO gyroIO;
     private GyroIOInputsAutoLogged gyroInputs = new GyroIOInputsAutoLogged();
 
+    // [module][sample] views of the module odometry inputs, handed to RobotState as one batch
+    private final double[][] odometryTimestampsSeconds = new double[4][];
+    private final double[][] odometryDrivePositionsMeters = new double[4][];
+    private final double[][] odometrySteerPositionsRad = new double[4][];
+
+    private static final String[] moduleInputsKeys = {
+        "SwerveDrive/module0",
+        "SwerveDrive/module1",
+        "SwerveDrive/module2",
+        "SwerveDrive/module3"
+    };
+
+    // Reused every cycle so the control path does not allocate
+    private final SwerveModuleState[] measuredModuleStates = {
+        new SwerveModuleState(),
+        new SwerveModuleState(),
+        new SwerveModuleState(),
+        new SwerveModuleState()
+    };
+    private final double[] measuredDriveVelocitiesMetersPerSec = new double[4];
+    private final double[] measuredDrivePositionsMeters = new double[4];
+    private final double[] measuredSteerAnglesRad = new double[4];
+    private final SwerveModuleState[] desaturatedModuleSetpoints = {
+        new SwerveModuleState(),
+        new SwerveModuleState(),
+        new SwerveModuleState(),
+        new SwerveModuleState()
+    };
+    private final SwerveModuleState[] optimizedModuleSetpoints = {
+        new SwerveModuleState(),
+        new SwerveModuleState(),
+        new SwerveModuleState(),
+        new SwerveModuleState()
+    };
+
     private ChassisSpeeds desiredRobotRelativeSpeeds = new ChassisSpeeds();
-    private ChassisSpeeds obtainableFieldRelativeSpeeds = new ChassisSpeeds();
 
     double prevLoopTime = Timer.getTimestamp();
 
     private final SwerveModuleGeneralConfigBase moduleGeneralConfig;
     private final SwerveDrivetrainConfigBase drivetrainConfig;
-    private SwerveDriveKinematics kinematics;
+    private final SwerveControlPipeline controlPipeline;
+    // Only in sim
+    private SwerveGroundTruthSim groundTruthSim = null;
 
     private final SysIdRoutine driveCharacterizationSysIdRoutine;
     private final SysIdRoutine steerCharacterizationSysIdRoutine;
@@ -97,7 +126,7 @@ public class SwerveDrive extends SubsystemBase {
                 };
                 
                 gyroIO = new GyroIOPigeon2();
-                PhoenixOdometryThread.getInstance().start();
+                startOdometryThreads();
 
                 break;
 
@@ -113,7 +142,7 @@ public class SwerveDrive extends SubsystemBase {
                 };
                 
                 gyroIO = new GyroIOPigeon2();
-                PhoenixOdometryThread.getInstance().start();
+                startOdometryThreads();
                 break;
 
             case SIM:
@@ -128,6 +157,7 @@ public class SwerveDrive extends SubsystemBase {
                 };
 
                 gyroIO = new GyroIO() {};
+                groundTruthSim = SwerveGroundTruthSim.getInstance();
                 break;
 
             case REPLAY:
@@ -157,18 +187,13 @@ public class SwerveDrive extends SubsystemBase {
                 };
                 
                 gyroIO = new GyroIOPigeon2();
-                PhoenixOdometryThread.getInstance().start();
+                startOdometryThreads();
 
                 break;
                 
         }
 
-        kinematics = new SwerveDriveKinematics(
-            drivetrainConfig.getFrontLeftPositionMeters(),
-            drivetrainConfig.getFrontRightPositionMeters(),
-            drivetrainConfig.getBackLeftPositionMeters(),
-            drivetrainConfig.getBackRightPositionMeters()
-        );
+        controlPipeline = new SwerveControlPipeline(drivetrainConfig, RobotState.getInstance().getKinematics());
 
         // Create the SysId routine - this is going to be in torque current foc units not voltage
         driveCharacterizationSysIdRoutine = new SysIdRoutine(
@@ -204,6 +229,43 @@ public class SwerveDrive extends SubsystemBase {
         );
     }
 
+    private void startOdometryThreads() {
+        PhoenixOdometryThread odometryThread = PhoenixOdometryThread.getInstance();
+        odometryThread.setCANFD(new CANBus(moduleGeneralConfig.getCanBusName()).isNetworkFD());
+        odometryThread.setUseCANivoreTimestamps(moduleGeneralConfig.getUseCANivoreOdometryTimestamps());
+        odometryThread.setScheduling(moduleGeneralConfig.getOdometryThreadPriority(), moduleGeneralConfig.getOdometryThreadCpuCore());
+
+        OdometryEstimatorThread estimatorThread = null;
+        if (RobotState.getInstance().isOdometryEstimatorThreadEnabled()) {
+            int[] drivePositionColumns = new int[4];
+            int[] steerPositionColumns = new int[4];
+            int[] timestampColumns = new int[4];
+            for (int i = 0; i < 4; i++) {
+                drivePositionColumns[i] = modules[i].getDrivePositionOdometryColumn();
+                steerPositionColumns[i] = modules[i].getSteerPositionOdometryColumn();
+                timestampColumns[i] = modules[i].getTimestampOdometryColumn();
+            }
+
+            estimatorThread = new OdometryEstimatorThread(
+                RobotState.getInstance().getKinematics(),
+                RobotState.getInstance().createSecondOrderWheelOdometry(),
+                RobotState.getInstance().createWheelSlipDetector(),
+                drivePositionColumns,
+                steerPositionColumns,
+                timestampColumns,
+                gyroIO.getYawOdometryColumn()
+            );
+            odometryThread.setFrameListener(estimatorThread);
+        }
+
+        odometryThread.start();
+
+        if (estimatorThread != null) {
+            estimatorThread.start();
+            RobotState.getInstance().setOdometryEstimatorThread(estimatorThread);
+        }
+    }
+
     @Override
     public void periodic() {
         double dt = Timer.getTimestamp() - prevLoopTime; 
@@ -211,133 +273,128 @@ public class SwerveDrive extends SubsystemBase {
 
         Logger.recordOutput("SwerveDrive/dtPeriodic", dt);
 
-        // Thread safe reading of the gyro and swerve inputs.
-        // The read lock is released only after inputs are written via the write lock
-        odometryLock.lock();
+        // Lock-free read of the gyro and swerve inputs.
+        // Every IO reads the odometry frames latched here, so the odometry thread never waits on us
+        PhoenixOdometryThread odometryThread = PhoenixOdometryThread.getInstance();
+        odometryThread.latchFrames();
         try {
-            Logger.recordOutput("SwerveDrive/stateLockAcquired", true);
             gyroIO.updateInputs(gyroInputs);
             Logger.processInputs("SwerveDrive/gyro", gyroInputs);
 
             for (int i = 0; i < 4; i++) {
                 modules[i].updateInputs(moduleInputs[i]);
-                Logger.processInputs("SwerveDrive/module" + i, moduleInputs[i]);
+                Logger.processInputs(moduleInputsKeys[i], moduleInputs[i]);
             }
         } finally {
-            odometryLock.unlock();
+            odometryThread.releaseFrames();
         }
 
+        logOdometryThreadStats(odometryThread);
 
-        SwerveModulePosition[] modulePositions = new SwerveModulePosition[4];
-        SwerveModuleState[] moduleStates = new SwerveModuleState[4];
 
         for (int i = 0; i < 4; i++) {
-            moduleStates[i] = new SwerveModuleState(
-                moduleInputs[i].driveVelocityMetersPerSec,
-                moduleInputs[i].steerPosition
-            );
+            measuredModuleStates[i].speedMetersPerSecond = moduleInputs[i].driveVelocityMetersPerSec;
+            measuredModuleStates[i].angle = moduleInputs[i].steerPosition;
+            measuredDriveVelocitiesMetersPerSec[i] = moduleInputs[i].driveVelocityMetersPerSec;
+            measuredDrivePositionsMeters[i] = moduleInputs[i].drivePositionMeters;
+            measuredSteerAnglesRad[i] = moduleInputs[i].steerPosition.getRadians();
+
+            odometryTimestampsSeconds[i] = moduleInputs[i].odometryTimestampsSeconds;
+            odometryDrivePositionsMeters[i] = moduleInputs[i].odometryDrivePositionsMeters;
+            odometrySteerPositionsRad[i] = moduleInputs[i].odometrySteerPositionsRad;
         }
 
-        double[] odometryTimestampsSeconds = moduleInputs[0].odometryTimestampsSeconds;
-        for (int i = 0; i < odometryTimestampsSeconds.length; i++) {
-            for (int j = 0; j < 4; j++) {
-                modulePositions[j] = new SwerveModulePosition(
-                    moduleInputs[j].odometryDrivePositionsMeters[i],
-                    moduleInputs[j].odometrySteerPositions[i]
-                );
-            }
-            
-            RobotState.getInstance().addOdometryObservation(
-                new OdometryObservation(
-                    odometryTimestampsSeconds[i],
-                    gyroInputs.isConnected,
-                    modulePositions,
-                    moduleStates,
-                    gyroInputs.isConnected ? gyroInputs.odometryYawPositions[i] : new Rotation2d(),
-                    gyroInputs.isConnected ? gyroInputs.yawVelocityRadPerSec : 0
-                )
-            );
+        if (groundTruthSim != null) {
+            groundTruthSim.update(Timer.getTimestamp(), measuredDrivePositionsMeters, measuredSteerAnglesRad);
         }
 
-        Logger.recordOutput("SwerveDrive/measuredModuleStates", moduleStates);
-        Logger.recordOutput("SwerveDrive/measuredModulePositions", modulePositions);
+        RobotState.getInstance().addOdometryObservations(
+            odometryTimestampsSeconds,
+            odometryDrivePositionsMeters,
+            odometrySteerPositionsRad,
+            measuredDriveVelocitiesMetersPerSec,
+            measuredSteerAnglesRad,
+            gyroInputs.isConnected,
+            gyroInputs.odometryYawPositionsRad,
+            gyroInputs.isConnected ? gyroInputs.yawVelocityRadPerSec : 0
+        );
 
-        ChassisSpeeds desiredFieldRelativeSpeeds = ChassisSpeeds.fromRobotRelativeSpeeds(desiredRobotRelativeSpeeds, RobotState.getInstance().getEstimatedPose().getRotation());
-        Logger.recordOutput("SwerveDrive/desiredFieldRelativeSpeeds", desiredFieldRelativeSpeeds);
-        Logger.recordOutput("SwerveDrive/desiredRobotRelativeSpeeds", desiredRobotRelativeSpeeds);
-        
-        // Limit acceleration to prevent sudden changes in speed
-        obtainableFieldRelativeSpeeds = limitAcceleration(desiredFieldRelativeSpeeds, obtainableFieldRelativeSpeeds, dt);
-        Logger.recordOutput("SwerveDrive/obtainableFieldRelativeSpeeds", obtainableFieldRelativeSpeeds);
+        Logger.recordOutput("SwerveDrive/measuredModuleStates", measuredModuleStates);
 
-        ChassisSpeeds obtainableRobotRelativeSpeeds = ChassisSpeeds.fromFieldRelativeSpeeds(obtainableFieldRelativeSpeeds, RobotState.getInstance().getEstimatedPose().getRotation());
-        Logger.recordOutput("SwerveDrive/obtainableRobotRelativeSpeeds", obtainableRobotRelativeSpeeds);
+        // Read the pose once, after odometry, so every step of the cycle uses the same heading
+        double headingRad = RobotState.getInstance().getSnapshot().estimatedPose().getRotation().getRadians();
+        controlPipeline.update(desiredRobotRelativeSpeeds, headingRad, dt, measuredSteerAnglesRad);
 
-        SwerveModuleState[] moduleSetpoints = kinematics.toSwerveModuleStates(obtainableRobotRelativeSpeeds);
+        for (int i = 0; i < 4; i++) {
+            modules[i].setState(controlPipeline.getOptimizedSpeedMetersPerSec(i), controlPipeline.getOptimizedAngleRad(i));
+        }
 
-        SwerveDriveKinematics.desaturateWheelSpeeds(
-            moduleSetpoints, 
-            drivetrainConfig.getMaxModuleVelocity()
-        );
-        Logger.recordOutput("SwerveDrive/desaturatedModuleSetpoints", moduleSetpoints);
+        Logger.recordOutput("SwerveDrive/desiredFieldRelativeSpeeds", controlPipeline.getDesiredFieldRelativeSpeeds());
+        Logger.recordOutput("SwerveDrive/desiredRobotRelativeSpeeds", desiredRobotRelativeSpeeds);
+        Logger.recordOutput("SwerveDrive/desiredAcceleration", controlPipeline.getDesiredAcceleration());
+        Logger.recordOutput("SwerveDrive/obtainableAcceleration", controlPipeline.getObtainableAcceleration());
+        Logger.recordOutput("SwerveDrive/desiredOmegaAcceleration", controlPipeline.getDesiredOmegaAcceleration());
+        Logger.recordOutput("SwerveDrive/obtainableOmegaAcceleration", controlPipeline.getObtainableOmegaAcceleration());
+        Logger.recordOutput("SwerveDrive/obtainableFieldRelativeSpeeds", controlPipeline.getObtainableFieldRelativeSpeeds());
+        Logger.recordOutput("SwerveDrive/obtainableRobotRelativeSpeeds", controlPipeline.getObtainableRobotRelativeSpeeds());
 
         for (int i = 0; i < 4; i++) {
-            moduleSetpoints[i].optimize(moduleStates[i].angle);
-            modules[i].setState(moduleSetpoints[i]);
+            setLoggedState(desaturatedModuleSetpoints[i], controlPipeline.getDesaturatedSpeedMetersPerSec(i), controlPipeline.getDesaturatedAngleRad(i));
+            setLoggedState(optimizedModuleSetpoints[i], controlPipeline.getOptimizedSpeedMetersPerSec(i), controlPipeline.getOptimizedAngleRad(i));
         }
-        Logger.recordOutput("SwerveDrive/optimizedModuleSetpoints", moduleSetpoints);
-
+        Logger.recordOutput("SwerveDrive/desaturatedModuleSetpoints", desaturatedModuleSetpoints);
+        Logger.recordOutput("SwerveDrive/optimizedModuleSetpoints", optimizedModuleSetpoints);
 
         Logger.recordOutput("SwerveDrive/CurrentCommand", this.getCurrentCommand() == null ? "" : this.getCurrentCommand().toString());
     }
 
-    private ChassisSpeeds limitAcceleration(ChassisSpeeds desiredFieldRelativeSpeeds, ChassisSpeeds lastFieldRelativeSpeeds, double dt) {
-        double desiredAcceleration = Math.hypot(
-            desiredFieldRelativeSpeeds.vxMetersPerSecond - lastFieldRelativeSpeeds.vxMetersPerSecond,
-            desiredFieldRelativeSpeeds.vyMetersPerSecond - lastFieldRelativeSpeeds.vyMetersPerSecond
-        ) / dt;
-        Logger.recordOutput("SwerveDrive/desiredAcceleration", desiredAcceleration);
-
-        double obtainableAcceleration = MathUtil.clamp(
-            desiredAcceleration,
-            0,
-            drivetrainConfig.getMaxTranslationalAccelerationMetersPerSecSec()
-        );
-        Logger.recordOutput("SwerveDrive/obtainableAcceleration", obtainableAcceleration);
-
-        double theta = Math.atan2(
-            desiredFieldRelativeSpeeds.vyMetersPerSecond - lastFieldRelativeSpeeds.vyMetersPerSecond,
-            desiredFieldRelativeSpeeds.vxMetersPerSecond - lastFieldRelativeSpeeds.vxMetersPerSecond
-        );
-
-        double desiredOmegaAcceleration = (desiredFieldRelativeSpeeds.omegaRadiansPerSecond - lastFieldRelativeSpeeds.omegaRadiansPerSecond) / dt;
-        Logger.recordOutput("SwerveDrive/desiredOmegaAcceleration", desiredOmegaAcceleration);
-
-        double obtainableOmegaAcceleration = MathUtil.clamp(
-            desiredOmegaAcceleration,
-            -drivetrainConfig.getMaxAngularAccelerationRadiansPerSecSec(),
-            drivetrainConfig.getMaxAngularAccelerationRadiansPerSecSec()
-        );
-        Logger.recordOutput("SwerveDrive/obtainableOmegaAcceleration", obtainableOmegaAcceleration);
+    private void logOdometryThreadStats(PhoenixOdometryThread odometryThread) {
+        Logger.recordOutput("SwerveDrive/odometryThread/clockOffsetSeconds", odometryThread.getClockOffsetSeconds());
+        Logger.recordOutput("SwerveDrive/odometryThread/latestFrameSequence", odometryThread.getLatestFrameSequence());
+        Logger.recordOutput("SwerveDrive/odometryThread/droppedFrameCount", odometryThread.getDroppedFrameCount());
+        Logger.recordOutput("SwerveDrive/odometryThread/contendedFrameCount", odometryThread.getContendedFrameCount());
+
+        Logger.recordOutput("SwerveDrive/odometryThread/isCANFD", odometryThread.isCANFD());
+        Logger.recordOutput("SwerveDrive/odometryThread/isRealTime", odometryThread.isRealTime());
+        Logger.recordOutput("SwerveDrive/odometryThread/isPinned", odometryThread.isPinned());
+
+        // Cumulative counts, bucket i holds intervals in [i, i + 1) * bucketWidthSeconds
+        // AdvantageKit keeps references to logged arrays and encodes them later, so each cycle gets a fresh one
+        JitterHistogram intervalHistogram = odometryThread.getIntervalHistogram();
+        long[] intervalCounts = new long[intervalHistogram.getBucketCount()];
+        intervalHistogram.getCounts(intervalCounts);
+        Logger.recordOutput("SwerveDrive/odometryThread/intervalHistogram/counts", intervalCounts);
+        Logger.recordOutput("SwerveDrive/odometryThread/intervalHistogram/bucketWidthSeconds", intervalHistogram.getBucketWidthSeconds());
+        Logger.recordOutput("SwerveDrive/odometryThread/intervalHistogram/meanIntervalSeconds", intervalHistogram.getMeanIntervalSeconds());
+        Logger.recordOutput("SwerveDrive/odometryThread/intervalHistogram/maxIntervalSeconds", intervalHistogram.getMaxIntervalSeconds());
+
+        // Only drives sampling on non CAN FD buses
+        DeadlineScheduler fallbackScheduler = odometryThread.getFallbackScheduler();
+        Logger.recordOutput("SwerveDrive/odometryThread/fallbackScheduler/achievedRateHz", fallbackScheduler.getAchievedRateHz());
+        Logger.recordOutput("SwerveDrive/odometryThread/fallbackScheduler/worstLatenessSeconds", fallbackScheduler.getWorstLatenessSeconds());
+        Logger.recordOutput("SwerveDrive/odometryThread/fallbackScheduler/missedReleaseCount", fallbackScheduler.getMissedReleaseCount());
+    }
 
-        return new ChassisSpeeds(
-            lastFieldRelativeSpeeds.vxMetersPerSecond + Math.cos(theta) * obtainableAcceleration * dt,
-            lastFieldRelativeSpeeds.vyMetersPerSecond + Math.sin(theta) * obtainableAcceleration * dt,
-            lastFieldRelativeSpeeds.omegaRadiansPerSecond + obtainableOmegaAcceleration * dt
-        );
+    private static void setLoggedState(SwerveModuleState state, double speedMetersPerSec, double angleRad) {
+        state.speedMetersPerSecond = speedMetersPerSec;
+        // Setpoint angles hold still most of the time, only allocate when they move
+        if (state.angle.getRadians() != angleRad) {
+            state.angle = new Rotation2d(angleRad);
+        }
     }
 
     private ChassisSpeeds compensateRobotRelativeSpeeds(ChassisSpeeds speeds) {
         Rotation2d angularVelocity = new Rotation2d(speeds.omegaRadiansPerSecond * drivetrainConfig.getRotationCompensationCoefficient());
         if (angularVelocity.getRadians() != 0.0) {
+            Rotation2d heading = RobotState.getInstance().getSnapshot().estimatedPose().getRotation();
             speeds = ChassisSpeeds.fromFieldRelativeSpeeds(
                 ChassisSpeeds.fromRobotRelativeSpeeds( // why should this be split into two?
                     speeds.vxMetersPerSecond,
                     speeds.vyMetersPerSecond,
                     speeds.omegaRadiansPerSecond,
-                    RobotState.getInstance().getEstimatedPose().getRotation().plus(angularVelocity)
+                    heading.plus(angularVelocity)
                 ),
-                RobotState.getInstance().getEstimatedPose().getRotation()
+                heading
             );
         }
 
@@ -349,7 +406,7 @@ public class SwerveDrive extends SubsystemBase {
     }
 
     public void driveFieldRelative(ChassisSpeeds speeds) {
-        speeds = ChassisSpeeds.fromFieldRelativeSpeeds(speeds, RobotState.getInstance().getEstimatedPose().getRotation());
+        speeds = ChassisSpeeds.fromFieldRelativeSpeeds(speeds, RobotState.getInstance().getSnapshot().estimatedPose().getRotation());
         driveRobotRelative(speeds);
     }
 
@@ -0,0 +1,88 @@
+package frc.robot.subsystems.swerve;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import frc.robot.RobotState;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigSim;
+import frc.robot.lib.util.PoseHistoryBuffer;
+
+/**
+ * Where the simulated robot actually is, integrated from the simulated modules independently of
+ * RobotState.
+ *
+ * <p>The simulated wheels slip: they travel a fraction less than the module positions the estimator
+ * reads, so the estimate drifts away from this pose the way a real estimate drifts away from the
+ * field. Simulated cameras report this pose, so vision in sim has real drift to correct instead of
+ * echoing the estimate back to itself.
+ *
+ * <p>Follows every pose reset, in sim a reset is what places the robot.
+ */
+public class SwerveGroundTruthSim {
+    private static SwerveGroundTruthSim instance = null;
+    public static SwerveGroundTruthSim getInstance() {
+        if (instance == null) {
+            instance = new SwerveGroundTruthSim();
+        }
+
+        return instance;
+    }
+
+    private static final double kHISTORY_SECONDS = 1.0;
+
+    private final FourModuleKinematics kinematics;
+    private final double slipFraction;
+    private final PoseHistoryBuffer history = new PoseHistoryBuffer(
+        kHISTORY_SECONDS,
+        (int) Math.ceil(kHISTORY_SECONDS * SwerveDrive.ODOMETRY_FREQUENCY) + 1
+    );
+
+    private final double[] lastDrivePositionsMeters = new double[4];
+    private final Twist2d twist = new Twist2d();
+    private boolean hasLastDrivePositions = false;
+
+    private Pose2d pose = new Pose2d();
+
+    private SwerveGroundTruthSim() {
+        kinematics = RobotState.getInstance().getKinematics();
+        slipFraction = SwerveDrivetrainConfigSim.getInstance().getSimWheelSlipFraction();
+
+        RobotState.getInstance().getPoseResetEvents().subscribe("SwerveGroundTruthSim", this::reset);
+    }
+
+    /**
+     * Moves the robot by the module motion since the last update.
+     *
+     * @param drivePositionsMeters drive positions the simulated modules report
+     * @param steerAnglesRad steer angles the simulated modules report
+     */
+    public void update(double timestampSeconds, double[] drivePositionsMeters, double[] steerAnglesRad) {
+        if (hasLastDrivePositions) {
+            kinematics.toTwist2d(lastDrivePositionsMeters, drivePositionsMeters, steerAnglesRad, twist);
+            twist.dx *= 1 - slipFraction;
+            twist.dy *= 1 - slipFraction;
+            twist.dtheta *= 1 - slipFraction;
+            pose = pose.exp(twist);
+        }
+        System.arraycopy(drivePositionsMeters, 0, lastDrivePositionsMeters, 0, 4);
+        hasLastDrivePositions = true;
+
+        history.addSample(timestampSeconds, pose);
+        Logger.recordOutput("SwerveDrive/sim/groundTruthPose", pose);
+    }
+
+    public Pose2d getPose() {
+        return pose;
+    }
+
+    /** Pose at a past timestamp, the current pose if the history does not reach back that far. */
+    public Pose2d getPoseAt(double timestampSeconds) {
+        return history.getPose(timestampSeconds).orElse(pose);
+    }
+
+    private void reset(Pose2d resetPose) {
+        pose = resetPose;
+        history.clear();
+    }
+}
@@ -12,9 +12,14 @@ public interface GyroIO {
         public double yawVelocityRadPerSec = 0.0;
 
         public double[] odometryTimestampsSeconds = new double[] {};
-        public Rotation2d[] odometryYawPositions = new Rotation2d[] {};
+        public double[] odometryYawPositionsRad = new double[] {};
     }
 
     public default void updateInputs(GyroIOInputs inputs) {}
+
+    /** Odometry frame column of the yaw in degrees, or -1 if not sampled by the odometry thread. */
+    public default int getYawOdometryColumn() {
+        return -1;
+    }
     public default void resetGyro(Rotation2d yaw) {};
 }
\ No newline at end of file
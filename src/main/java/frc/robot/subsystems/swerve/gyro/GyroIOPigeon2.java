@@ -10,9 +10,9 @@ import com.ctre.phoenix6.hardware.Pigeon2;
 
 import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.util.Units;
 import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.units.measure.AngularVelocity;
-import java.util.Queue;
 import frc.robot.lib.util.PhoenixUtil;
 import frc.robot.subsystems.swerve.PhoenixOdometryThread;
 import frc.robot.subsystems.swerve.SwerveDrive;
@@ -23,8 +23,8 @@ public class GyroIOPigeon2 implements GyroIO {
     private final StatusSignal<Angle> yawSignal;
     private final StatusSignal<AngularVelocity> yawVelocitySignal;
 
-    private final Queue<Double> odometryTimestampQueue;
-    private final Queue<Double> yawPositionQueue;
+    private final int yawOdometryColumn;
+    private final int timestampOdometryColumn;
 
     public GyroIOPigeon2() {
         gyro = new Pigeon2(2, "drivetrain");
@@ -45,12 +45,17 @@ public class GyroIOPigeon2 implements GyroIO {
             yawVelocitySignal
         );
 
-        odometryTimestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue();
-        yawPositionQueue = PhoenixOdometryThread.getInstance().registerSignal(yawSignal.clone());
+        yawOdometryColumn = PhoenixOdometryThread.getInstance().registerSignal(yawSignal.clone());
+        timestampOdometryColumn = PhoenixOdometryThread.getInstance().registerTimestamp(yawOdometryColumn);
 
         gyro.optimizeBusUtilization();
     }
 
+    @Override
+    public int getYawOdometryColumn() {
+        return yawOdometryColumn;
+    }
+
     @Override
     public synchronized void updateInputs(GyroIOInputs inputs) {
         BaseStatusSignal.refreshAll(yawVelocitySignal);
@@ -60,11 +65,17 @@ public class GyroIOPigeon2 implements GyroIO {
         inputs.yawPosition = new Rotation2d(MathUtil.angleModulus(BaseStatusSignal.getLatencyCompensatedValue(yawSignal, yawVelocitySignal).in(Radians)));
         inputs.yawVelocityRadPerSec = yawVelocitySignal.getValue().in(RadiansPerSecond);
 
-        inputs.odometryTimestampsSeconds = odometryTimestampQueue.stream().mapToDouble(Double::doubleValue).toArray();
-        inputs.odometryYawPositions = yawPositionQueue.stream().map((Double value) -> Rotation2d.fromDegrees(value)).toArray(Rotation2d[]::new);
-
-        odometryTimestampQueue.clear();
-        yawPositionQueue.clear();
+        // Same latched frames as the modules, see PhoenixOdometryThread
+        PhoenixOdometryThread odometryThread = PhoenixOdometryThread.getInstance();
+        int sampleCount = odometryThread.getLatchedFrameCount();
+        inputs.odometryTimestampsSeconds = new double[sampleCount];
+        inputs.odometryYawPositionsRad = new double[sampleCount];
+
+        odometryThread.readSignal(timestampOdometryColumn, inputs.odometryTimestampsSeconds);
+        odometryThread.readSignal(yawOdometryColumn, inputs.odometryYawPositionsRad);
+        for (int i = 0; i < sampleCount; i++) {
+            inputs.odometryYawPositionsRad[i] = Units.degreesToRadians(inputs.odometryYawPositionsRad[i]);
+        }
     }
 
     @Override
@@ -3,7 +3,6 @@ package frc.robot.subsystems.swerve.module;
 import org.littletonrobotics.junction.AutoLog;
 
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.kinematics.SwerveModuleState;
 
 public interface ModuleIO {
     @AutoLog
@@ -25,12 +24,27 @@ public interface ModuleIO {
 
         public double[] odometryTimestampsSeconds = new double[] {};
         public double[] odometryDrivePositionsMeters = new double[] {};
-        public Rotation2d[] odometrySteerPositions = new Rotation2d[] {};
+        public double[] odometrySteerPositionsRad = new double[] {};
     }
 
     public default void updateInputs(ModuleIOInputs inputs) {}
 
-    public default void setState(SwerveModuleState state) {}
+    /** Odometry frame column of the drive position in meters, or -1 if not sampled by the odometry thread. */
+    public default int getDrivePositionOdometryColumn() {
+        return -1;
+    }
+
+    /** Odometry frame column of the steer position in rotations, or -1 if not sampled by the odometry thread. */
+    public default int getSteerPositionOdometryColumn() {
+        return -1;
+    }
+
+    /** Odometry frame column of the sample timestamp in seconds, or -1 if not sampled by the odometry thread. */
+    public default int getTimestampOdometryColumn() {
+        return -1;
+    }
+
+    public default void setState(double speedMetersPerSec, double steerAngleRad) {}
     public default void setSteerTorqueCurrentFOC(double torqueCurrentFOC, double driveVelocityMetersPerSec) {}
     public default void setDriveTorqueCurrentFOC(double torqueCurrentFOC, Rotation2d steerAngle) {}
 }
@@ -4,7 +4,6 @@ import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.system.plant.LinearSystemId;
 import edu.wpi.first.wpilibj.Timer;
@@ -35,7 +34,7 @@ public class ModuleIOSim implements ModuleIO {
     private boolean isSteerClosedLoop = true;
     private boolean isDriveClosedLoop = true;
 
-    private SwerveModuleState lastDesiredState = new SwerveModuleState();
+    private double lastDesiredSpeedMetersPerSec = 0;
 
     private double lastTimeInputs = Timer.getTimestamp();
     
@@ -53,7 +52,7 @@ public class ModuleIOSim implements ModuleIO {
         if (isDriveClosedLoop) {
             driveSim.setInputVoltage(
                 MathUtil.clamp(
-                    driveFeedforward.calculate(lastDesiredState.speedMetersPerSecond) +
+                    driveFeedforward.calculate(lastDesiredSpeedMetersPerSec) +
                     driveFeedback.calculate(driveSim.getAngularVelocityRadPerSec() * 0.0485614385), // wheel radius in meters
                     -12,
                     12
@@ -88,18 +87,18 @@ public class ModuleIOSim implements ModuleIO {
 
         inputs.odometryTimestampsSeconds = new double[] {Timer.getTimestamp()};
         inputs.odometryDrivePositionsMeters = new double[] {inputs.drivePositionMeters};
-        inputs.odometrySteerPositions = new Rotation2d[] {inputs.steerPosition};
+        inputs.odometrySteerPositionsRad = new double[] {inputs.steerPosition.getRadians()};
     }
 
     @Override
-    public void setState(SwerveModuleState state) {
-        driveFeedback.setSetpoint(state.speedMetersPerSecond);
-        steerFeedback.setSetpoint(state.angle.getRadians());
+    public void setState(double speedMetersPerSec, double steerAngleRad) {
+        driveFeedback.setSetpoint(speedMetersPerSec);
+        steerFeedback.setSetpoint(steerAngleRad);
 
         isDriveClosedLoop = true;
         isSteerClosedLoop = true;
 
-        lastDesiredState = state;
+        lastDesiredSpeedMetersPerSec = speedMetersPerSec;
     }
 
     @Override
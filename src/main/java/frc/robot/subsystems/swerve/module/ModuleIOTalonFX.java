@@ -7,8 +7,6 @@ import static edu.wpi.first.units.Units.Radians;
 import static edu.wpi.first.units.Units.Rotation;
 import static edu.wpi.first.units.Units.RotationsPerSecond;
 
-import java.util.Queue;
-
 import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
@@ -23,7 +21,7 @@ import com.ctre.phoenix6.signals.NeutralModeValue;
 import com.ctre.phoenix6.signals.StaticFeedforwardSignValue;
 
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.util.Units;
 import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.units.measure.AngularVelocity;
 import edu.wpi.first.units.measure.Current;
@@ -41,9 +39,9 @@ public class ModuleIOTalonFX implements ModuleIO {
     private final TalonFX steerMotor;
     private final CANcoder steerEncoder;
 
-    private final Queue<Double> timestampQueue;
-    private final Queue<Double> drivePositionQueue;
-    private final Queue<Double>  steerPositionQueue;
+    private final int drivePositionOdometryColumn;
+    private final int steerPositionOdometryColumn;
+    private final int timestampOdometryColumn;
 
     private final StatusSignal<Angle> drivePositionStatusSignal;
     private final StatusSignal<AngularVelocity> driveVelocityStatusSignal;
@@ -66,8 +64,8 @@ public class ModuleIOTalonFX implements ModuleIO {
 
     private final SwerveModuleGeneralConfigBase generalConfig;
 
-    private Rotation2d lastSteerAngleRad = new Rotation2d();
-    private SwerveModuleState lastRequestedState = new SwerveModuleState();
+    private double lastSteerAngleRad = 0;
+    private double lastRequestedSpeedMetersPerSec = 0;
     private double lastRequestedStateTime = Timer.getFPGATimestamp();
 
     public ModuleIOTalonFX(SwerveModuleGeneralConfigBase generalConfig, SwerveModuleSpecificConfigBase specificConfig) {
@@ -197,9 +195,9 @@ public class ModuleIOTalonFX implements ModuleIO {
         steerPositionStatusSignal = steerMotor.getPosition().clone();
         steerVelocityStatusSignal = steerMotor.getVelocity().clone();
 
-        timestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue();
-        drivePositionQueue = PhoenixOdometryThread.getInstance().registerSignal(drivePositionStatusSignal.clone());
-        steerPositionQueue = PhoenixOdometryThread.getInstance().registerSignal(steerPositionStatusSignal.clone());
+        drivePositionOdometryColumn = PhoenixOdometryThread.getInstance().registerSignal(drivePositionStatusSignal.clone());
+        steerPositionOdometryColumn = PhoenixOdometryThread.getInstance().registerSignal(steerPositionStatusSignal.clone());
+        timestampOdometryColumn = PhoenixOdometryThread.getInstance().registerTimestamp(drivePositionOdometryColumn, steerPositionOdometryColumn);
 
         BaseStatusSignal.setUpdateFrequencyForAll(
             100,
@@ -227,6 +225,21 @@ public class ModuleIOTalonFX implements ModuleIO {
         steerEncoder.optimizeBusUtilization();
     }
 
+    @Override
+    public int getDrivePositionOdometryColumn() {
+        return drivePositionOdometryColumn;
+    }
+
+    @Override
+    public int getSteerPositionOdometryColumn() {
+        return steerPositionOdometryColumn;
+    }
+
+    @Override
+    public int getTimestampOdometryColumn() {
+        return timestampOdometryColumn;
+    }
+
     @Override
     public void updateInputs(ModuleIOInputs inputs) {
         BaseStatusSignal.refreshAll(
@@ -255,35 +268,43 @@ public class ModuleIOTalonFX implements ModuleIO {
         inputs.steerTorqueCurrent = steerTorqueCurrent.getValue().in(Amps);
         inputs.steerTemperatureFahrenheit = steerTemperature.getValue().in(Fahrenheit);
 
-        inputs.odometryTimestampsSeconds = timestampQueue.stream().mapToDouble(Double::doubleValue).toArray();
-        inputs.odometryDrivePositionsMeters = drivePositionQueue.stream().mapToDouble(Double::doubleValue).toArray();
-        inputs.odometrySteerPositions = steerPositionQueue.stream().map((Double value) -> Rotation2d.fromRotations(value)).toArray(Rotation2d[]::new);
-
-        timestampQueue.clear();
-        drivePositionQueue.clear();
-        steerPositionQueue.clear();
-
-        lastSteerAngleRad = new Rotation2d(inputs.steerPosition.getRadians());
+        // Every consumer reads the same latched frames, so the arrays are index aligned with the other
+        // modules and the gyro.
+        // AdvantageKit keeps references to logged arrays, so each cycle gets fresh exact-length arrays.
+        PhoenixOdometryThread odometryThread = PhoenixOdometryThread.getInstance();
+        int sampleCount = odometryThread.getLatchedFrameCount();
+        inputs.odometryTimestampsSeconds = new double[sampleCount];
+        inputs.odometryDrivePositionsMeters = new double[sampleCount];
+        inputs.odometrySteerPositionsRad = new double[sampleCount];
+
+        odometryThread.readSignal(timestampOdometryColumn, inputs.odometryTimestampsSeconds);
+        odometryThread.readSignal(drivePositionOdometryColumn, inputs.odometryDrivePositionsMeters);
+        odometryThread.readSignal(steerPositionOdometryColumn, inputs.odometrySteerPositionsRad);
+        for (int i = 0; i < sampleCount; i++) {
+            inputs.odometrySteerPositionsRad[i] = Units.rotationsToRadians(inputs.odometrySteerPositionsRad[i]);
+        }
+
+        lastSteerAngleRad = inputs.steerPosition.getRadians();
     }
 
     @Override
-    public void setState(SwerveModuleState state) {
+    public void setState(double speedMetersPerSec, double steerAngleRad) {
         driveMotor.setControl(driveMotorRequest.withVelocity(
                 RebelUtil.constrain(
-                    state.speedMetersPerSecond,
+                    speedMetersPerSec,
                     -generalConfig.getDriveMaxVelocityMetersPerSec(),
                     generalConfig.getDriveMaxVelocityMetersPerSec()
-                ) * state.angle.minus(lastSteerAngleRad).getCos()
-            ).withAcceleration((state.speedMetersPerSecond - lastRequestedState.speedMetersPerSecond) / (Timer.getFPGATimestamp() - lastRequestedStateTime))
+                ) * Math.cos(steerAngleRad - lastSteerAngleRad)
+            ).withAcceleration((speedMetersPerSec - lastRequestedSpeedMetersPerSec) / (Timer.getFPGATimestamp() - lastRequestedStateTime))
         );
         
         steerMotor.setControl(
             steerMotorRequest.withPosition(
-                state.angle.getRotations()
+                Units.radiansToRotations(steerAngleRad)
             )
         );
 
-        lastRequestedState = state;
+        lastRequestedSpeedMetersPerSec = speedMetersPerSec;
         lastRequestedStateTime = Timer.getFPGATimestamp();
     }
 
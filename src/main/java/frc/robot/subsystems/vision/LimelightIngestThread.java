@@ -0,0 +1,124 @@
+package frc.robot.subsystems.vision;
+
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableListenerPoller;
+import edu.wpi.first.networktables.NetworkTableValue;
+import edu.wpi.first.util.WPIUtilJNI;
+import frc.robot.lib.util.LimelightBuffers.PoseEstimateBuffer;
+import frc.robot.lib.util.LimelightClient;
+
+/**
+ * Decodes one Limelight's pose estimates off the main loop.
+ *
+ * <p>The thread sleeps on a NetworkTables listener poller and wakes whenever the camera publishes a
+ * new botpose value, so every frame is decoded once, as it arrives, instead of the main loop polling
+ * for the latest one and missing the frames in between. The poller is drained by this thread rather
+ * than NetworkTables' shared listener thread, so decoding never delays other listeners.
+ *
+ * <p>Estimates are decoded in place into a preallocated single-producer / single-consumer ring of
+ * {@link PoseEstimateBuffer}s, which the main loop reads in cycles: {@link #latch()} fixes the
+ * published estimates, {@link #getLatched(int)} reads them and {@link #release()} frees their slots.
+ * Neither side locks or allocates. If the main loop falls behind and the ring fills up, new
+ * estimates are dropped until it catches up.
+ */
+public class LimelightIngestThread extends Thread {
+    private final NetworkTableListenerPoller poller;
+    private final boolean isMegaTag2;
+
+    private final PoseEstimateBuffer[] slots;
+    // Slots [readIndex, writeIndex) are published and unread
+    private final AtomicLong writeIndex = new AtomicLong(0);
+    private final AtomicLong readIndex = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile double lastEstimateTimestampSeconds = Double.NEGATIVE_INFINITY;
+
+    // Consumer state
+    private long latchedReadIndex = 0;
+    private int latchedCount = 0;
+
+    /**
+     * @param limelight client of the Limelight
+     * @param isMegaTag2 whether to ingest the MegaTag2 or the MegaTag1 estimate
+     * @param capacity estimates kept until the main loop reads them
+     */
+    public LimelightIngestThread(LimelightClient limelight, boolean isMegaTag2, int capacity) {
+        this.isMegaTag2 = isMegaTag2;
+
+        slots = new PoseEstimateBuffer[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new PoseEstimateBuffer();
+        }
+
+        poller = new NetworkTableListenerPoller(NetworkTableInstance.getDefault());
+        poller.addListener(limelight.getBotposeSubscriber(isMegaTag2), EnumSet.of(NetworkTableEvent.Kind.kValueAll));
+
+        setName("LimelightIngestThread-" + limelight.getName());
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        while (!isInterrupted()) {
+            try {
+                WPIUtilJNI.waitForObject(poller.getHandle());
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            for (NetworkTableEvent event : poller.readQueue()) {
+                if (event.valueData == null) {
+                    continue;
+                }
+
+                long write = writeIndex.get();
+                if (write - readIndex.get() >= slots.length) {
+                    droppedCount.incrementAndGet();
+                    continue;
+                }
+
+                NetworkTableValue value = event.valueData.value;
+                PoseEstimateBuffer slot = slots[(int) (write % slots.length)];
+                if (slot.decode(value.getDoubleArray(), value.getTime(), isMegaTag2)) {
+                    lastEstimateTimestampSeconds = slot.timestampSeconds;
+                    writeIndex.lazySet(write + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fixes the set of estimates the following reads return. Main loop only.
+     *
+     * @return number of latched estimates
+     */
+    public int latch() {
+        latchedReadIndex = readIndex.get();
+        latchedCount = (int) (writeIndex.get() - latchedReadIndex);
+        return latchedCount;
+    }
+
+    /** Latched estimate i, oldest first. Only valid until {@link #release()}. */
+    public PoseEstimateBuffer getLatched(int i) {
+        return slots[(int) ((latchedReadIndex + i) % slots.length)];
+    }
+
+    /** Frees the latched estimates for the ingest thread. Main loop only. */
+    public void release() {
+        readIndex.lazySet(latchedReadIndex + latchedCount);
+        latchedCount = 0;
+    }
+
+    /** Capture timestamp of the newest estimate, or negative infinity before the first one. */
+    public double getLastEstimateTimestampSeconds() {
+        return lastEstimateTimestampSeconds;
+    }
+
+    /** Estimates dropped because the main loop did not read them in time, since startup. */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
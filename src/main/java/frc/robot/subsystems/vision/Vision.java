@@ -0,0 +1,214 @@
+package frc.robot.subsystems.vision;
+
+import java.util.List;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.RobotState;
+import frc.robot.RobotState.VisionObservation;
+import frc.robot.RobotState.VisionObservationScale;
+import frc.robot.RobotState.VisionScaleRequest;
+import frc.robot.RobotStateSnapshot;
+import frc.robot.constants.Constants;
+import frc.robot.constants.Constants.VisionConstants;
+import frc.robot.constants.vision.VisionConfigBase;
+import frc.robot.constants.vision.VisionConfigBase.CameraConfig;
+import frc.robot.constants.vision.VisionConfigComp;
+import frc.robot.constants.vision.VisionConfigProto;
+import frc.robot.constants.vision.VisionConfigSim;
+
+/**
+ * Hands every camera's pose estimates to RobotState. The estimates are decoded off the main loop by
+ * each camera's ingest thread and logged as inputs, so replay feeds RobotState the same estimates.
+ *
+ * <p>Estimates are scored straight from the inputs' primitive fields, so a rejected estimate
+ * allocates nothing on the main loop.
+ *
+ * <p>Each estimate is shifted by its camera's time offset, scored and gated against the estimate on
+ * its own, then the survivors of the same instant from different cameras are merged by {@link VisionFusion} before RobotState gets
+ * them, so a frame seen by several cameras costs RobotState one replay instead of one per camera.
+ */
+public class Vision extends SubsystemBase {
+    private static Vision instance = null;
+    public static Vision getInstance() {
+        if (instance == null) {
+            instance = new Vision();
+        }
+
+        return instance;
+    }
+
+    private final VisionConfigBase config;
+    private final CameraConfig[] cameraConfigs;
+    private final VisionIO[] cameras;
+    private final VisionIOInputsAutoLogged[] cameraInputs;
+    private final String[] cameraInputsKeys;
+    private final VisionCameraStats[] cameraStats;
+    private final int[] acceptedCounts;
+    private final int[] rejectedCounts;
+    private final VisionFusion fusion;
+
+    private VisionObservationScale scale = VisionObservationScale.GLOBAL;
+    private int priorityTagId = -1;
+
+    private Vision() {
+        switch (Constants.currentMode) {
+            case COMP:
+                config = VisionConfigComp.getInstance();
+                cameras = new VisionIO[config.getCameras().length];
+                for (int i = 0; i < cameras.length; i++) {
+                    cameras[i] = new VisionIOLimelight(config.getCameras()[i].name(), config);
+                }
+
+                break;
+
+            case PROTO:
+                config = VisionConfigProto.getInstance();
+                cameras = new VisionIO[config.getCameras().length];
+                for (int i = 0; i < cameras.length; i++) {
+                    cameras[i] = new VisionIOLimelight(config.getCameras()[i].name(), config);
+                }
+
+                break;
+
+            case SIM:
+                config = VisionConfigSim.getInstance();
+                cameras = new VisionIO[config.getCameras().length];
+                for (int i = 0; i < cameras.length; i++) {
+                    cameras[i] = new VisionIOSim(config.getCameras()[i].name(), config);
+                }
+
+                break;
+
+            case REPLAY:
+                config = VisionConfigComp.getInstance();
+                cameras = new VisionIO[config.getCameras().length];
+                for (int i = 0; i < cameras.length; i++) {
+                    cameras[i] = new VisionIO() {};
+                }
+
+                break;
+
+            default:
+                config = VisionConfigComp.getInstance();
+                cameras = new VisionIO[config.getCameras().length];
+                for (int i = 0; i < cameras.length; i++) {
+                    cameras[i] = new VisionIOLimelight(config.getCameras()[i].name(), config);
+                }
+
+                break;
+        }
+
+        cameraConfigs = config.getCameras();
+        cameraInputs = new VisionIOInputsAutoLogged[cameras.length];
+        cameraInputsKeys = new String[cameras.length];
+        cameraStats = new VisionCameraStats[cameras.length];
+        for (int i = 0; i < cameras.length; i++) {
+            cameraInputs[i] = new VisionIOInputsAutoLogged();
+            cameraInputsKeys[i] = "Vision/" + cameraConfigs[i].name();
+            cameraStats[i] = new VisionCameraStats(cameraInputsKeys[i]);
+            cameraConfigs[i].robotToCamera().ifPresent(cameras[i]::setCameraPose);
+        }
+        acceptedCounts = new int[cameras.length];
+        rejectedCounts = new int[cameras.length];
+        fusion = new VisionFusion(config.getFusionWindowSeconds());
+
+        RobotState.getInstance().getVisionScaleRequestEvents().subscribe("Vision", this::onScaleRequest);
+    }
+
+    @Override
+    public void periodic() {
+        RobotState robotState = RobotState.getInstance();
+        RobotStateSnapshot snapshot = robotState.getSnapshot();
+        double yawDeg = snapshot.estimatedPose().getRotation().getDegrees();
+        double yawRateDegPerSec = Math.toDegrees(snapshot.yawVelocityRadPerSec());
+        double timestampSeconds = Timer.getTimestamp();
+
+        int observationCount = 0;
+        for (int i = 0; i < cameras.length; i++) {
+            cameras[i].setRobotOrientation(yawDeg, yawRateDegPerSec);
+            cameras[i].updateInputs(cameraInputs[i]);
+            Logger.processInputs(cameraInputsKeys[i], cameraInputs[i]);
+
+            acceptedCounts[i] = 0;
+            rejectedCounts[i] = 0;
+            VisionIOInputsAutoLogged inputs = cameraInputs[i];
+            int rawFiducialOffset = 0;
+            for (int j = 0; j < inputs.timestampsSeconds.length; j++) {
+                double maxAmbiguity = 0;
+                for (int k = 0; k < inputs.rawFiducialCounts[j]; k++) {
+                    maxAmbiguity = Math.max(maxAmbiguity, inputs.rawFiducials[rawFiducialOffset + k * VisionIO.kVALUES_PER_RAW_FIDUCIAL + VisionIO.kRAW_FIDUCIAL_AMBIGUITY_INDEX]);
+                }
+                rawFiducialOffset += inputs.rawFiducialCounts[j] * VisionIO.kVALUES_PER_RAW_FIDUCIAL;
+                double estimateTimestampSeconds = inputs.timestampsSeconds[j] + cameraConfigs[i].timeOffsetSeconds();
+
+                VisionObservation observation = robotState.scoreVisionObservation(
+                    inputs.poseXsMeters[j],
+                    inputs.poseYsMeters[j],
+                    inputs.poseYawsRad[j],
+                    estimateTimestampSeconds,
+                    inputs.tagCounts[j],
+                    inputs.averageTagDistancesMeters[j],
+                    inputs.averageTagAreas[j],
+                    maxAmbiguity,
+                    inputs.isMegaTag2[j],
+                    scale
+                );
+                // Gated per camera, so one bad camera can never drag a merged observation off
+                boolean isAccepted = observation != null && robotState.gateVisionObservation(observation);
+                if (isAccepted) {
+                    fusion.add(i, observation);
+                    acceptedCounts[i]++;
+                    observationCount++;
+                } else {
+                    rejectedCounts[i]++;
+                }
+
+                cameraStats[i].record(
+                    inputs.latenciesMs[j],
+                    (timestampSeconds - estimateTimestampSeconds) * 1000,
+                    isAccepted
+                );
+            }
+
+            cameraStats[i].log();
+        }
+
+        List<VisionObservation> fused = fusion.fuse(robotState::getEstimatedPoseAt);
+        for (VisionObservation observation : fused) {
+            robotState.addVisionObservation(observation);
+        }
+
+        Logger.recordOutput("Vision/acceptedCounts", acceptedCounts);
+        Logger.recordOutput("Vision/rejectedCounts", rejectedCounts);
+        Logger.recordOutput("Vision/fusion/observationCount", observationCount);
+        Logger.recordOutput("Vision/fusion/fusedCount", fused.size());
+        Logger.recordOutput("Vision/scale", scale);
+        Logger.recordOutput("Vision/priorityTagId", priorityTagId);
+    }
+
+    private void onScaleRequest(VisionScaleRequest request) {
+        scale = request.scale();
+
+        // Local estimates are for aligning to the reef, prefer the tag of the face being aligned to
+        priorityTagId = -1;
+        if (request.scale() == VisionObservationScale.LOCAL && request.localTarget().isPresent()) {
+            Translation2d target = request.localTarget().get();
+            double closestDistance = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < VisionConstants.kREEF_TAG_POSES.length; i++) {
+                double distance = VisionConstants.kREEF_TAG_POSES[i].getDistance(target);
+                if (distance < closestDistance) {
+                    closestDistance = distance;
+                    priorityTagId = VisionConstants.kREEF_TAG_IDS[i];
+                }
+            }
+        }
+
+        for (VisionIO camera : cameras) {
+            camera.setPriorityTagId(priorityTagId);
+        }
+    }
+}
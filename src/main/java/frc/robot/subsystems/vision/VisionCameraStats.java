@@ -0,0 +1,57 @@
+package frc.robot.subsystems.vision;
+
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Latency and acceptance statistics of one camera, smoothed over its recent estimates and logged
+ * under the camera's key.
+ */
+public class VisionCameraStats {
+    // Weight of the newest estimate, about the last 20 estimates count
+    private static final double kSMOOTHING = 0.05;
+
+    private final String logKey;
+
+    private long estimateCount = 0;
+    private long acceptedCount = 0;
+    private double acceptanceRate = 0;
+    private double latencyMs = 0;
+    private double ageMs = 0;
+
+    public VisionCameraStats(String logKey) {
+        this.logKey = logKey;
+    }
+
+    /**
+     * Records one estimate.
+     *
+     * @param latencyMs capture to publish latency the camera reported
+     * @param ageMs capture to now, including the NetworkTables transport and queuing
+     * @param isAccepted whether the estimate passed scoring and the outlier gate
+     */
+    public void record(double latencyMs, double ageMs, boolean isAccepted) {
+        double acceptance = isAccepted ? 1 : 0;
+        if (estimateCount == 0) {
+            this.acceptanceRate = acceptance;
+            this.latencyMs = latencyMs;
+            this.ageMs = ageMs;
+        } else {
+            this.acceptanceRate += kSMOOTHING * (acceptance - this.acceptanceRate);
+            this.latencyMs += kSMOOTHING * (latencyMs - this.latencyMs);
+            this.ageMs += kSMOOTHING * (ageMs - this.ageMs);
+        }
+
+        estimateCount++;
+        if (isAccepted) {
+            acceptedCount++;
+        }
+    }
+
+    public void log() {
+        Logger.recordOutput(logKey + "/estimateCount", estimateCount);
+        Logger.recordOutput(logKey + "/acceptedCount", acceptedCount);
+        Logger.recordOutput(logKey + "/acceptanceRate", acceptanceRate);
+        Logger.recordOutput(logKey + "/latencyMs", latencyMs);
+        Logger.recordOutput(logKey + "/ageMs", ageMs);
+    }
+}
@@ -0,0 +1,150 @@
+package frc.robot.subsystems.vision;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.DoubleFunction;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.RobotState.VisionObservation;
+import frc.robot.lib.estimation.VisionObservationScorer;
+
+/**
+ * Merges the observations several cameras make of the same instant into one.
+ *
+ * <p>Observations should already be gated one by one, a merge averages every observation in it and
+ * would hide a single outlier from the gate.
+ *
+ * <p>Every observation RobotState fuses out of order costs it a replay of the odometry since the
+ * observation's timestamp, so two cameras seeing tags in the same frame cost two replays. Observations
+ * from different cameras captured within the fusion window are grouped instead, each is moved to the
+ * newest one's timestamp with the estimated motion between them, and the group is combined with
+ * inverse variance weights into a single observation at that timestamp.
+ *
+ * <p>The merged std devs are those of independent measurements. Cameras seeing the same tags are not
+ * quite independent, the scorer's std devs are conservative enough to absorb it.
+ */
+public class VisionFusion {
+    // Keeps zero std devs, like perfect simulated cameras, from dividing by zero
+    private static final double kMIN_STD_DEV = 1e-6;
+
+    private record CameraObservation(int camera, VisionObservation observation) {}
+
+    private final double windowSeconds;
+    private final ArrayList<CameraObservation> pending = new ArrayList<>();
+    private final ArrayList<VisionObservation> fused = new ArrayList<>();
+
+    /**
+     * @param windowSeconds observations from different cameras this close in time are merged
+     */
+    public VisionFusion(double windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    /** Queues a camera's observation for the next {@link #fuse(DoubleFunction)}. */
+    public void add(int camera, VisionObservation observation) {
+        pending.add(new CameraObservation(camera, observation));
+    }
+
+    /**
+     * Groups and merges every observation added since the last call.
+     *
+     * @param poseAt estimated pose at a past timestamp, used to move observations to a common timestamp
+     * @return merged observations oldest first, only valid until the next call
+     */
+    public List<VisionObservation> fuse(DoubleFunction<Optional<Pose2d>> poseAt) {
+        fused.clear();
+        pending.sort(Comparator.comparingDouble(o -> o.observation().timestamp()));
+
+        int start = 0;
+        while (start < pending.size()) {
+            // A group holds at most one observation per camera
+            long cameras = 1L << pending.get(start).camera();
+            double startTimestamp = pending.get(start).observation().timestamp();
+
+            int end = start + 1;
+            while (end < pending.size()) {
+                CameraObservation next = pending.get(end);
+                long camera = 1L << next.camera();
+                if (next.observation().timestamp() - startTimestamp > windowSeconds || (cameras & camera) != 0) {
+                    break;
+                }
+
+                cameras |= camera;
+                end++;
+            }
+
+            fused.add(end - start == 1 ? pending.get(start).observation() : merge(start, end, poseAt));
+            start = end;
+        }
+
+        pending.clear();
+        return fused;
+    }
+
+    private VisionObservation merge(int start, int end, DoubleFunction<Optional<Pose2d>> poseAt) {
+        VisionObservation reference = pending.get(end - 1).observation();
+        double timestamp = reference.timestamp();
+        Rotation2d referenceHeading = reference.visionPose().getRotation();
+        Optional<Pose2d> poseAtReference = poseAt.apply(timestamp);
+
+        double xWeightSum = 0;
+        double xSum = 0;
+        double yWeightSum = 0;
+        double ySum = 0;
+        double headingWeightSum = 0;
+        double headingOffsetSum = 0;
+        for (int i = start; i < end; i++) {
+            VisionObservation observation = pending.get(i).observation();
+            Pose2d pose = observation.visionPose();
+
+            // Carry the observation forward by how far the robot moved since it was captured
+            if (poseAtReference.isPresent() && observation.timestamp() != timestamp) {
+                Optional<Pose2d> poseAtObservation = poseAt.apply(observation.timestamp());
+                if (poseAtObservation.isPresent()) {
+                    pose = pose.plus(poseAtReference.get().minus(poseAtObservation.get()));
+                }
+            }
+
+            double xWeight = weight(observation.stdDevs().get(0, 0));
+            xWeightSum += xWeight;
+            xSum += xWeight * pose.getX();
+
+            double yWeight = weight(observation.stdDevs().get(1, 0));
+            yWeightSum += yWeight;
+            ySum += yWeight * pose.getY();
+
+            double headingDev = observation.stdDevs().get(2, 0);
+            if (headingDev < VisionObservationScorer.kIGNORED_HEADING_DEV) {
+                double headingWeight = weight(headingDev);
+                headingWeightSum += headingWeight;
+                headingOffsetSum += headingWeight * MathUtil.angleModulus(pose.getRotation().minus(referenceHeading).getRadians());
+            }
+        }
+
+        // Headings are averaged as offsets from the reference, so they never wrap
+        Rotation2d heading = headingWeightSum > 0 ?
+            referenceHeading.plus(Rotation2d.fromRadians(headingOffsetSum / headingWeightSum)) :
+            referenceHeading;
+
+        return new VisionObservation(
+            new Pose2d(xSum / xWeightSum, ySum / yWeightSum, heading),
+            timestamp,
+            VecBuilder.fill(
+                1 / Math.sqrt(xWeightSum),
+                1 / Math.sqrt(yWeightSum),
+                headingWeightSum > 0 ? 1 / Math.sqrt(headingWeightSum) : VisionObservationScorer.kIGNORED_HEADING_DEV
+            ),
+            reference.scale()
+        );
+    }
+
+    private static double weight(double stdDev) {
+        double clamped = Math.max(stdDev, kMIN_STD_DEV);
+        return 1 / (clamped * clamped);
+    }
+}
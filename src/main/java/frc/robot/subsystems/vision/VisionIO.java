@@ -0,0 +1,45 @@
+package frc.robot.subsystems.vision;
+
+import org.littletonrobotics.junction.AutoLog;
+
+import edu.wpi.first.math.geometry.Transform3d;
+
+public interface VisionIO {
+    /** Number of values per fiducial in {@link VisionIOInputs#rawFiducials}, in the Limelight's botpose layout. */
+    public static final int kVALUES_PER_RAW_FIDUCIAL = 7;
+    /** Index of a fiducial's ambiguity among its values in {@link VisionIOInputs#rawFiducials}. */
+    public static final int kRAW_FIDUCIAL_AMBIGUITY_INDEX = 6;
+
+    @AutoLog
+    class VisionIOInputs {
+        public boolean isConnected = false;
+        public long droppedEstimateCount = 0;
+
+        // Pose estimates received since the last update, oldest first
+        public double[] poseXsMeters = new double[] {};
+        public double[] poseYsMeters = new double[] {};
+        public double[] poseYawsRad = new double[] {};
+        public double[] timestampsSeconds = new double[] {};
+        public double[] latenciesMs = new double[] {};
+        public int[] tagCounts = new int[] {};
+        public double[] tagSpansMeters = new double[] {};
+        public double[] averageTagDistancesMeters = new double[] {};
+        public double[] averageTagAreas = new double[] {};
+        public boolean[] isMegaTag2 = new boolean[] {};
+
+        // Fiducials of every estimate back to back: id, txnc, tync, ta, distToCamera, distToRobot, ambiguity
+        public int[] rawFiducialCounts = new int[] {};
+        public double[] rawFiducials = new double[] {};
+    }
+
+    public default void updateInputs(VisionIOInputs inputs) {}
+
+    /** Sends the robot's heading to the camera, MegaTag2 solves with it. */
+    public default void setRobotOrientation(double yawDeg, double yawRateDegPerSec) {}
+
+    /** Sends the camera's pose relative to the robot center, the camera reports the robot's pose with it. */
+    public default void setCameraPose(Transform3d robotToCamera) {}
+
+    /** Tag the camera should prefer, or -1 for none. */
+    public default void setPriorityTagId(int id) {}
+}
@@ -0,0 +1,100 @@
+package frc.robot.subsystems.vision;
+
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.constants.vision.VisionConfigBase;
+import frc.robot.lib.util.LimelightBuffers.PoseEstimateBuffer;
+import frc.robot.lib.util.LimelightBuffers.RawFiducialBuffer;
+import frc.robot.lib.util.LimelightClient;
+
+public class VisionIOLimelight implements VisionIO {
+    private final VisionConfigBase config;
+    private final LimelightClient limelight;
+    private final LimelightIngestThread ingestThread;
+
+    public VisionIOLimelight(String name, VisionConfigBase config) {
+        this.config = config;
+
+        limelight = new LimelightClient(name);
+        ingestThread = new LimelightIngestThread(limelight, config.getUseMegaTag2(), config.getIngestQueueCapacity());
+        ingestThread.start();
+    }
+
+    @Override
+    public void updateInputs(VisionIOInputs inputs) {
+        int count = ingestThread.latch();
+        try {
+            inputs.isConnected = Timer.getTimestamp() - ingestThread.getLastEstimateTimestampSeconds() < config.getDisconnectTimeoutSeconds();
+            inputs.droppedEstimateCount = ingestThread.getDroppedCount();
+
+            inputs.poseXsMeters = new double[count];
+            inputs.poseYsMeters = new double[count];
+            inputs.poseYawsRad = new double[count];
+            inputs.timestampsSeconds = new double[count];
+            inputs.latenciesMs = new double[count];
+            inputs.tagCounts = new int[count];
+            inputs.tagSpansMeters = new double[count];
+            inputs.averageTagDistancesMeters = new double[count];
+            inputs.averageTagAreas = new double[count];
+            inputs.isMegaTag2 = new boolean[count];
+            inputs.rawFiducialCounts = new int[count];
+
+            int rawFiducialCount = 0;
+            for (int i = 0; i < count; i++) {
+                PoseEstimateBuffer estimate = ingestThread.getLatched(i);
+                inputs.poseXsMeters[i] = estimate.x;
+                inputs.poseYsMeters[i] = estimate.y;
+                inputs.poseYawsRad[i] = estimate.yawRad;
+                inputs.timestampsSeconds[i] = estimate.timestampSeconds;
+                inputs.latenciesMs[i] = estimate.latencyMs;
+                inputs.tagCounts[i] = estimate.tagCount;
+                inputs.tagSpansMeters[i] = estimate.tagSpan;
+                inputs.averageTagDistancesMeters[i] = estimate.avgTagDist;
+                inputs.averageTagAreas[i] = estimate.avgTagArea;
+                inputs.isMegaTag2[i] = estimate.isMegaTag2;
+                inputs.rawFiducialCounts[i] = estimate.rawFiducials.getCount();
+                rawFiducialCount += inputs.rawFiducialCounts[i];
+            }
+
+            inputs.rawFiducials = new double[rawFiducialCount * kVALUES_PER_RAW_FIDUCIAL];
+            int offset = 0;
+            for (int i = 0; i < count; i++) {
+                RawFiducialBuffer fiducials = ingestThread.getLatched(i).rawFiducials;
+                for (int j = 0; j < fiducials.getCount(); j++) {
+                    inputs.rawFiducials[offset] = fiducials.ids[j];
+                    inputs.rawFiducials[offset + 1] = fiducials.txnc[j];
+                    inputs.rawFiducials[offset + 2] = fiducials.tync[j];
+                    inputs.rawFiducials[offset + 3] = fiducials.ta[j];
+                    inputs.rawFiducials[offset + 4] = fiducials.distToCamera[j];
+                    inputs.rawFiducials[offset + 5] = fiducials.distToRobot[j];
+                    inputs.rawFiducials[offset + 6] = fiducials.ambiguity[j];
+                    offset += kVALUES_PER_RAW_FIDUCIAL;
+                }
+            }
+        } finally {
+            ingestThread.release();
+        }
+    }
+
+    @Override
+    public void setRobotOrientation(double yawDeg, double yawRateDegPerSec) {
+        limelight.setRobotOrientation(yawDeg, yawRateDegPerSec);
+    }
+
+    @Override
+    public void setCameraPose(Transform3d robotToCamera) {
+        limelight.setCameraPoseRobotSpace(
+            robotToCamera.getX(),
+            robotToCamera.getY(),
+            robotToCamera.getZ(),
+            Math.toDegrees(robotToCamera.getRotation().getX()),
+            Math.toDegrees(robotToCamera.getRotation().getY()),
+            Math.toDegrees(robotToCamera.getRotation().getZ())
+        );
+    }
+
+    @Override
+    public void setPriorityTagId(int id) {
+        limelight.setPriorityTagId(id);
+    }
+}
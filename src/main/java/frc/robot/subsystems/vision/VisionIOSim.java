@@ -0,0 +1,101 @@
+package frc.robot.subsystems.vision;
+
+import java.util.Random;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.constants.Constants.VisionConstants;
+import frc.robot.constants.vision.VisionConfigBase;
+import frc.robot.subsystems.swerve.SwerveGroundTruthSim;
+
+/**
+ * Stands in for the Limelight by publishing botpose values to its table, so the simulated camera
+ * goes through the same ingest thread and decoding as a real one. The published pose is the
+ * {@link SwerveGroundTruthSim} pose at the capture time plus noise, which the estimate drifts away
+ * from as the simulated wheels slip, so sim exercises scoring, gating and fusion against a real
+ * error. Only the reef tags are simulated, every one within range counts as seen.
+ */
+public class VisionIOSim extends VisionIOLimelight {
+    private static final int kHEADER_LENGTH = 11;
+
+    private final VisionConfigBase config;
+    private final DoubleArrayPublisher botposePublisher;
+    private final Random random;
+    private final double[] tagDistances = new double[VisionConstants.kREEF_TAG_IDS.length];
+
+    private double lastFrameTimestampSeconds = Double.NEGATIVE_INFINITY;
+
+    public VisionIOSim(String name, VisionConfigBase config) {
+        super(name, config);
+        this.config = config;
+        // Seeded per camera, so each camera's noise is independent
+        random = new Random(2638 + name.hashCode());
+
+        botposePublisher = NetworkTableInstance.getDefault()
+            .getTable(name)
+            .getDoubleArrayTopic(config.getUseMegaTag2() ? "botpose_orb_wpiblue" : "botpose_wpiblue")
+            .publish();
+    }
+
+    @Override
+    public void updateInputs(VisionIOInputs inputs) {
+        double timestampSeconds = Timer.getTimestamp();
+        if (timestampSeconds - lastFrameTimestampSeconds >= 1 / config.getSimFrameRateHz()) {
+            lastFrameTimestampSeconds = timestampSeconds;
+            publishFrame(timestampSeconds - config.getSimLatencySeconds());
+        }
+
+        super.updateInputs(inputs);
+    }
+
+    private void publishFrame(double captureTimestampSeconds) {
+        Pose2d pose = SwerveGroundTruthSim.getInstance().getPoseAt(captureTimestampSeconds);
+
+        int tagCount = 0;
+        double distanceSum = 0;
+        Translation2d firstTag = null;
+        double tagSpan = 0;
+        for (int i = 0; i < VisionConstants.kREEF_TAG_POSES.length; i++) {
+            Translation2d tag = VisionConstants.kREEF_TAG_POSES[i];
+            tagDistances[i] = tag.getDistance(pose.getTranslation());
+            if (tagDistances[i] <= config.getSimMaxTagDistanceMeters()) {
+                if (firstTag == null) {
+                    firstTag = tag;
+                }
+                tagSpan = Math.max(tagSpan, tag.getDistance(firstTag));
+                distanceSum += tagDistances[i];
+                tagCount++;
+            }
+        }
+
+        double[] value = new double[kHEADER_LENGTH + tagCount * VisionIO.kVALUES_PER_RAW_FIDUCIAL];
+        if (tagCount > 0) {
+            double noise = config.getSimTranslationNoiseMeters();
+            value[0] = pose.getX() + random.nextGaussian() * noise;
+            value[1] = pose.getY() + random.nextGaussian() * noise;
+            value[5] = pose.getRotation().getDegrees();
+        }
+        value[6] = config.getSimLatencySeconds() * 1000;
+        value[7] = tagCount;
+        value[8] = tagSpan;
+        value[9] = tagCount > 0 ? distanceSum / tagCount : 0;
+        value[10] = tagCount > 0 ? 1.0 / tagCount : 0;
+
+        int offset = kHEADER_LENGTH;
+        for (int i = 0; i < VisionConstants.kREEF_TAG_POSES.length; i++) {
+            if (tagDistances[i] <= config.getSimMaxTagDistanceMeters()) {
+                value[offset] = VisionConstants.kREEF_TAG_IDS[i];
+                value[offset + 3] = 1.0 / tagCount;
+                value[offset + 4] = tagDistances[i];
+                value[offset + 5] = tagDistances[i];
+                value[offset + 6] = config.getSimAmbiguity();
+                offset += VisionIO.kVALUES_PER_RAW_FIDUCIAL;
+            }
+        }
+
+        botposePublisher.set(value);
+    }
+}
@@ -0,0 +1,162 @@
+package frc.robot.subsystems.swerve;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/** FourModuleKinematics against SwerveDriveKinematics on randomized inputs. */
+class FourModuleKinematicsTest {
+    private static final int kTRIALS = 1000;
+    // Module angles are atan2 of the velocity instead of a Rotation2d round trip, and may differ in the last bit
+    private static final double kANGLE_TOLERANCE_RAD = 1e-12;
+
+    private static final Translation2d frontLeft = new Translation2d(0.29, 0.31);
+    private static final Translation2d frontRight = new Translation2d(0.29, -0.31);
+    private static final Translation2d backLeft = new Translation2d(-0.27, 0.31);
+    private static final Translation2d backRight = new Translation2d(-0.27, -0.31);
+
+    private final SwerveDriveKinematics wpilibKinematics = new SwerveDriveKinematics(frontLeft, frontRight, backLeft, backRight);
+    private final FourModuleKinematics kinematics = new FourModuleKinematics(frontLeft, frontRight, backLeft, backRight);
+    private final Random random = new Random(2638);
+
+    @Test
+    void toModuleStatesMatchesWpilib() {
+        double[] speeds = new double[4];
+        double[] angles = new double[4];
+        for (int trial = 0; trial < kTRIALS; trial++) {
+            ChassisSpeeds chassisSpeeds = randomChassisSpeeds();
+            SwerveModuleState[] expected = wpilibKinematics.toSwerveModuleStates(chassisSpeeds);
+            kinematics.toModuleStates(
+                chassisSpeeds.vxMetersPerSecond,
+                chassisSpeeds.vyMetersPerSecond,
+                chassisSpeeds.omegaRadiansPerSecond,
+                speeds,
+                angles
+            );
+
+            for (int i = 0; i < 4; i++) {
+                assertEquals(expected[i].speedMetersPerSecond, speeds[i], 0.0);
+                assertAngleEquals(expected[i].angle.getRadians(), angles[i]);
+            }
+        }
+    }
+
+    @Test
+    void toModuleStatesHoldsHeadingAtZeroSpeed() {
+        double[] speeds = new double[4];
+        double[] angles = new double[4];
+        for (int trial = 0; trial < kTRIALS; trial++) {
+            ChassisSpeeds chassisSpeeds = randomChassisSpeeds();
+            wpilibKinematics.toSwerveModuleStates(chassisSpeeds);
+            kinematics.toModuleStates(
+                chassisSpeeds.vxMetersPerSecond,
+                chassisSpeeds.vyMetersPerSecond,
+                chassisSpeeds.omegaRadiansPerSecond,
+                speeds,
+                angles
+            );
+
+            SwerveModuleState[] expected = wpilibKinematics.toSwerveModuleStates(new ChassisSpeeds());
+            kinematics.toModuleStates(0, 0, 0, speeds, angles);
+
+            for (int i = 0; i < 4; i++) {
+                assertEquals(0.0, speeds[i], 0.0);
+                assertEquals(expected[i].speedMetersPerSecond, speeds[i], 0.0);
+                assertAngleEquals(expected[i].angle.getRadians(), angles[i]);
+            }
+        }
+    }
+
+    @Test
+    void toChassisSpeedsMatchesWpilib() {
+        double[] speeds = new double[4];
+        double[] angles = new double[4];
+        SwerveModuleState[] states = new SwerveModuleState[4];
+        ChassisSpeeds actual = new ChassisSpeeds();
+        for (int trial = 0; trial < kTRIALS; trial++) {
+            for (int i = 0; i < 4; i++) {
+                speeds[i] = randomBetween(-5, 5);
+                angles[i] = randomBetween(-Math.PI, Math.PI);
+                states[i] = new SwerveModuleState(speeds[i], new Rotation2d(angles[i]));
+            }
+
+            ChassisSpeeds expected = wpilibKinematics.toChassisSpeeds(states);
+            kinematics.toChassisSpeeds(speeds, angles, actual);
+
+            assertEquals(expected.vxMetersPerSecond, actual.vxMetersPerSecond, 0.0);
+            assertEquals(expected.vyMetersPerSecond, actual.vyMetersPerSecond, 0.0);
+            assertEquals(expected.omegaRadiansPerSecond, actual.omegaRadiansPerSecond, 0.0);
+        }
+    }
+
+    @Test
+    void toTwist2dMatchesWpilib() {
+        double[] startDistances = new double[4];
+        double[] endDistances = new double[4];
+        double[] endAngles = new double[4];
+        SwerveModulePosition[] startPositions = new SwerveModulePosition[4];
+        SwerveModulePosition[] endPositions = new SwerveModulePosition[4];
+        Twist2d actual = new Twist2d();
+        for (int trial = 0; trial < kTRIALS; trial++) {
+            for (int i = 0; i < 4; i++) {
+                startDistances[i] = randomBetween(-100, 100);
+                endDistances[i] = startDistances[i] + randomBetween(-0.05, 0.05);
+                endAngles[i] = randomBetween(-Math.PI, Math.PI);
+                startPositions[i] = new SwerveModulePosition(startDistances[i], new Rotation2d(randomBetween(-Math.PI, Math.PI)));
+                endPositions[i] = new SwerveModulePosition(endDistances[i], new Rotation2d(endAngles[i]));
+            }
+
+            Twist2d expected = wpilibKinematics.toTwist2d(startPositions, endPositions);
+            kinematics.toTwist2d(startDistances, endDistances, endAngles, actual);
+
+            assertEquals(expected.dx, actual.dx, 0.0);
+            assertEquals(expected.dy, actual.dy, 0.0);
+            assertEquals(expected.dtheta, actual.dtheta, 0.0);
+        }
+    }
+
+    @Test
+    void desaturateMatchesWpilib() {
+        double[] speeds = new double[4];
+        SwerveModuleState[] states = new SwerveModuleState[4];
+        for (int trial = 0; trial < kTRIALS; trial++) {
+            // Half the trials stay under the limit and must come back unchanged
+            double maxSpeed = randomBetween(1, 5);
+            double range = trial % 2 == 0 ? maxSpeed : 2 * maxSpeed;
+            for (int i = 0; i < 4; i++) {
+                speeds[i] = randomBetween(-range, range);
+                states[i] = new SwerveModuleState(speeds[i], new Rotation2d());
+            }
+
+            SwerveDriveKinematics.desaturateWheelSpeeds(states, maxSpeed);
+            FourModuleKinematics.desaturate(speeds, maxSpeed);
+
+            for (int i = 0; i < 4; i++) {
+                assertEquals(states[i].speedMetersPerSecond, speeds[i], 0.0);
+            }
+        }
+    }
+
+    private ChassisSpeeds randomChassisSpeeds() {
+        return new ChassisSpeeds(randomBetween(-5, 5), randomBetween(-5, 5), randomBetween(-10, 10));
+    }
+
+    private double randomBetween(double min, double max) {
+        return min + (max - min) * random.nextDouble();
+    }
+
+    private static void assertAngleEquals(double expectedRad, double actualRad) {
+        assertEquals(0.0, MathUtil.angleModulus(actualRad - expectedRad), kANGLE_TOLERANCE_RAD);
+    }
+}
@@ -0,0 +1,71 @@
+package frc.robot.subsystems.swerve;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigSim;
+
+class SwerveControlPipelineTest {
+    private static final int kWARMUP_CYCLES = 20_000;
+    private static final int kMEASURED_CYCLES = 10_000;
+    private static final double kDT = 0.02;
+
+    @Test
+    void updateDoesNotAllocateInSteadyState() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "JVM does not report per thread allocation");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        SwerveDrivetrainConfigBase config = SwerveDrivetrainConfigSim.getInstance();
+        SwerveControlPipeline pipeline = new SwerveControlPipeline(
+            config,
+            new FourModuleKinematics(
+                config.getFrontLeftPositionMeters(),
+                config.getFrontRightPositionMeters(),
+                config.getBackLeftPositionMeters(),
+                config.getBackRightPositionMeters()
+            )
+        );
+
+        ChassisSpeeds desiredSpeeds = new ChassisSpeeds();
+        double[] measuredSteerAnglesRad = new double[4];
+
+        // Warm up until the pipeline and the allocation counter are compiled
+        for (int cycle = 0; cycle < kWARMUP_CYCLES; cycle++) {
+            runCycle(pipeline, cycle, desiredSpeeds, measuredSteerAnglesRad);
+        }
+        long threadId = Thread.currentThread().getId();
+        threads.getThreadAllocatedBytes(threadId);
+
+        long allocatedBytesBefore = threads.getThreadAllocatedBytes(threadId);
+        for (int cycle = 0; cycle < kMEASURED_CYCLES; cycle++) {
+            runCycle(pipeline, cycle, desiredSpeeds, measuredSteerAnglesRad);
+        }
+        long allocatedBytesAfter = threads.getThreadAllocatedBytes(threadId);
+
+        assertEquals(0, allocatedBytesAfter - allocatedBytesBefore, "Bytes allocated over " + kMEASURED_CYCLES + " cycles");
+    }
+
+    /** Sweeps the request and measured angles, so acceleration limiting, desaturation, optimization and the stop path all run. */
+    private static void runCycle(SwerveControlPipeline pipeline, int cycle, ChassisSpeeds desiredSpeeds, double[] measuredSteerAnglesRad) {
+        double phase = cycle * 0.01;
+        boolean isStopped = cycle % 50 < 5;
+        desiredSpeeds.vxMetersPerSecond = isStopped ? 0 : 6 * Math.cos(phase);
+        desiredSpeeds.vyMetersPerSecond = isStopped ? 0 : 6 * Math.sin(phase);
+        desiredSpeeds.omegaRadiansPerSecond = isStopped ? 0 : 8 * Math.sin(3 * phase);
+
+        for (int i = 0; i < 4; i++) {
+            measuredSteerAnglesRad[i] = Math.IEEEremainder(phase * (i + 1), 2 * Math.PI);
+        }
+
+        pipeline.update(desiredSpeeds, phase, kDT, measuredSteerAnglesRad);
+    }
+}